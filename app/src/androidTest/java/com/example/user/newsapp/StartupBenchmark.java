@@ -0,0 +1,153 @@
+package com.example.user.newsapp;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the start of {@link MainActivity}: the time from the launch to its first drawn frame
+ * and to the first drawn frame with news.
+ * <p>
+ * The instrumentation runs in the process of the app, so every launch is a warm start: the process
+ * is running and the activity is created again. The first launch finds the caches in memory
+ * empty, the news come from the snapshot, the disk or the network. The following launches find
+ * them filled, their median is reported. A launch that showed no news before the timeout is left
+ * out of the median of the first news. The times are sent as the status of the
+ * instrumentation and written to the log, so running the benchmark for every commit shows the
+ * regressions:
+ * <pre>
+ * adb shell am instrument -w -r -e class com.example.user.newsapp.StartupBenchmark \
+ *     com.example.user.newsapp.test/android.support.test.runner.AndroidJUnitRunner
+ * </pre>
+ * With the argument {@code -e startupBudgetMillis 500} the benchmark fails when the median time
+ * to the first draw of the warm starts is longer.
+ * <p>
+ * A cold start needs a new process, which the instrumentation can not measure from inside it.
+ * Its time is reported by the activity manager:
+ * <pre>
+ * adb shell am force-stop com.example.user.newsapp
+ * adb shell am start -W -n com.example.user.newsapp/.MainActivity
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    private static final String LOG_TAG = StartupBenchmark.class.getSimpleName();
+
+    //Number of warm starts after the first one
+    private static final int WARM_STARTS = 5;
+
+    //Longest wait for the first frame
+    private static final long DRAW_TIMEOUT_MILLIS = 10 * 1000;
+
+    //Longest wait for the first news, which may come from the network on the first start
+    private static final long ITEM_TIMEOUT_MILLIS = 30 * 1000;
+
+    //Status code of results that are not the end of a test, like the ones of other benchmarks
+    private static final int STATUS_IN_PROGRESS = 2;
+
+    //Time reported when the list showed no news before the timeout, like offline without a cache
+    private static final long NO_ITEM = -1;
+
+    private final Instrumentation mInstrumentation = InstrumentationRegistry.getInstrumentation();
+
+    @Test
+    public void measureStartup() throws Exception {
+        long[] first = launch();
+
+        long[] warmDraws = new long[WARM_STARTS];
+        long[] warmItems = new long[WARM_STARTS];
+        for (int i = 0; i < WARM_STARTS; i++) {
+            long[] times = launch();
+            warmDraws[i] = times[0];
+            warmItems[i] = times[1];
+        }
+        long warmDraw = median(warmDraws);
+        long warmItem = median(warmItems);
+
+        Bundle results = new Bundle();
+        results.putLong("first_warm_first_draw_ms", first[0]);
+        results.putLong("first_warm_first_item_ms", first[1]);
+        results.putLong("warm_first_draw_ms", warmDraw);
+        results.putLong("warm_first_item_ms", warmItem);
+        mInstrumentation.sendStatus(STATUS_IN_PROGRESS, results);
+        Log.i(LOG_TAG, "First warm start: first draw " + first[0] + " ms, first item " + first[1]
+                + " ms. Warm start: first draw " + warmDraw + " ms, first item " + warmItem + " ms");
+
+        String budget = InstrumentationRegistry.getArguments().getString("startupBudgetMillis");
+        if (budget != null) {
+            assertTrue("Time to first draw " + warmDraw + " ms is over the budget of " + budget + " ms",
+                    warmDraw <= Long.parseLong(budget));
+        }
+    }
+
+    //Starts the activity, waits for its first frame and its first news and finishes it.
+    //Returns the times to both in milliseconds
+    private long[] launch() {
+        Intent intent = new Intent(Intent.ACTION_MAIN)
+                .setClassName(mInstrumentation.getTargetContext(), MainActivity.class.getName())
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        long start = System.nanoTime();
+        final Activity activity = mInstrumentation.startActivitySync(intent);
+        try {
+            long firstDraw = waitFor(true, DRAW_TIMEOUT_MILLIS);
+            assertTrue("The activity drew no frame", firstDraw != 0);
+            long firstItem = waitFor(false, ITEM_TIMEOUT_MILLIS);
+            return new long[]{toMillis(firstDraw - start),
+                    firstItem == 0 ? NO_ITEM : toMillis(firstItem - start)};
+        } finally {
+            mInstrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    activity.finish();
+                }
+            });
+            mInstrumentation.waitForIdleSync();
+        }
+    }
+
+    //Waits for the first draw or the first item of the trace, returns 0 after the timeout
+    private static long waitFor(boolean firstDraw, long timeoutMillis) {
+        long end = SystemClock.uptimeMillis() + timeoutMillis;
+        while (SystemClock.uptimeMillis() < end) {
+            long time = firstDraw ? StartupTrace.getFirstDrawAt() : StartupTrace.getFirstItemAt();
+            if (time != 0) {
+                return time;
+            }
+            SystemClock.sleep(10);
+        }
+        return 0;
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    //The median of the times that were measured, NO_ITEM if none was
+    private static long median(long[] values) {
+        long[] sorted = new long[values.length];
+        int count = 0;
+        for (long value : values) {
+            if (value != NO_ITEM) {
+                sorted[count++] = value;
+            }
+        }
+        if (count == 0) {
+            return NO_ITEM;
+        }
+        Arrays.sort(sorted, 0, count);
+        return sorted[count / 2];
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.user.newsapp;
+
+/**
+ * The full text of a news, as the reader shows it.
+ */
+public class Article {
+
+    //Web address of the news, the key of the article in the cache
+    private final String mUrl;
+
+    //Title of the news
+    private final String mTitle;
+
+    //Standfirst below the title as HTML, or null
+    private final String mTrailText;
+
+    //Text of the article as HTML, or null if the API has none, like for some galleries
+    private final String mBody;
+
+    /**
+     * Constructs a new {@link Article}.
+     *
+     * @param url       is the web address of the news
+     * @param title     is the title of the news
+     * @param trailText is the standfirst as HTML, or null
+     * @param body      is the text of the article as HTML, or null
+     */
+    public Article(String url, String title, String trailText, String body) {
+        mUrl = url;
+        mTitle = title;
+        mTrailText = trailText;
+        mBody = body;
+    }
+
+    //Gets the web address of the news
+    public String getUrl() {
+        return mUrl;
+    }
+
+    //Gets the title of the news
+    public String getTitle() {
+        return mTitle;
+    }
+
+    //Gets the standfirst as HTML, or null
+    public String getTrailText() {
+        return mTrailText;
+    }
+
+    //Gets the text of the article as HTML, or null
+    public String getBody() {
+        return mBody;
+    }
+}
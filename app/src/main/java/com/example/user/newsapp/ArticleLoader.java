@@ -0,0 +1,557 @@
+package com.example.user.newsapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads the articles of the reader through a memory and a disk cache.
+ * <p>
+ * The list prefetches the articles of the visible news while the network is unmetered, so
+ * opening one is a read from the cache and also works offline. The prefetch runs on its own
+ * thread with a low priority, it never delays the article the user opened. A new prefetch
+ * cancels the articles of the one before whose news are not visible anymore, the others go on.
+ * An article that is downloaded already, by the prefetch or the reader, is not downloaded a
+ * second time: the other load waits for the running download. The disk cache is bounded by
+ * bytes, the memory cache by the number of articles. The articles in memory are trimmed by the
+ * {@link CacheManager}, they are on disk already.
+ */
+public class ArticleLoader implements CacheManager.MemoryCache {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = ArticleLoader.class.getSimpleName();
+
+    //Number of visible news whose articles are prefetched
+    public static final int MAX_PREFETCH = 5;
+
+    //Maximum size of the articles on disk
+    private static final long DISK_CACHE_BYTES = 4 * 1024 * 1024;
+
+    //Name of the directory inside the app's cache directory
+    private static final String DIRECTORY_NAME = "articles";
+
+    //Version of the format of an entry, increase it when the format changes
+    private static final int FORMAT_VERSION = 1;
+
+    //Number of articles kept in memory, the bodies are a few tens of KB each
+    private static final int MAX_MEMORY_ENTRIES = 8;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    //The only instance, shared by the list and the reader
+    private static ArticleLoader sInstance;
+
+    /**
+     * Loads an article from the network.
+     */
+    public interface ArticleFetcher {
+        //Returns the article of the web address, or null if it could not be loaded
+        Article fetchArticle(String webUrl) throws IOException;
+    }
+
+    /**
+     * Receives a loaded article on the main thread.
+     */
+    public interface Callback {
+        //The article, or null if it is not cached and could not be loaded
+        void onArticleLoaded(Article article);
+    }
+
+    //Store of the serialized articles by web address
+    private final DiskLruCache mDiskCache;
+
+    private final ArticleFetcher mFetcher;
+
+    //Runs the callbacks
+    private final Executor mDeliveryExecutor;
+
+    //Loads the articles the user opened
+    private final ExecutorService mLoadExecutor = Executors.newSingleThreadExecutor();
+
+    //Loads the prefetched articles, one after the other
+    private final ExecutorService mPrefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ArticleLoader prefetch");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    //The most recently used articles in access order, guarded by itself
+    private final LinkedHashMap<String, Article> mMemoryCache = new LinkedHashMap<String, Article>(
+            MAX_MEMORY_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Article> eldest) {
+            if (size() <= MAX_MEMORY_ENTRIES) {
+                return false;
+            }
+            mMemoryBytes -= sizeOf(eldest.getValue());
+            mStats.recordEvictions(1);
+            return true;
+        }
+    };
+
+    //Estimated size of the articles in memory, guarded by mMemoryCache
+    private long mMemoryBytes;
+
+    private final CacheManager.Stats mStats = new CacheManager.Stats();
+
+    //The tasks of the last prefetch by web address, only used on the thread that calls prefetch()
+    private final Map<String, Task> mPrefetchTasks = new LinkedHashMap<>();
+
+    //The running downloads by web address, guarded by itself
+    private final Map<String, Download> mDownloads = new HashMap<>();
+
+    /**
+     * Constructs a new {@link ArticleLoader}.
+     *
+     * @param diskCache        keeps the loaded articles
+     * @param fetcher          loads the articles from the network
+     * @param deliveryExecutor runs the callbacks, the main thread in the app
+     */
+    public ArticleLoader(DiskLruCache diskCache, ArticleFetcher fetcher, Executor deliveryExecutor) {
+        mDiskCache = diskCache;
+        mFetcher = fetcher;
+        mDeliveryExecutor = deliveryExecutor;
+    }
+
+    /**
+     * Returns the loader of the application, creating it on first use.
+     */
+    public static synchronized ArticleLoader getInstance(Context context) {
+        if (sInstance == null) {
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            getInstance(context.getApplicationContext().getCacheDir(), new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    mainHandler.post(command);
+                }
+            });
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the loader of the application, creating it in the cache directory on first use.
+     * The loader is registered with the {@link CacheManager}, like the other caches.
+     */
+    static synchronized ArticleLoader getInstance(File cacheDir, Executor deliveryExecutor) {
+        if (sInstance == null) {
+            File directory = new File(cacheDir, DIRECTORY_NAME);
+            sInstance = new ArticleLoader(new DiskLruCache(directory, DISK_CACHE_BYTES), new ArticleFetcher() {
+                @Override
+                public Article fetchArticle(String webUrl) throws IOException {
+                    String articleUrl = NewsQuery.buildArticleUrl(webUrl);
+                    if (articleUrl == null) {
+                        return null;
+                    }
+                    return NewsHttpClient.getInstance().fetchArticle(new URL(articleUrl));
+                }
+            }, deliveryExecutor);
+            CacheManager.getInstance().register(sInstance);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the article from memory, or null if it is not in memory.
+     * This does not read from disk, so it can be called on the main thread.
+     */
+    public Article peek(String webUrl) {
+        Article article;
+        synchronized (mMemoryCache) {
+            article = mMemoryCache.get(webUrl);
+        }
+        if (article != null) {
+            mStats.recordHit();
+        } else {
+            mStats.recordMiss();
+        }
+        return article;
+    }
+
+    /**
+     * Loads the article from the caches or the network and hands it to the callback.
+     *
+     * @param offline is true to only read the caches
+     * @return the task, to cancel the load
+     */
+    public Task load(String webUrl, boolean offline, Callback callback) {
+        Task task = new Task(webUrl, offline, callback);
+        task.mFuture = mLoadExecutor.submit(task);
+        return task;
+    }
+
+    /**
+     * Loads the articles of the news into the caches. The articles of the previous call that
+     * are not loaded yet are cancelled, unless they are requested again.
+     * The caller checks that the network is unmetered.
+     *
+     * @param webUrls are the web addresses of the visible news, the first ones are loaded first
+     */
+    public void prefetch(List<String> webUrls) {
+        Map<String, Task> tasks = new LinkedHashMap<>();
+        for (int i = 0; i < webUrls.size() && i < MAX_PREFETCH; i++) {
+            String webUrl = webUrls.get(i);
+            if (webUrl == null || tasks.containsKey(webUrl)) {
+                continue;
+            }
+            //A task that is still queued or running keeps its place
+            Task task = mPrefetchTasks.remove(webUrl);
+            if (task == null || task.mFuture.isDone()) {
+                if (peek(webUrl) != null) {
+                    continue;
+                }
+                task = new Task(webUrl, false, null);
+                task.mFuture = mPrefetchExecutor.submit(task);
+            }
+            tasks.put(webUrl, task);
+        }
+        //The news of the other tasks are not visible anymore
+        cancelPrefetch();
+        mPrefetchTasks.putAll(tasks);
+    }
+
+    /**
+     * Cancels the prefetch, for example when the list is left.
+     */
+    public void cancelPrefetch() {
+        for (Task task : mPrefetchTasks.values()) {
+            task.cancel();
+        }
+        mPrefetchTasks.clear();
+    }
+
+    //Returns the article from the caches or the network, null if it could not be loaded
+    private Article get(String webUrl, boolean offline) {
+        Article article = peek(webUrl);
+        if (article != null) {
+            return article;
+        }
+        byte[] data = mDiskCache.get(webUrl);
+        if (data != null) {
+            try {
+                article = decode(data);
+                putInMemory(webUrl, article);
+                return article;
+            } catch (IOException e) {
+                //Unknown version or corrupted file, it is replaced below
+                Log.e(LOG_TAG, "Problem reading the cached article " + webUrl, e);
+                mDiskCache.remove(webUrl);
+            }
+        }
+        if (offline) {
+            return null;
+        }
+        try {
+            article = download(webUrl);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem loading the article " + webUrl, e);
+            return null;
+        }
+        if (article != null) {
+            putInMemory(webUrl, article);
+        }
+        return article;
+    }
+
+    //Downloads the article and writes it to disk. A download of the same article that is
+    //running already is shared, it is only aborted when all its loads were cancelled
+    private Article download(final String webUrl) throws IOException {
+        final Download download;
+        boolean owner;
+        synchronized (mDownloads) {
+            Download running = mDownloads.get(webUrl);
+            owner = running == null;
+            download = owner ? new Download(new FutureTask<>(new Callable<Article>() {
+                @Override
+                public Article call() throws IOException {
+                    Article article = mFetcher.fetchArticle(webUrl);
+                    if (article != null) {
+                        //Written to disk first, so a trim of the memory never drops the only copy
+                        try {
+                            mDiskCache.put(webUrl, encode(article));
+                        } catch (IOException e) {
+                            Log.e(LOG_TAG, "Problem storing the article " + webUrl, e);
+                        }
+                    }
+                    return article;
+                }
+            })) : running;
+            if (owner) {
+                mDownloads.put(webUrl, download);
+            }
+            download.mWaiters++;
+        }
+
+        CancelSignal callerSignal = CancelSignal.current();
+        CancelSignal.OnCancelListener release = new CancelSignal.OnCancelListener() {
+            @Override
+            public void onCancel() {
+                release(webUrl, download);
+            }
+        };
+        if (callerSignal != null) {
+            callerSignal.addOnCancelListener(release);
+        }
+        try {
+            if (owner) {
+                CancelSignal previous = CancelSignal.setCurrent(download.mSignal);
+                try {
+                    download.mTask.run();
+                } finally {
+                    CancelSignal.setCurrent(previous);
+                    remove(webUrl, download);
+                }
+            }
+            return download.mTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (callerSignal != null) {
+                callerSignal.removeOnCancelListener(release);
+            }
+        }
+    }
+
+    //Called when a load that waits for the download was cancelled
+    private void release(String webUrl, Download download) {
+        synchronized (mDownloads) {
+            download.mWaiters--;
+            if (download.mWaiters > 0) {
+                return;
+            }
+            //Nobody wants the article anymore, new loads must not wait for the aborted download
+            remove(webUrl, download);
+        }
+        download.mSignal.cancel();
+    }
+
+    private void remove(String webUrl, Download download) {
+        synchronized (mDownloads) {
+            if (mDownloads.get(webUrl) == download) {
+                mDownloads.remove(webUrl);
+            }
+        }
+    }
+
+    private void putInMemory(String webUrl, Article article) {
+        synchronized (mMemoryCache) {
+            Article previous = mMemoryCache.put(webUrl, article);
+            mMemoryBytes += sizeOf(article) - (previous != null ? sizeOf(previous) : 0);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "articles";
+    }
+
+    @Override
+    public int getPriority() {
+        return CacheManager.PRIORITY_ARTICLES;
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        synchronized (mMemoryCache) {
+            return mMemoryBytes;
+        }
+    }
+
+    /**
+     * Drops the least recently used articles from memory, they are read from disk again.
+     */
+    @Override
+    public void trimMemory(long maxBytes) {
+        synchronized (mMemoryCache) {
+            Iterator<Article> iterator = mMemoryCache.values().iterator();
+            while (mMemoryBytes > maxBytes && iterator.hasNext()) {
+                mMemoryBytes -= sizeOf(iterator.next());
+                iterator.remove();
+                mStats.recordEvictions(1);
+            }
+        }
+    }
+
+    @Override
+    public CacheManager.Stats getStats() {
+        return mStats;
+    }
+
+    //Estimated size of an article in memory, mostly its body
+    private static long sizeOf(Article article) {
+        return CacheManager.sizeOf(article.getUrl()) + CacheManager.sizeOf(article.getTitle())
+                + CacheManager.sizeOf(article.getTrailText()) + CacheManager.sizeOf(article.getBody());
+    }
+
+    /**
+     * A running download and the number of loads that wait for it.
+     */
+    private static final class Download {
+
+        final FutureTask<Article> mTask;
+
+        //Aborts the download, it is bound to the thread that runs it
+        final CancelSignal mSignal = new CancelSignal();
+
+        //Number of loads that were not cancelled, guarded by mDownloads
+        int mWaiters;
+
+        Download(FutureTask<Article> task) {
+            mTask = task;
+        }
+    }
+
+    /**
+     * Loads one article and delivers it, unless it was cancelled meanwhile.
+     */
+    public final class Task implements Runnable {
+
+        private final String mWebUrl;
+
+        private final boolean mOffline;
+
+        //Set to null when the article is not wanted anymore
+        private volatile Callback mCallback;
+
+        //Aborts the network request of the task
+        private final CancelSignal mSignal = new CancelSignal();
+
+        //Set right after the task was submitted, before the task can be cancelled
+        private volatile Future<?> mFuture;
+
+        Task(String webUrl, boolean offline, Callback callback) {
+            mWebUrl = webUrl;
+            mOffline = offline;
+            mCallback = callback;
+        }
+
+        @Override
+        public void run() {
+            if (mSignal.isCanceled()) {
+                return;
+            }
+            CancelSignal previous = CancelSignal.setCurrent(mSignal);
+            final Article article;
+            try {
+                article = get(mWebUrl, mOffline);
+            } finally {
+                CancelSignal.setCurrent(previous);
+            }
+            if (mCallback == null) {
+                return;
+            }
+            mDeliveryExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Callback callback = mCallback;
+                    if (callback != null) {
+                        callback.onArticleLoaded(article);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Cancels the load, its network request is aborted and the callback is not called.
+         */
+        public void cancel() {
+            mCallback = null;
+            mSignal.cancel();
+            mFuture.cancel(false);
+        }
+
+        /**
+         * Lets the load finish into the caches without calling the callback.
+         */
+        public void detach() {
+            mCallback = null;
+        }
+    }
+
+    static byte[] encode(Article article) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(FORMAT_VERSION);
+        writeNullableString(output, article.getUrl());
+        writeNullableString(output, article.getTitle());
+        writeNullableString(output, article.getTrailText());
+        writeNullableString(output, article.getBody());
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    static Article decode(byte[] data) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+        int version = input.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported cache format " + version);
+        }
+        String url = readNullableString(input);
+        String title = readNullableString(input);
+        String trailText = readNullableString(input);
+        String body = readNullableString(input);
+        return new Article(url, title, trailText, body);
+    }
+
+    //The bodies can be longer than the 64 KB of writeUTF, so the strings are stored as UTF-8 bytes
+    private static void writeNullableString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readNullableString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > input.available()) {
+            throw new IOException("Corrupted cache entry");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.user.newsapp;
+
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the bytes of all caches in memory and trims them when the system runs low
+ * on memory, so the process stays alive in the background on devices with little RAM.
+ * <p>
+ * Every cache registers itself with a priority. On {@link #onTrimMemory(int)} the manager
+ * keeps a part of the bytes of all caches that depends on the level, and takes the rest from
+ * the caches with the lowest priority first: the thumbnails, which are decoded again from disk,
+ * before the articles, the pages of the queries and last the stores of the topics. All caches
+ * are written to disk before they are dropped from memory, so a trimmed entry is read from disk
+ * later instead of the network. While the app is in the foreground only a small part is
+ * trimmed, the least recently used entries first, so the visible news stay in memory.
+ * <p>
+ * The caches count their hits, misses and evictions in {@link Stats}, they are written to the
+ * log after every trim.
+ */
+public final class CacheManager {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = CacheManager.class.getSimpleName();
+
+    //Priorities of the caches, a lower priority is trimmed first
+    public static final int PRIORITY_THUMBNAILS = 0;
+    public static final int PRIORITY_ARTICLES = 1;
+    public static final int PRIORITY_NEWS_PAGES = 2;
+    public static final int PRIORITY_TOPICS = 3;
+
+    //Estimated size of a News object with its fields, without the characters of its strings
+    private static final int NEWS_OVERHEAD_BYTES = 96;
+
+    //Estimated size of a String object, without its characters
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    //The only instance, shared by all caches
+    private static final CacheManager INSTANCE = new CacheManager();
+
+    /**
+     * A cache in memory which is managed by the {@link CacheManager}.
+     */
+    public interface MemoryCache {
+        //Gets the name of the cache in the log
+        String getName();
+
+        //Gets one of the priority constants
+        int getPriority();
+
+        //Gets the estimated size of the entries in memory
+        long getMemoryBytes();
+
+        //Removes the least recently used entries from memory until they take at most the bytes,
+        //entries that are not on disk yet are written first
+        void trimMemory(long maxBytes);
+
+        Stats getStats();
+    }
+
+    /**
+     * Hits, misses and evictions of a cache in memory. Evictions count the entries that were
+     * removed to make room or by a trim.
+     */
+    public static final class Stats {
+
+        private final AtomicLong mHits = new AtomicLong();
+
+        private final AtomicLong mMisses = new AtomicLong();
+
+        private final AtomicLong mEvictions = new AtomicLong();
+
+        public void recordHit() {
+            mHits.incrementAndGet();
+        }
+
+        public void recordMiss() {
+            mMisses.incrementAndGet();
+        }
+
+        public void recordEvictions(int count) {
+            mEvictions.addAndGet(count);
+        }
+
+        public long getHits() {
+            return mHits.get();
+        }
+
+        public long getMisses() {
+            return mMisses.get();
+        }
+
+        public long getEvictions() {
+            return mEvictions.get();
+        }
+
+        //Gets the part of the lookups that were hits, 0 without lookups
+        public float getHitRate() {
+            long hits = mHits.get();
+            long lookups = hits + mMisses.get();
+            return lookups == 0 ? 0 : (float) hits / lookups;
+        }
+    }
+
+    //The registered caches, lowest priority first, guarded by itself
+    private final List<MemoryCache> mCaches = new ArrayList<>();
+
+    /**
+     * Constructs a new {@link CacheManager}. The app uses the instance of {@link #getInstance()}.
+     */
+    CacheManager() {
+    }
+
+    public static CacheManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Adds a cache, usually when it is created.
+     */
+    public void register(MemoryCache cache) {
+        synchronized (mCaches) {
+            mCaches.add(cache);
+            Collections.sort(mCaches, new Comparator<MemoryCache>() {
+                @Override
+                public int compare(MemoryCache first, MemoryCache second) {
+                    return first.getPriority() - second.getPriority();
+                }
+            });
+        }
+    }
+
+    //Gets the estimated size of all caches in memory
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (MemoryCache cache : getCaches()) {
+            bytes += cache.getMemoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Trims the caches for a level of {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public void onTrimMemory(int level) {
+        float keep = keepFraction(level);
+        if (keep >= 1) {
+            return;
+        }
+        List<MemoryCache> caches = getCaches();
+        long[] bytes = new long[caches.size()];
+        long total = 0;
+        for (int i = 0; i < caches.size(); i++) {
+            bytes[i] = caches.get(i).getMemoryBytes();
+            total += bytes[i];
+        }
+        //The bytes above the part that is kept are taken from the lowest priorities first
+        long excess = total - (long) (total * keep);
+        for (int i = 0; i < caches.size() && excess > 0; i++) {
+            long cacheKeeps = Math.max(0, bytes[i] - excess);
+            caches.get(i).trimMemory(cacheKeeps);
+            excess -= bytes[i] - cacheKeeps;
+        }
+        //Some caches trim in the background, so the target is logged instead of their sizes
+        Log.i(LOG_TAG, "Trimming for level " + level + " from " + total / 1024 + " KB to "
+                + (long) (total * keep) / 1024 + " KB");
+        logDump();
+    }
+
+    /**
+     * Drops all caches from memory, like at the highest trim level.
+     */
+    public void onLowMemory() {
+        onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    /**
+     * Writes the size and the statistics of every cache to the log.
+     */
+    public void logDump() {
+        for (MemoryCache cache : getCaches()) {
+            Stats stats = cache.getStats();
+            Log.i(LOG_TAG, String.format(Locale.US, "%s: %d KB, %d hits, %d misses (%.0f%% hits), %d evictions",
+                    cache.getName(), cache.getMemoryBytes() / 1024, stats.getHits(), stats.getMisses(),
+                    stats.getHitRate() * 100, stats.getEvictions()));
+        }
+    }
+
+    //The part of the bytes in memory which is kept at the trim level
+    static float keepFraction(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            //The process is next to be killed, everything is on disk
+            return 0;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            return 0.1f;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return 0.25f;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            //Nothing is shown, but the user may come back soon
+            return 0.5f;
+        }
+        //The levels below are sent while the app is in the foreground
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0.25f;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return 0.5f;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return 0.75f;
+        }
+        return 1;
+    }
+
+    //Gets a copy of the registered caches, lowest priority first
+    List<MemoryCache> getCaches() {
+        synchronized (mCaches) {
+            return new ArrayList<>(mCaches);
+        }
+    }
+
+    //Estimated size of a news in memory, the section names are shared by all news
+    static long sizeOf(News news) {
+        return NEWS_OVERHEAD_BYTES + sizeOf(news.getTitle()) + sizeOf(news.getUrl()) + sizeOf(news.getThumbnailUrl());
+    }
+
+    //Estimated size of the news of a page in memory
+    static long sizeOf(NewsPage page) {
+        long bytes = 0;
+        for (News news : page.getNews()) {
+            bytes += sizeOf(news);
+        }
+        return bytes;
+    }
+
+    //Estimated size of a string in memory, two bytes for every character
+    static long sizeOf(String text) {
+        return text == null ? 0 : STRING_OVERHEAD_BYTES + 2L * text.length();
+    }
+}
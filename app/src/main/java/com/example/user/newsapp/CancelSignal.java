@@ -0,0 +1,96 @@
+package com.example.user.newsapp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells the code that runs a request that the request was cancelled.
+ * <p>
+ * The code registers listeners that stop its blocking work, for example by disconnecting the
+ * socket that a read is waiting on. The signal of the running request is bound to the thread
+ * with {@link #setCurrent(CancelSignal)}, so it does not have to be passed through every method
+ * between the {@link FetchEngine} and the {@link NewsHttpClient}.
+ * <p>
+ * {@link android.os.CancellationSignal} needs API level 16, so the app has its own.
+ */
+public class CancelSignal {
+
+    /**
+     * Stops some work when the signal is cancelled.
+     */
+    public interface OnCancelListener {
+        void onCancel();
+    }
+
+    //The signal of the request that the thread runs
+    private static final ThreadLocal<CancelSignal> CURRENT = new ThreadLocal<>();
+
+    //Guarded by this
+    private final List<OnCancelListener> mListeners = new ArrayList<>();
+
+    private volatile boolean mCanceled;
+
+    /**
+     * Returns the signal of the request that the calling thread runs, or null.
+     */
+    public static CancelSignal current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds the signal to the calling thread and returns the one that was bound before,
+     * so it can be restored when the work is done.
+     */
+    public static CancelSignal setCurrent(CancelSignal signal) {
+        CancelSignal previous = CURRENT.get();
+        if (signal == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(signal);
+        }
+        return previous;
+    }
+
+    public boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * Cancels the signal and calls the listeners. Calling it again does nothing.
+     */
+    public void cancel() {
+        List<OnCancelListener> listeners;
+        synchronized (this) {
+            if (mCanceled) {
+                return;
+            }
+            mCanceled = true;
+            listeners = new ArrayList<>(mListeners);
+            mListeners.clear();
+        }
+        //Outside the lock, the listeners may block for a moment, for example to close a socket
+        for (OnCancelListener listener : listeners) {
+            listener.onCancel();
+        }
+    }
+
+    /**
+     * Adds a listener. If the signal is already cancelled it is called right away.
+     */
+    public void addOnCancelListener(OnCancelListener listener) {
+        synchronized (this) {
+            if (!mCanceled) {
+                mListeners.add(listener);
+                return;
+            }
+        }
+        listener.onCancel();
+    }
+
+    /**
+     * Removes a listener, once its work is done and can not be stopped anymore.
+     */
+    public synchronized void removeOnCancelListener(OnCancelListener listener) {
+        mListeners.remove(listener);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.user.newsapp;
+
+/**
+ * Stops the requests to the API for a while after several of them failed in a row, so a
+ * failing API is not asked again and again. Meanwhile the requests fail right away and the
+ * loaders show their cached news.
+ * <p>
+ * While the circuit is closed every request is sent and the failures in a row are counted.
+ * At the threshold the circuit opens and no request is sent for the open time. Then one trial
+ * request is let through: if it succeeds the circuit closes, if it fails the circuit opens
+ * again for twice the time, up to a maximum. A server that asks to wait with Retry-After
+ * opens the circuit for that time.
+ * <p>
+ * {@link #allowRequest()} returns a permit which the caller passes back with the outcome.
+ * Only the outcome of the trial decides about the half open circuit, a request that was sent
+ * while the circuit was closed and ends after it opened does not change it.
+ * <p>
+ * The breaker has no Android dependencies, the time comes from a {@link Clock}.
+ */
+public class CircuitBreaker {
+
+    //States of the circuit
+    public static final int STATE_CLOSED = 0;
+    public static final int STATE_OPEN = 1;
+    public static final int STATE_HALF_OPEN = 2;
+
+    //Permits of allowRequest()
+    //The request must not be sent
+    public static final int PERMIT_DENIED = 0;
+    //A request of the closed circuit
+    public static final int PERMIT_NORMAL = 1;
+    //The trial request of the half open circuit
+    public static final int PERMIT_TRIAL = 2;
+
+    //Number of failed requests in a row that open the circuit
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    //Time the circuit stays open after it opened the first time
+    public static final long DEFAULT_OPEN_MILLIS = 30 * 1000;
+
+    //Longest time the circuit stays open
+    public static final long DEFAULT_MAX_OPEN_MILLIS = 5 * 60 * 1000;
+
+    private final Clock mClock;
+
+    private final int mFailureThreshold;
+
+    private final long mInitialOpenMillis;
+
+    private final long mMaxOpenMillis;
+
+    private int mState = STATE_CLOSED;
+
+    //Number of failed requests in a row
+    private int mFailures;
+
+    //Time the circuit stays open the next time it opens
+    private long mOpenMillis;
+
+    //Time until which the circuit is open
+    private long mOpenUntil;
+
+    //True while the trial request of the half open circuit runs
+    private boolean mTrialRunning;
+
+    /**
+     * Constructs a new {@link CircuitBreaker} with the default threshold and open times.
+     */
+    public CircuitBreaker() {
+        this(Clock.SYSTEM, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS, DEFAULT_MAX_OPEN_MILLIS);
+    }
+
+    /**
+     * Constructs a new {@link CircuitBreaker}.
+     *
+     * @param clock            gives the current time
+     * @param failureThreshold is the number of failed requests in a row that open the circuit
+     * @param openMillis       is the time the circuit stays open the first time
+     * @param maxOpenMillis    is the longest time the circuit stays open
+     */
+    public CircuitBreaker(Clock clock, int failureThreshold, long openMillis, long maxOpenMillis) {
+        mClock = clock;
+        mFailureThreshold = failureThreshold;
+        mInitialOpenMillis = openMillis;
+        mMaxOpenMillis = maxOpenMillis;
+        mOpenMillis = openMillis;
+    }
+
+    /**
+     * Returns one of the permit constants, {@link #PERMIT_DENIED} if no request may be sent now.
+     * The caller of an allowed request reports its outcome with the permit to
+     * {@link #onSuccess(int)}, {@link #onFailure(int)} or {@link #onCanceled(int)}.
+     */
+    public synchronized int allowRequest() {
+        switch (mState) {
+            case STATE_OPEN:
+                if (mClock.now() < mOpenUntil) {
+                    return PERMIT_DENIED;
+                }
+                mState = STATE_HALF_OPEN;
+                mTrialRunning = true;
+                return PERMIT_TRIAL;
+            case STATE_HALF_OPEN:
+                //Only the trial request is sent
+                if (mTrialRunning) {
+                    return PERMIT_DENIED;
+                }
+                mTrialRunning = true;
+                return PERMIT_TRIAL;
+            default:
+                return PERMIT_NORMAL;
+        }
+    }
+
+    //The server answered, it is reachable again
+    public synchronized void onSuccess(int permit) {
+        if (isTrial(permit) || mState == STATE_CLOSED) {
+            mState = STATE_CLOSED;
+            mFailures = 0;
+            mOpenMillis = mInitialOpenMillis;
+            mTrialRunning = false;
+        }
+    }
+
+    //The request failed, or the server answered with an error that may go away
+    public synchronized void onFailure(int permit) {
+        if (isTrial(permit)) {
+            //The trial failed, wait longer this time
+            open(mOpenMillis);
+            mOpenMillis = Math.min(mMaxOpenMillis, mOpenMillis * 2);
+        } else if (mState == STATE_CLOSED && ++mFailures >= mFailureThreshold) {
+            open(mOpenMillis);
+            mOpenMillis = Math.min(mMaxOpenMillis, mOpenMillis * 2);
+        }
+    }
+
+    //The request was cancelled before it had an outcome, the next request may be the trial
+    public synchronized void onCanceled(int permit) {
+        if (isTrial(permit)) {
+            mTrialRunning = false;
+        }
+    }
+
+    /**
+     * Opens the circuit for the time the server asked to wait, unless it is open longer already.
+     */
+    public synchronized void onRetryAfter(long retryAfterMillis) {
+        long until = mClock.now() + retryAfterMillis;
+        if (mState != STATE_OPEN || until > mOpenUntil) {
+            mState = STATE_OPEN;
+            mOpenUntil = until;
+            mTrialRunning = false;
+        }
+    }
+
+    //Gets one of the state constants
+    public synchronized int getState() {
+        return mState;
+    }
+
+    //True if the permit is of the trial that the half open circuit waits for. A Retry-After
+    //may have opened the circuit again while the trial ran, then it has no say anymore
+    private boolean isTrial(int permit) {
+        return permit == PERMIT_TRIAL && mState == STATE_HALF_OPEN && mTrialRunning;
+    }
+
+    private void open(long millis) {
+        mState = STATE_OPEN;
+        mOpenUntil = mClock.now() + millis;
+        mTrialRunning = false;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.user.newsapp;
+
+/**
+ * Source of the current time, in milliseconds, so the classes that wait for a time can be
+ * tested with a fake clock.
+ */
+public interface Clock {
+
+    //Uses the time of the system
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long now() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    long now();
+}
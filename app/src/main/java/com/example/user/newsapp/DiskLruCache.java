@@ -0,0 +1,236 @@
+package com.example.user.newsapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded key/value store on disk.
+ * <p>
+ * Every value is kept in its own file inside the cache directory. The index of the files is
+ * kept in memory in access order, so when the total size goes over the limit the least
+ * recently used entries are deleted first. The last access time is written to the file's
+ * modification time, which lets the order survive a restart of the process.
+ */
+public class DiskLruCache {
+
+    //Suffix of the files which are being written and are not complete yet
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    //Directory where the files are stored
+    private final File mDirectory;
+
+    //Maximum number of bytes of all files together
+    private final long mMaxBytes;
+
+    //Index of the entries in access order, file name -> length in bytes
+    private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    //Number of bytes of all entries in the index
+    private long mSize;
+
+    //The index is read from the directory on first use, off the main thread
+    private boolean mInitialized;
+
+    //Receives the entries that are evicted or removed, or null
+    private OnRemovedListener mOnRemovedListener;
+
+    /**
+     * Receives the names of the entries that were evicted or removed. It is called while the
+     * cache is locked, so it must not call the cache.
+     */
+    public interface OnRemovedListener {
+        //The name is the one of the entry in getAll()
+        void onRemoved(String name);
+    }
+
+    /**
+     * Constructs a new {@link DiskLruCache}.
+     *
+     * @param directory where the files of the cache are stored
+     * @param maxBytes  is the maximum size of all entries together
+     */
+    public DiskLruCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    public synchronized void setOnRemovedListener(OnRemovedListener listener) {
+        mOnRemovedListener = listener;
+    }
+
+    /**
+     * Returns the value stored for the key or null if there is no such entry.
+     */
+    public synchronized byte[] get(String key) {
+        initialize();
+        String fileName = fileNameFor(key);
+        if (!mEntries.containsKey(fileName)) {
+            return null;
+        }
+        File file = new File(mDirectory, fileName);
+        try {
+            byte[] value = readFile(file);
+            //Remember the access on disk for the next process
+            file.setLastModified(System.currentTimeMillis());
+            return value;
+        } catch (IOException e) {
+            //The file is unreadable, drop the entry
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the values of all entries by their names, least recently used first.
+     * Reading them does not count as an access.
+     */
+    public synchronized Map<String, byte[]> getAll() {
+        initialize();
+        Map<String, byte[]> values = new LinkedHashMap<>();
+        for (String fileName : mEntries.keySet()) {
+            try {
+                values.put(fileName, readFile(new File(mDirectory, fileName)));
+            } catch (IOException e) {
+                //Unreadable files are dropped by the next get() of their key
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Stores the value for the key and evicts the least recently used entries
+     * if the cache has grown over its maximum size.
+     * The file is written to a temporary file first, so readers never see a partial value.
+     */
+    public synchronized void put(String key, byte[] value) throws IOException {
+        initialize();
+        if (value.length > mMaxBytes) {
+            //The value can never fit, do not evict everything else for it
+            remove(key);
+            return;
+        }
+        String fileName = fileNameFor(key);
+        File file = new File(mDirectory, fileName);
+        File temp = new File(mDirectory, fileName + TEMP_SUFFIX);
+        FileOutputStream outputStream = new FileOutputStream(temp);
+        try {
+            outputStream.write(value);
+        } finally {
+            outputStream.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not rename " + temp);
+        }
+        Long previous = mEntries.put(fileName, (long) value.length);
+        if (previous != null) {
+            mSize -= previous;
+        }
+        mSize += value.length;
+        trimToSize(mMaxBytes);
+    }
+
+    /**
+     * Removes the entry for the key if it exists.
+     */
+    public synchronized void remove(String key) {
+        initialize();
+        String fileName = fileNameFor(key);
+        Long length = mEntries.remove(fileName);
+        if (length != null) {
+            mSize -= length;
+            onRemoved(fileName);
+        }
+        new File(mDirectory, fileName).delete();
+    }
+
+    /**
+     * Returns the number of bytes of all entries together.
+     */
+    public synchronized long size() {
+        initialize();
+        return mSize;
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache is not bigger than maxBytes.
+     */
+    public synchronized void trimToSize(long maxBytes) {
+        initialize();
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (mSize > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            new File(mDirectory, eldest.getKey()).delete();
+            mSize -= eldest.getValue();
+            iterator.remove();
+            onRemoved(eldest.getKey());
+        }
+    }
+
+    private void onRemoved(String fileName) {
+        if (mOnRemovedListener != null) {
+            mOnRemovedListener.onRemoved(fileName);
+        }
+    }
+
+    //Reads the existing files into the index, oldest access first
+    private void initialize() {
+        if (mInitialized) {
+            return;
+        }
+        mInitialized = true;
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            return;
+        }
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long firstModified = first.lastModified();
+                long secondModified = second.lastModified();
+                return firstModified < secondModified ? -1 : (firstModified == secondModified ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                //Left over from a write that did not finish
+                file.delete();
+            } else {
+                mEntries.put(file.getName(), file.length());
+                mSize += file.length();
+            }
+        }
+    }
+
+    //Keys are URLs, so they are turned into safe file names, which are the names of the entries
+    static String fileNameFor(String key) {
+        return Integer.toHexString(key.hashCode()) + "_" + key.length();
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.user.newsapp;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads the same page of several searches at the same time and merges them into one page.
+ * <p>
+ * The requests run in parallel on a bounded pool of threads, so the whole load takes about as
+ * long as the slowest request. A request that fails or does not finish in time is left out,
+ * the results of the other requests are still returned. The merged news are ordered by
+ * publication date, newest first, and every url appears only once.
+ */
+public class FeedAggregator {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = FeedAggregator.class.getSimpleName();
+
+    //Maximum number of requests which run at the same time
+    private static final int MAX_PARALLEL_REQUESTS = 4;
+
+    //Time after which a request is given up
+    private static final long REQUEST_TIMEOUT_MILLIS = 20000;
+
+    //The only instance, shared by all loaders
+    private static FeedAggregator sInstance;
+
+    //Runs the requests
+    private final ExecutorService mExecutor;
+
+    //Time that every request may take, counted from the start of fetch()
+    private final long mTimeoutMillis;
+
+    //Loads a single page
+    private final PageFetcher mFetcher;
+
+    /**
+     * Loads a single page of news from an url.
+     */
+    public interface PageFetcher {
+        //Returns the page, or null if it could not be loaded
+        NewsPage fetchPage(String url);
+    }
+
+    //Orders the news by publication time, newest first. News without date have the smallest
+    //time NO_DATE, so they are at the end
+    static final Comparator<News> NEWEST_FIRST = new Comparator<News>() {
+        @Override
+        public int compare(News first, News second) {
+            long firstTime = first.getPublishedAt();
+            long secondTime = second.getPublishedAt();
+            return firstTime < secondTime ? 1 : (firstTime == secondTime ? 0 : -1);
+        }
+    };
+
+    /**
+     * Constructs a new {@link FeedAggregator}.
+     *
+     * @param executor      runs the requests, its number of threads limits the parallel requests
+     * @param timeoutMillis is the time every request may take
+     * @param fetcher       loads a single page
+     */
+    public FeedAggregator(ExecutorService executor, long timeoutMillis, PageFetcher fetcher) {
+        mExecutor = executor;
+        mTimeoutMillis = timeoutMillis;
+        mFetcher = fetcher;
+    }
+
+    /**
+     * Returns the aggregator of the application, which loads the pages with {@link QueryUtils}.
+     */
+    public static synchronized FeedAggregator getInstance() {
+        if (sInstance == null) {
+            sInstance = new FeedAggregator(Executors.newFixedThreadPool(MAX_PARALLEL_REQUESTS),
+                    REQUEST_TIMEOUT_MILLIS, new PageFetcher() {
+                @Override
+                public NewsPage fetchPage(String url) {
+                    return QueryUtils.fetchNewsPage(url);
+                }
+            });
+        }
+        return sInstance;
+    }
+
+    /**
+     * Loads the urls in parallel and merges their news.
+     *
+     * @param urls are the urls of the same page of every search
+     * @return the merged page, or null if none of the requests succeeded.
+     * It has as many pages as the longest of the searches.
+     */
+    public NewsPage fetch(List<String> urls) throws InterruptedException {
+        List<NewsPage> pages = new ArrayList<>(urls.size());
+        for (NewsPage page : fetchAll(urls)) {
+            if (page != null) {
+                pages.add(page);
+            }
+        }
+        return pages.isEmpty() ? null : merge(pages);
+    }
+
+    /**
+     * Loads the urls in parallel without merging them, so the news of every search can also be
+     * stored on their own.
+     *
+     * @param urls are the urls of the same page of every search
+     * @return the page of every url in the same order, null for a request that failed
+     */
+    public List<NewsPage> fetchAll(List<String> urls) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + mTimeoutMillis;
+        //Every request has its own signal, so a request that times out can be aborted alone.
+        //Cancelling the load that called fetch() cancels all of them
+        final List<CancelSignal> signals = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            signals.add(new CancelSignal());
+        }
+        CancelSignal.OnCancelListener cancelAll = new CancelSignal.OnCancelListener() {
+            @Override
+            public void onCancel() {
+                for (CancelSignal signal : signals) {
+                    signal.cancel();
+                }
+            }
+        };
+        CancelSignal parent = CancelSignal.current();
+        if (parent != null) {
+            parent.addOnCancelListener(cancelAll);
+        }
+        try {
+            List<Future<NewsPage>> futures = new ArrayList<>(urls.size());
+            for (int i = 0; i < urls.size(); i++) {
+                final String url = urls.get(i);
+                final CancelSignal signal = signals.get(i);
+                futures.add(mExecutor.submit(new Callable<NewsPage>() {
+                    @Override
+                    public NewsPage call() throws Exception {
+                        CancelSignal previous = CancelSignal.setCurrent(signal);
+                        try {
+                            return mFetcher.fetchPage(url);
+                        } finally {
+                            CancelSignal.setCurrent(previous);
+                        }
+                    }
+                }));
+            }
+
+            List<NewsPage> pages = new ArrayList<>(urls.size());
+            for (int i = 0; i < futures.size(); i++) {
+                Future<NewsPage> future = futures.get(i);
+                NewsPage page = null;
+                try {
+                    long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                    page = future.get(remaining, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    Log.e(LOG_TAG, "Request timed out: " + urls.get(i));
+                    //An interrupt does not stop a read that waits for the network, the signal
+                    //closes the socket so the thread of the pool is free again
+                    signals.get(i).cancel();
+                    future.cancel(true);
+                } catch (ExecutionException e) {
+                    Log.e(LOG_TAG, "Request failed: " + urls.get(i), e.getCause());
+                } catch (InterruptedException e) {
+                    //The load was cancelled, stop all requests
+                    cancelAll.onCancel();
+                    for (Future<NewsPage> other : futures) {
+                        other.cancel(true);
+                    }
+                    throw e;
+                }
+                pages.add(page);
+            }
+            return pages;
+        } finally {
+            if (parent != null) {
+                parent.removeOnCancelListener(cancelAll);
+            }
+        }
+    }
+
+    /**
+     * Merges pages into one page ordered by date, newest first, without duplicated urls.
+     * News with the same date keep the order of their search.
+     */
+    static NewsPage merge(List<NewsPage> pages) {
+        List<News> merged = new ArrayList<>();
+        Set<String> urls = new HashSet<>();
+        int currentPage = pages.get(0).getCurrentPage();
+        int totalPages = 0;
+        for (NewsPage page : pages) {
+            for (News news : page.getNews()) {
+                //News without url can not be duplicates
+                if (news.getUrl() == null || urls.add(news.getUrl())) {
+                    merged.add(news);
+                }
+            }
+            totalPages = Math.max(totalPages, page.getPages());
+        }
+        //Collections.sort is stable
+        Collections.sort(merged, NEWEST_FIRST);
+        return new NewsPage(merged, currentPage, totalPages);
+    }
+
+    /**
+     * Adds the news of a delta refresh, which were published since the newest news of the page,
+     * to the page. Both lists are ordered newest first, so only the start of the page is merged
+     * and the rest is copied. News whose url is already on the page are skipped. The page keeps
+     * its size, the oldest news drop out.
+     *
+     * @param page  is a page ordered by {@link #NEWEST_FIRST}
+     * @param newer are the news of the delta, ordered newest first
+     */
+    static NewsPage mergeNewer(NewsPage page, List<News> newer) {
+        List<News> news = page.getNews();
+        if (newer.isEmpty()) {
+            return page;
+        }
+        //Only the news of the page in the time range of the delta can be duplicates
+        long oldestNewer = newer.get(newer.size() - 1).getPublishedAt();
+        int overlap = oldestNewer == News.NO_DATE ? news.size() : countNewerThan(news, oldestNewer - 1);
+        Set<String> urls = new HashSet<>();
+        for (int i = 0; i < overlap; i++) {
+            if (news.get(i).getUrl() != null) {
+                urls.add(news.get(i).getUrl());
+            }
+        }
+
+        int size = news.isEmpty() ? newer.size() : news.size();
+        List<News> merged = new ArrayList<>(size);
+        int i = 0;
+        int j = 0;
+        while (merged.size() < size && (i < overlap || j < newer.size())) {
+            if (j < newer.size() && urls.contains(newer.get(j).getUrl())) {
+                j++;
+            } else if (i >= overlap || (j < newer.size() && NEWEST_FIRST.compare(newer.get(j), news.get(i)) < 0)) {
+                merged.add(newer.get(j++));
+            } else {
+                merged.add(news.get(i++));
+            }
+        }
+        //The rest of the page is older than all news of the delta
+        int rest = Math.min(news.size() - overlap, size - merged.size());
+        merged.addAll(news.subList(overlap, overlap + rest));
+        return new NewsPage(merged, page.getCurrentPage(), page.getPages());
+    }
+
+    /**
+     * Returns the news of a list ordered by {@link #NEWEST_FIRST}, which were published in a time
+     * range. The range is found with two binary searches, the dates are not parsed again.
+     *
+     * @param newestFirst are the news ordered newest first, like a merged page
+     * @param fromMillis  is the first time of the range, inclusive
+     * @param toMillis    is the last time of the range, inclusive
+     * @return a view of the part of the list, it must not be used after the list changes
+     */
+    static List<News> publishedBetween(List<News> newestFirst, long fromMillis, long toMillis) {
+        int start = countNewerThan(newestFirst, toMillis);
+        int end = fromMillis == Long.MIN_VALUE ? newestFirst.size() : countNewerThan(newestFirst, fromMillis - 1);
+        return newestFirst.subList(start, Math.max(start, end));
+    }
+
+    //Returns the number of news at the start of the list that were published after the time
+    private static int countNewerThan(List<News> newestFirst, long millis) {
+        int low = 0;
+        int high = newestFirst.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (newestFirst.get(middle).getPublishedAt() > millis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,476 @@
+package com.example.user.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * The local stores of the subscribed topics and their unified timeline.
+ * <p>
+ * Every topic has its own {@link TopicStore}, which the loads of the topic fill. The stores
+ * are kept in memory once they were read and are written to disk in the background. A page
+ * of the timeline of several topics is a k-way merge of their sorted stores: only the news up
+ * to the end of the page are visited, nothing is sorted and the stores are not copied. So
+ * switching between a topic and the combined view costs a page of news, not the size of the
+ * stores, even with tens of thousands of stored news.
+ * <p>
+ * The stores in memory are trimmed by the {@link CacheManager} as the last of the caches,
+ * the least recently used first. They are written to disk before they are dropped. A store
+ * that is being added to, or whose write has not finished, stays in memory, so nobody reads
+ * its old copy from disk meanwhile.
+ */
+public class FeedStore implements CacheManager.MemoryCache {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = FeedStore.class.getSimpleName();
+
+    //Maximum size of the stores on disk, a full store is about 1 MB
+    private static final long DISK_CACHE_BYTES = 16 * 1024 * 1024;
+
+    //Name of the directory inside the app's files directory
+    private static final String DIRECTORY_NAME = "topics";
+
+    //The only instance, shared by the loaders and the prefetch
+    private static FeedStore sInstance;
+
+    //The stores of the topics on disk, by topic key
+    private final DiskLruCache mDiskCache;
+
+    //Reads and writes the stores in the background
+    private final Executor mDiskExecutor;
+
+    //The stores that were read, by topic key, the least recently used first, guarded by itself
+    private final Map<String, TopicStore> mTopics = new LinkedHashMap<>(16, 0.75f, true);
+
+    //The stores that changed and were not written yet by topic key, guarded by mTopics. The
+    //stores are kept here until their write finished, so a store that is trimmed from memory
+    //meanwhile is still written and found by getTopic
+    private final Map<String, TopicStore> mPendingWrites = new HashMap<>();
+
+    //Number of add() calls that run for every topic key, their stores are not trimmed.
+    //Guarded by mTopics
+    private final Map<String, Integer> mAdding = new HashMap<>();
+
+    //True while a write of the pending stores is scheduled and has not started, guarded by mTopics
+    private boolean mWriteScheduled;
+
+    private final CacheManager.Stats mStats = new CacheManager.Stats();
+
+    //Writes all stores that changed, several loads in a row cause a single write per store
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            writePending();
+        }
+    };
+
+    /**
+     * Constructs a new {@link FeedStore}.
+     *
+     * @param diskCache    keeps the stores of the topics
+     * @param diskExecutor reads and writes the stores, a background thread in the app
+     */
+    public FeedStore(DiskLruCache diskCache, Executor diskExecutor) {
+        mDiskCache = diskCache;
+        mDiskExecutor = diskExecutor;
+    }
+
+    /**
+     * Returns the store of the application, creating it on first use.
+     */
+    public static synchronized FeedStore getInstance(Context context) {
+        if (sInstance == null) {
+            //The subscriptions are the user's data, they are not kept in the cache directory
+            File directory = new File(context.getApplicationContext().getFilesDir(), DIRECTORY_NAME);
+            sInstance = new FeedStore(new DiskLruCache(directory, DISK_CACHE_BYTES),
+                    Executors.newSingleThreadExecutor());
+            CacheManager.getInstance().register(sInstance);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the store of the topic if it is in memory, else null.
+     * This does not read from disk, so it can be called on the main thread.
+     */
+    public TopicStore peekTopic(String key) {
+        TopicStore store;
+        synchronized (mTopics) {
+            store = mTopics.get(key);
+        }
+        if (store != null) {
+            mStats.recordHit();
+        } else {
+            mStats.recordMiss();
+        }
+        return store;
+    }
+
+    /**
+     * Returns the store of the topic, read from disk on first use. Empty for a new topic.
+     */
+    public TopicStore getTopic(String key) {
+        TopicStore store = peekTopic(key);
+        if (store != null) {
+            return store;
+        }
+        synchronized (mTopics) {
+            //A store that was trimmed before its last write is not on disk yet
+            store = mPendingWrites.get(key);
+            if (store != null) {
+                mTopics.put(key, store);
+                return store;
+            }
+        }
+        //The disk is read without the lock, at worst two threads read the same store
+        TopicStore loaded = read(key);
+        synchronized (mTopics) {
+            store = mTopics.get(key);
+            if (store == null) {
+                store = loaded;
+                mTopics.put(key, store);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Reads the stores of the topics from disk on a background thread, so the timeline can
+     * be peeked on the main thread afterwards. The stores of the other topics are dropped from
+     * memory, they were unsubscribed.
+     *
+     * @param keys are the keys of all subscribed topics
+     */
+    public void loadAsync(final List<String> keys) {
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mTopics) {
+                    Iterator<String> iterator = mTopics.keySet().iterator();
+                    while (iterator.hasNext()) {
+                        String key = iterator.next();
+                        //A store that changes is dropped once it was written
+                        if (!keys.contains(key) && isEvictable(key)) {
+                            iterator.remove();
+                        }
+                    }
+                }
+                for (String key : keys) {
+                    getTopic(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Merges loaded news of the topic into its store, the store is written to disk later.
+     */
+    public void add(String key, List<News> news) {
+        //The store must not be trimmed between getTopic and the pending write
+        synchronized (mTopics) {
+            Integer adding = mAdding.get(key);
+            mAdding.put(key, adding == null ? 1 : adding + 1);
+        }
+        try {
+            TopicStore store = getTopic(key);
+            if (!store.add(news)) {
+                return;
+            }
+            boolean schedule;
+            synchronized (mTopics) {
+                //A write that is already scheduled also writes this store
+                schedule = !mWriteScheduled;
+                mWriteScheduled = true;
+                mPendingWrites.put(key, store);
+            }
+            if (schedule) {
+                mDiskExecutor.execute(mWriteRunnable);
+            }
+        } finally {
+            synchronized (mTopics) {
+                int adding = mAdding.get(key);
+                if (adding == 1) {
+                    mAdding.remove(key);
+                } else {
+                    mAdding.put(key, adding - 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a page of the timeline of the topics, newest first. Reads the stores that are not
+     * in memory from disk, so it is called on a background thread.
+     *
+     * @param keys     are the keys of the topics, news with the same date keep this order
+     * @param page     is the number of the page, starting at 1
+     * @param pageSize is the number of news of a page
+     * @return the page, or null if the stores have no news for it
+     */
+    public NewsPage getTimeline(List<String> keys, int page, int pageSize) {
+        News[][] streams = new News[keys.size()][];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = getTopic(keys.get(i)).array();
+        }
+        return timeline(streams, page, pageSize);
+    }
+
+    /**
+     * Returns a page of the timeline like {@link #getTimeline}, or null if one of the stores
+     * is not in memory. Can be called on the main thread.
+     */
+    public NewsPage peekTimeline(List<String> keys, int page, int pageSize) {
+        News[][] streams = new News[keys.size()][];
+        for (int i = 0; i < streams.length; i++) {
+            TopicStore store = peekTopic(keys.get(i));
+            if (store == null) {
+                return null;
+            }
+            streams[i] = store.array();
+        }
+        return timeline(streams, page, pageSize);
+    }
+
+    private static NewsPage timeline(News[][] streams, int page, int pageSize) {
+        long start = Metrics.startTimer();
+        try {
+            int total = 0;
+            for (News[] stream : streams) {
+                total += stream.length;
+            }
+            int offset = (page - 1) * pageSize;
+            if (offset >= total) {
+                return null;
+            }
+            List<News> news;
+            if (streams.length == 1) {
+                //A single topic is a slice of its store
+                int end = Math.min(total, offset + pageSize);
+                news = new ArrayList<>(Arrays.asList(streams[0]).subList(offset, end));
+            } else {
+                news = merge(streams, offset, pageSize);
+            }
+            if (news.isEmpty()) {
+                return null;
+            }
+            //The news that are in several topics are counted for each, the last page may be empty
+            return new NewsPage(news, page, (total + pageSize - 1) / pageSize);
+        } finally {
+            Metrics.stopTimer(Metrics.TIMELINE, start);
+        }
+    }
+
+    /**
+     * Merges streams of news which are ordered by {@link FeedAggregator#NEWEST_FIRST} and returns
+     * a part of the merged order. A heap holds the next news of every stream, so every news up to
+     * the end of the part is visited once. A news that is in several streams has the same date in
+     * all of them, so it is only looked for among the news with the same date.
+     *
+     * @param streams are the news of every topic, newest first. They are not changed
+     * @param offset  is the number of merged news that are skipped
+     * @param limit   is the maximum number of news that are returned
+     * @return the news after the offset, without duplicated urls
+     */
+    static List<News> merge(News[][] streams, int offset, int limit) {
+        //Position of the next news of every stream
+        int[] positions = new int[streams.length];
+        //Binary heap of the streams that have news left, the one with the newest next news first
+        int[] heap = new int[streams.length];
+        int heapSize = 0;
+        for (int stream = 0; stream < streams.length; stream++) {
+            if (streams[stream].length > 0) {
+                heap[heapSize++] = stream;
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(heap, heapSize, i, streams, positions);
+        }
+
+        List<News> merged = new ArrayList<>(limit);
+        //Urls of the taken news with the date of the last taken news
+        List<String> runUrls = new ArrayList<>();
+        long runTime = 0;
+        int skipped = 0;
+        while (heapSize > 0 && merged.size() < limit) {
+            int stream = heap[0];
+            News news = streams[stream][positions[stream]++];
+            if (positions[stream] == streams[stream].length) {
+                heap[0] = heap[--heapSize];
+            }
+            if (heapSize > 0) {
+                siftDown(heap, heapSize, 0, streams, positions);
+            }
+
+            if (news.getPublishedAt() != runTime) {
+                runUrls.clear();
+                runTime = news.getPublishedAt();
+            }
+            //News without url can not be duplicates
+            String url = news.getUrl();
+            if (url != null) {
+                if (runUrls.contains(url)) {
+                    continue;
+                }
+                runUrls.add(url);
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                merged.add(news);
+            }
+        }
+        return merged;
+    }
+
+    //Moves the stream at the index down the heap until the streams below have older news
+    private static void siftDown(int[] heap, int size, int index, News[][] streams, int[] positions) {
+        int stream = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && isBefore(heap[child + 1], heap[child], streams, positions)) {
+                child++;
+            }
+            if (!isBefore(heap[child], stream, streams, positions)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = stream;
+    }
+
+    //True if the next news of the first stream comes before the next news of the second one
+    private static boolean isBefore(int first, int second, News[][] streams, int[] positions) {
+        int order = FeedAggregator.NEWEST_FIRST.compare(
+                streams[first][positions[first]], streams[second][positions[second]]);
+        //News with the same date keep the order of the topics
+        return order < 0 || (order == 0 && first < second);
+    }
+
+    //Reads the store of the topic from disk, an empty store if there is none
+    private TopicStore read(String key) {
+        TopicStore store = new TopicStore();
+        byte[] data = mDiskCache.get(key);
+        if (data == null) {
+            return store;
+        }
+        try {
+            NewsPage page = NewsSnapshot.decode(data, key);
+            if (page != null) {
+                store.set(page.getNews());
+            }
+        } catch (IOException e) {
+            //Unknown version or corrupted file, it is replaced by the next write
+            Log.e(LOG_TAG, "Problem reading the store of " + key, e);
+            mDiskCache.remove(key);
+        }
+        return store;
+    }
+
+    //Writes the stores that changed since the last write. A store stays pending until its
+    //write finished, and also after it if it changed meanwhile
+    private void writePending() {
+        Map<String, TopicStore> stores;
+        synchronized (mTopics) {
+            //A store that changes from now on schedules another write
+            mWriteScheduled = false;
+            stores = new HashMap<>(mPendingWrites);
+        }
+        for (Map.Entry<String, TopicStore> entry : stores.entrySet()) {
+            String key = entry.getKey();
+            TopicStore store = entry.getValue();
+            //The version is read before the news, a write after it changes the version
+            int version = store.getVersion();
+            try {
+                NewsPage page = new NewsPage(Arrays.asList(store.array()), 1, 1);
+                mDiskCache.put(key, NewsSnapshot.encode(key, page, TopicStore.MAX_NEWS));
+            } catch (IOException e) {
+                //Not written again until the store changes, the disk keeps the older copy
+                Log.e(LOG_TAG, "Problem writing the store of " + key, e);
+            }
+            synchronized (mTopics) {
+                if (mPendingWrites.get(key) == store && store.getVersion() == version) {
+                    mPendingWrites.remove(key);
+                }
+            }
+        }
+    }
+
+    //True if the store of the topic can be dropped from memory, it is the same on disk
+    //and nobody is adding to it. Called with the lock of mTopics
+    private boolean isEvictable(String key) {
+        return !mPendingWrites.containsKey(key) && !mAdding.containsKey(key);
+    }
+
+    @Override
+    public String getName() {
+        return "topics";
+    }
+
+    @Override
+    public int getPriority() {
+        return CacheManager.PRIORITY_TOPICS;
+    }
+
+    //The stores count their bytes, so this is a sum over the topics and not over the news
+    @Override
+    public long getMemoryBytes() {
+        long bytes = 0;
+        synchronized (mTopics) {
+            for (TopicStore store : mTopics.values()) {
+                bytes += store.getMemoryBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops the least recently used stores from memory on the disk thread, after the changed
+     * stores were written. A dropped store is read from disk again when it is needed.
+     */
+    @Override
+    public void trimMemory(final long maxBytes) {
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writePending();
+                synchronized (mTopics) {
+                    long bytes = getMemoryBytes();
+                    Iterator<Map.Entry<String, TopicStore>> iterator = mTopics.entrySet().iterator();
+                    while (bytes > maxBytes && iterator.hasNext()) {
+                        Map.Entry<String, TopicStore> entry = iterator.next();
+                        //A store that changed since the write stays until the next trim
+                        if (isEvictable(entry.getKey())) {
+                            bytes -= entry.getValue().getMemoryBytes();
+                            iterator.remove();
+                            mStats.recordEvictions(1);
+                        }
+                    }
+                }
+                //The trim runs after the CacheManager logged the sizes
+                Log.i(LOG_TAG, "Trimmed the stores of the topics to " + getMemoryBytes() / 1024 + " KB");
+            }
+        });
+    }
+
+    @Override
+    public CacheManager.Stats getStats() {
+        return mStats;
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.user.newsapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the loads of news pages on a bounded pool of threads and delivers their results on the
+ * main thread.
+ * <p>
+ * Waiting loads are ordered by priority, so the page the user waits for runs before the next
+ * pages and the background prefetch. Loads with the same priority run in the order in which they
+ * were submitted. A cancelled load is removed from the queue. A running load is interrupted and
+ * its {@link CancelSignal} disconnects the socket it is reading from, so a stale load stops
+ * using the network right away instead of reading until the timeout.
+ */
+public class FetchEngine {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = FetchEngine.class.getSimpleName();
+
+    //Priorities, a smaller number runs first
+    //The first page, which the user waits for
+    public static final int PRIORITY_USER = 0;
+    //The next pages while the user scrolls
+    public static final int PRIORITY_PAGING = 1;
+    //The background prefetch
+    public static final int PRIORITY_PREFETCH = 2;
+
+    //Number of loads which run at the same time
+    private static final int THREADS = 3;
+
+    //The only instance, shared by the activity and the prefetch
+    private static FetchEngine sInstance;
+
+    private final ThreadPoolExecutor mExecutor;
+
+    //Runs the callbacks
+    private final Executor mDeliveryExecutor;
+
+    //Order of the submitted loads, keeps loads of the same priority first in first out
+    private final AtomicLong mSequence = new AtomicLong();
+
+    /**
+     * A load that runs on the engine.
+     */
+    public interface Job {
+        /**
+         * Loads the page on a thread of the engine.
+         *
+         * @param request of the load, to publish results before the last one
+         * @return the page, or null if nothing could be loaded
+         */
+        NewsPage run(Request request) throws InterruptedException;
+    }
+
+    /**
+     * Receives the results of a load on the main thread. It is not called anymore after the
+     * load was cancelled or detached.
+     */
+    public interface Callback {
+        //A result which is followed by a newer one, like the cached news before the network
+        void onPartialResult(NewsPage page);
+
+        //The last result, null if nothing could be loaded
+        void onResult(NewsPage page);
+    }
+
+    /**
+     * Constructs a new {@link FetchEngine}.
+     *
+     * @param threads          is the number of loads which run at the same time
+     * @param deliveryExecutor runs the callbacks, the main thread in the app
+     */
+    public FetchEngine(int threads, Executor deliveryExecutor) {
+        mDeliveryExecutor = deliveryExecutor;
+        mExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        //The threads must not compete with the main thread for the CPU. The
+                        //background priority still gives the load the user waits for its share,
+                        //Thread.MIN_PRIORITY would put it behind all background work of the system
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "FetchEngine #" + mCount.incrementAndGet());
+            }
+        });
+    }
+
+    /**
+     * Returns the engine of the application, which delivers the results on the main thread.
+     */
+    public static synchronized FetchEngine getInstance() {
+        if (sInstance == null) {
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            sInstance = new FetchEngine(THREADS, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    mainHandler.post(command);
+                }
+            });
+        }
+        return sInstance;
+    }
+
+    /**
+     * Queues a load.
+     *
+     * @param priority is one of the priority constants
+     * @param job      loads the page
+     * @param callback receives the results, may be null
+     * @return the request, to cancel the load or to wait for it
+     */
+    public Request submit(int priority, Job job, Callback callback) {
+        Request request = new Request(priority, mSequence.getAndIncrement(), job, callback);
+        mExecutor.execute(request);
+        return request;
+    }
+
+    //Gets the number of loads which wait for a thread
+    public int getQueuedCount() {
+        return mExecutor.getQueue().size();
+    }
+
+    /**
+     * Stops the threads, the queued loads never run and the running ones are interrupted.
+     * The engine of the app lives as long as the process, the ones of the tests are shut down.
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * A submitted load.
+     */
+    public final class Request implements Runnable, Comparable<Request> {
+
+        private final int mPriority;
+
+        private final long mSequence;
+
+        private final Job mJob;
+
+        //Set to null when the results are not wanted anymore
+        private volatile Callback mCallback;
+
+        //Aborts the network requests of the load
+        private final CancelSignal mSignal = new CancelSignal();
+
+        //Counted down when the load has finished or was removed from the queue
+        private final CountDownLatch mDone = new CountDownLatch(1);
+
+        private volatile NewsPage mResult;
+
+        //The thread that runs the load, guarded by this
+        private Thread mThread;
+
+        Request(int priority, long sequence, Job job, Callback callback) {
+            mPriority = priority;
+            mSequence = sequence;
+            mJob = job;
+            mCallback = callback;
+        }
+
+        @Override
+        public int compareTo(Request other) {
+            if (mPriority != other.mPriority) {
+                return mPriority < other.mPriority ? -1 : 1;
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (mSignal.isCanceled()) {
+                    mDone.countDown();
+                    return;
+                }
+                mThread = Thread.currentThread();
+            }
+            CancelSignal previous = CancelSignal.setCurrent(mSignal);
+            NewsPage result = null;
+            try {
+                result = mJob.run(this);
+            } catch (InterruptedException e) {
+                Log.i(LOG_TAG, "Load was cancelled");
+            } finally {
+                CancelSignal.setCurrent(previous);
+                synchronized (this) {
+                    mThread = null;
+                }
+                //Clear the interrupt of a cancel, the thread goes on with the next load
+                Thread.interrupted();
+                mResult = result;
+                mDone.countDown();
+            }
+            deliver(result, true);
+        }
+
+        /**
+         * Delivers a result before the last one to the callback. Called by the job.
+         */
+        public void publish(NewsPage page) {
+            deliver(page, false);
+        }
+
+        private void deliver(final NewsPage page, final boolean last) {
+            if (mCallback == null) {
+                return;
+            }
+            mDeliveryExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    //The load may have been cancelled while the result was on its way
+                    Callback callback = mCallback;
+                    if (callback == null) {
+                        return;
+                    }
+                    if (last) {
+                        callback.onResult(page);
+                    } else {
+                        callback.onPartialResult(page);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Cancels the load: it is removed from the queue, or it is interrupted and its
+         * connections are closed. The callback is not called anymore.
+         */
+        public void cancel() {
+            mCallback = null;
+            mSignal.cancel();
+            if (mExecutor.remove(this)) {
+                mDone.countDown();
+                return;
+            }
+            synchronized (this) {
+                if (mThread != null) {
+                    mThread.interrupt();
+                }
+            }
+        }
+
+        /**
+         * Lets the load finish without delivering its results, for example when the activity
+         * is recreated after a rotation. The result still goes into the cache.
+         */
+        public void detach() {
+            mCallback = null;
+        }
+
+        public boolean isCanceled() {
+            return mSignal.isCanceled();
+        }
+
+        /**
+         * Waits until the load has finished and returns its last result,
+         * null if it was cancelled before it ran.
+         */
+        public NewsPage await() throws InterruptedException {
+            mDone.await();
+            return mResult;
+        }
+    }
+}
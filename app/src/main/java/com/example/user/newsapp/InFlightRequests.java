@@ -0,0 +1,147 @@
+package com.example.user.newsapp;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Registry of the requests that are running, so concurrent requests for the same url share
+ * one network call.
+ * <p>
+ * The first caller for an url runs the request on its own thread. Callers that arrive while
+ * it runs wait for it and get the same page. Once the request has finished it is removed,
+ * so the next caller starts a new request.
+ * <p>
+ * A shared request is only aborted when every caller that waits for it was cancelled with its
+ * {@link CancelSignal}. While one of them still wants the page, the request goes on.
+ */
+public class InFlightRequests {
+
+    //Loads a page when no request for the url is running
+    private final FeedAggregator.PageFetcher mFetcher;
+
+    //The running requests by url, guarded by itself
+    private final Map<String, Call> mRequests = new HashMap<>();
+
+    /**
+     * A running request and the callers that wait for it.
+     */
+    private static final class Call {
+
+        final FutureTask<NewsPage> mTask;
+
+        //Aborts the request, it is bound to the thread that runs it
+        final CancelSignal mSignal = new CancelSignal();
+
+        //Number of callers that were not cancelled, guarded by mRequests
+        int mWaiters;
+
+        Call(FutureTask<NewsPage> task) {
+            mTask = task;
+        }
+    }
+
+    /**
+     * Constructs a new {@link InFlightRequests}.
+     *
+     * @param fetcher loads a single page
+     */
+    public InFlightRequests(FeedAggregator.PageFetcher fetcher) {
+        mFetcher = fetcher;
+    }
+
+    /**
+     * Returns the page of the url, from the request that is already running if there is one.
+     *
+     * @return the page, or null if it could not be loaded or the waiting thread was interrupted
+     */
+    public NewsPage fetch(final String url) {
+        final Call call;
+        boolean owner;
+        synchronized (mRequests) {
+            Call running = mRequests.get(url);
+            owner = running == null;
+            call = owner ? new Call(new FutureTask<>(new Callable<NewsPage>() {
+                @Override
+                public NewsPage call() throws Exception {
+                    return mFetcher.fetchPage(url);
+                }
+            })) : running;
+            if (owner) {
+                mRequests.put(url, call);
+            }
+            call.mWaiters++;
+        }
+
+        //When the caller is cancelled it stops waiting, the last one aborts the request
+        CancelSignal callerSignal = CancelSignal.current();
+        CancelSignal.OnCancelListener release = new CancelSignal.OnCancelListener() {
+            @Override
+            public void onCancel() {
+                release(url, call);
+            }
+        };
+        if (callerSignal != null) {
+            callerSignal.addOnCancelListener(release);
+        }
+        try {
+            if (owner) {
+                //No request for the url was running, run this one on the calling thread
+                CancelSignal previous = CancelSignal.setCurrent(call.mSignal);
+                try {
+                    call.mTask.run();
+                } finally {
+                    CancelSignal.setCurrent(previous);
+                    remove(url, call);
+                }
+            }
+            return call.mTask.get();
+        } catch (InterruptedException e) {
+            //The waiting load was cancelled, the request itself goes on for the other callers
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (callerSignal != null) {
+                callerSignal.removeOnCancelListener(release);
+            }
+        }
+    }
+
+    //Called when a waiting caller was cancelled
+    private void release(String url, Call call) {
+        synchronized (mRequests) {
+            call.mWaiters--;
+            if (call.mWaiters > 0) {
+                return;
+            }
+            //Nobody wants the page anymore, new callers must not join the aborted request
+            if (mRequests.get(url) == call) {
+                mRequests.remove(url);
+            }
+        }
+        call.mSignal.cancel();
+    }
+
+    private void remove(String url, Call call) {
+        synchronized (mRequests) {
+            if (mRequests.get(url) == call) {
+                mRequests.remove(url);
+            }
+        }
+    }
+
+    //Gets the number of requests that are running
+    public int size() {
+        synchronized (mRequests) {
+            return mRequests.size();
+        }
+    }
+}
@@ -1,45 +1,96 @@
 package com.example.user.newsapp;
 
-import android.app.LoaderManager.LoaderCallbacks;
-import android.app.LoaderManager;
 import android.content.Intent;
-import android.content.Loader;
-import android.content.SharedPreferences;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
-import android.net.Uri;
-import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.os.Bundle;
+import android.os.Handler;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.KeyEvent;
 import android.view.View;
+import android.view.inputmethod.EditorInfo;
 import android.widget.AdapterView;
-import android.widget.ListView;
+import android.widget.ArrayAdapter;
+import android.widget.EditText;
 import android.widget.ProgressBar;
+import android.widget.Spinner;
 import android.widget.TextView;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class MainActivity extends AppCompatActivity implements LoaderCallbacks<List<News>> {
+public class MainActivity extends AppCompatActivity implements NewsFilterDialog.OnFilterSetListener {
 
     //Tag for log messages
     private static final String LOG_TAG = MainActivity.class.getName();
 
-    //Initial Query which will be combined with the user's input
-    private static final String API_INITIAL_QUERY = "https://content.guardianapis.com/search";
+    //Number of pages kept in memory on each side of the visible ones
+    private static final int WINDOW_PAGES = 3;
 
-    //For this app I use "test" API KEY, but if have to I signed for an API KEY,
-    //I can simply update this constant
-    private static final String API_KEY = "test";
+    //The next page is loaded when the user scrolls this many items close to the end of the list
+    private static final int PREFETCH_DISTANCE = 5;
+
+    //A query of the search bar is sent when the user stopped typing for this time
+    private static final long SEARCH_DEBOUNCE_MILLIS = 300;
+
+    //Shorter queries are only answered from the cached news, they would match too much
+    private static final int MIN_NETWORK_QUERY_LENGTH = 3;
+
+    //The articles of the visible news are prefetched when the list did not scroll for this time
+    private static final long ARTICLE_PREFETCH_DELAY_MILLIS = 500;
+
+    //Key of the query of the search bar in the saved state
+    private static final String KEY_QUERY = "query";
+
+    //Key of the selected topic in the saved state
+    private static final String KEY_TOPIC = "topic";
+
+    //Key of the filter of the loaded news in the saved state
+    private static final String KEY_FILTER = "filter";
+
+    //Tag of the filter dialog fragment
+    private static final String TAG_FILTER_DIALOG = "filter_dialog";
 
     //Adapter for the list of news
     private NewsAdapter mAdapter;
 
-    //Loader manager object
-    private LoaderManager mLoaderManager;
+    //The loaded pages of news, which are shown by the adapter
+    private NewsPageStore mPageStore;
+
+    //Version of the page store that was last shown by the adapter
+    private int mShownVersion = -1;
+
+    //Filter of the loaded news, null to show the pages as they were loaded
+    private NewsFilter mFilter;
+
+    //Filter that was last shown by the adapter
+    private NewsFilter mShownFilter;
+
+    //Indexes of the loaded news for the filter, built again when the pages changed
+    private NewsFilterIndex mFilterIndex;
+
+    //Version of the page store that mFilterIndex was built from
+    private int mFilterIndexVersion = -1;
+
+    //Number of the page that is being loaded by mPageRequest, 0 if none
+    private int mLoadingPage;
+
+    //True when a page could not be loaded, so no more pages are requested
+    private boolean mPagingStopped;
+
+    //Runs the loads of the pages
+    private FetchEngine mFetchEngine;
+
+    //Load of the first page, which also serves the cached news, null when it has finished
+    private FetchEngine.Request mFirstPageRequest;
+
+    //Load of one of the following pages, null when it has finished
+    private FetchEngine.Request mPageRequest;
 
     //TextView that is displayed when the list is empty
     private TextView mEmptyStateTextView;
@@ -47,121 +98,596 @@ public class MainActivity extends AppCompatActivity implements LoaderCallbacks<L
     //Progress bar to inform user that information is loading
     private ProgressBar mProgressSpinner;
 
-    //This variable store users input formatted properly according to API guidelines
-    private String formattedUserInput;
+    //The settings and the network, null until they were read in the background
+    private StartupState mStartupState;
+
+    //True if there was an internet connection when the startup state was read
+    private boolean mIsConnected;
+
+    //True if the network was unmetered when the startup state was read, like Wi-Fi
+    private boolean mIsUnmetered;
+
+    //Fields and page size of the queries, chosen by the network of the startup state
+    private QueryProfile mProfile;
+
+    //Loads the articles of the reader
+    private ArticleLoader mArticleLoader;
+
+    //True once the list showed news, the time to the first item is traced then
+    private boolean mFirstItemShown;
+
+    //True after onDestroy, a startup state that arrives then is dropped
+    private boolean mDestroyed;
+
+    //Search bar above the list
+    private EditText mSearchView;
+
+    //The query of the search bar that is shown, empty for the topics of the settings
+    private String mSearchQuery = "";
+
+    //Selects one of the subscribed topics or all of them
+    private Spinner mTopicSelector;
+
+    //The subscribed topic that is shown, null for all topics
+    private String mSelectedTopic;
+
+    //Delays the queries while the user types
+    private final Handler mSearchHandler = new Handler();
+
+    //Sends the query of the search bar if it changed
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            String query = mSearchView.getText().toString().trim();
+            if (!query.equals(mSearchQuery)) {
+                search(query);
+            }
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTrace.onCreate();
         super.onCreate(savedInstanceState);
+        //The metrics of the fetch pipeline are only collected in debug builds
+        Metrics.setEnabled(BuildConfig.DEBUG);
         setContentView(R.layout.activity_main);
 
-        // Find a reference to the {@link ListView} in the layout
-        ListView newsListView = (ListView) findViewById(R.id.list);
+        // Find a reference to the {@link RecyclerView} in the layout
+        RecyclerView newsListView = (RecyclerView) findViewById(R.id.list);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        newsListView.setLayoutManager(layoutManager);
+        //The size of the list does not depend on its items, so changes of the items do not relayout it
+        newsListView.setHasFixedSize(true);
 
         //Find the empty_list_view that overlaps the listItems
         //When there is no listItems to display show this empty_list_view
         mEmptyStateTextView = (TextView) findViewById(R.id.empty_list_view);
-        newsListView.setEmptyView(mEmptyStateTextView);
 
         //Find the progress spinner
         mProgressSpinner = (ProgressBar) findViewById(R.id.loading_spinner);
 
-        // Create a new adapter that takes an empty list of News as input
-        mAdapter = new NewsAdapter(this, new ArrayList<News>());
+        // Create a new adapter with a click listener, which opens the full article
+        // about the selected news in the reader.
+        mPageStore = new NewsPageStore(WINDOW_PAGES);
+        mArticleLoader = ArticleLoader.getInstance(this);
+        mAdapter = new NewsAdapter(ThumbnailLoader.getInstance(this), new NewsAdapter.OnNewsClickListener() {
+            @Override
+            public void onNewsClick(News currentNews) {
+                startActivity(ReaderActivity.newIntent(MainActivity.this, currentNews));
+            }
+        });
+
+        //Show or hide the empty_list_view whenever the number of items changes
+        mAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+        });
 
-        // Set the adapter on the {@link ListView}
+        // Set the adapter on the {@link RecyclerView}
         // so the list can be populated in the user interface
         newsListView.setAdapter(mAdapter);
 
-        // Set an item click listener on the ListView, which sends an intent to a web browser
-        // to open a website with the full article about the selected news.
-        newsListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        //Prefetches the articles of the news that are visible when the list stopped moving
+        final Runnable articlePrefetch = new Runnable() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
-                //Find the current news that was clicked on
-                News currentNews = mAdapter.getItem(position);
+            public void run() {
+                int firstVisible = layoutManager.findFirstVisibleItemPosition();
+                if (firstVisible != RecyclerView.NO_POSITION) {
+                    prefetchArticles(firstVisible, layoutManager.findLastVisibleItemPosition());
+                }
+            }
+        };
 
-                //Convert the String URL into a URI object (to pass into the Intent constructor)
-                Uri newsUri = Uri.parse(currentNews.getUrl());
+        //Load the next page before the user reaches the end of the list
+        //and drop the pages that are far away from the visible items.
+        //This is also called after a layout which changed the visible items
+        newsListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int firstVisible = layoutManager.findFirstVisibleItemPosition();
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                //The positions of a filtered list are not the ones of the pages, which stay loaded
+                if (firstVisible != RecyclerView.NO_POSITION && mFilter == null) {
+                    onViewportChanged(firstVisible, lastVisible, mAdapter.getItemCount());
+                }
+                if (mIsUnmetered) {
+                    recyclerView.removeCallbacks(articlePrefetch);
+                    recyclerView.postDelayed(articlePrefetch, ARTICLE_PREFETCH_DELAY_MILLIS);
+                }
+            }
+        });
 
-                // Create a new intent to view the news URI
-                Intent websiteIntent = new Intent(Intent.ACTION_VIEW, newsUri);
+        //The search bar sends a query when the user stops typing or presses the search key.
+        //The text of the search bar is restored after onCreate, the query is already loaded then
+        if (savedInstanceState != null) {
+            mSearchQuery = savedInstanceState.getString(KEY_QUERY, "");
+            mSelectedTopic = savedInstanceState.getString(KEY_TOPIC);
+            mFilter = (NewsFilter) savedInstanceState.getSerializable(KEY_FILTER);
+        }
+        mSearchView = (EditText) findViewById(R.id.search_query);
+        mSearchView.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
 
-                // Start the intent
-                startActivity(websiteIntent);
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                mSearchHandler.removeCallbacks(mSearchRunnable);
+                mSearchHandler.postDelayed(mSearchRunnable, SEARCH_DEBOUNCE_MILLIS);
+            }
+        });
+        mSearchView.setOnEditorActionListener(new TextView.OnEditorActionListener() {
+            @Override
+            public boolean onEditorAction(TextView v, int actionId, KeyEvent event) {
+                if (actionId == EditorInfo.IME_ACTION_SEARCH) {
+                    mSearchHandler.removeCallbacks(mSearchRunnable);
+                    mSearchRunnable.run();
+                    return true;
+                }
+                return false;
             }
         });
 
-        //Create connectivity manager object to check for internet connection
-        ConnectivityManager cm = (ConnectivityManager) getSystemService(MainActivity.this.CONNECTIVITY_SERVICE);
-
-        //Check for internet connection
-        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-        boolean isConnected = activeNetwork != null &&
-                activeNetwork.isConnectedOrConnecting();
-
-        //If there is connection start a loader
-        if (isConnected) {
-            // Get a reference to the LoaderManager, in order to interact with loaders.
-            mLoaderManager = getLoaderManager();
-            // Initialize the loader. Pass in the int of 1 (its ID) and pass in null for
-            // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
-            // because this activity implements the LoaderCallbacks interface).
-            Log.i(LOG_TAG, "initLoader is called (Loader is initiated)!");
-            mLoaderManager.initLoader(1, null, this);
+        mTopicSelector = (Spinner) findViewById(R.id.topic_selector);
+        mFetchEngine = FetchEngine.getInstance();
+
+        //The settings, the network and the snapshot of the last session are read in the
+        //background, meanwhile the first frame shows the empty list with the spinner.
+        //After a rotation the state of the previous activity is used right away
+        StartupState state = (StartupState) getLastCustomNonConfigurationInstance();
+        if (state != null) {
+            onStartupStateRead(state, false);
         } else {
-            //If there is no connection hide the progress spinner
-            //and set a text on the empty view to inform the user
+            readStartupState(savedInstanceState == null);
+        }
+
+        //Work that the first frame does not need waits until it was drawn
+        StartupTrace.runAfterNextDraw(newsListView, new Runnable() {
+            @Override
+            public void run() {
+                StartupTrace.onFirstDraw();
+                //Keep the topics prefetched in the background, so the next start is a local read
+                PrefetchService.schedule(MainActivity.this);
+            }
+        });
+    }
+
+    //Reads the startup state in the background, on a cold start together with the snapshot
+    private void readStartupState(final boolean coldStart) {
+        StartupState.readAsync(this, coldStart, new StartupState.Callback() {
+            @Override
+            public void onStartupStateRead(StartupState state) {
+                if (!mDestroyed) {
+                    MainActivity.this.onStartupStateRead(state, coldStart);
+                }
+            }
+        });
+    }
+
+    //Starts the list with the settings and the network, or updates it when they were read again
+    private void onStartupStateRead(StartupState state, boolean showSnapshot) {
+        StartupState previous = mStartupState;
+        boolean wasConnected = mIsConnected;
+        QueryProfile previousProfile = mProfile;
+        mStartupState = state;
+        mIsConnected = state.isConnected();
+        mIsUnmetered = state.isUnmetered();
+        //Metered networks, like cellular data, get the lean list without thumbnails
+        mProfile = QueryProfile.forNetwork(mIsConnected && !mIsUnmetered);
+        if (previous != null && !state.hasOtherTopics(previous)) {
+            if (mProfile != previousProfile) {
+                //The pages of the other profile have another size and other fields
+                restartLoads();
+            } else if (mIsConnected && !wasConnected) {
+                //Back online, the news that were shown from the cache are refreshed
+                stopRequest(mFirstPageRequest, false);
+                mFirstPageRequest = null;
+                loadFirstPage();
+            }
+            return;
+        }
+
+        //The list shows one of the subscribed topics or all of them. Their stores are read in
+        //the background, so switching the topic later is a read from memory
+        setupTopicSelector(state.getSubscribedTopics());
+        FeedStore.getInstance(this).loadAsync(state.getSubscribedTopicKeys());
+
+        if (previous != null) {
+            //The topics were changed in the settings
+            restartLoads();
+            return;
+        }
+        //On a cold start show the list of the last session right away, the load replaces it.
+        //A query typed before the state was read is loaded instead
+        if (showSnapshot && state.getSnapshot() != null && mSearchQuery.isEmpty()) {
             mProgressSpinner.setVisibility(View.GONE);
-            mEmptyStateTextView.setText(R.string.no_connection);
+            mPageStore.putPage(state.getSnapshot());
+            showPages();
         }
+        //Load the first page even without connection, it shows the cached news in offline mode
+        loadFirstPage();
     }
 
-    //Create the loader if it does not already exists
-    @Override
-    public Loader<List<News>> onCreateLoader(int i, Bundle bundle) {
-        //Create SharedPreferences object to get the user's input
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+    //Called when the visible items of the list change
+    private void onViewportChanged(int firstVisible, int lastVisible, int totalItemCount) {
+        int missingPage = mPageStore.onViewportChanged(firstVisible, lastVisible);
+        if (missingPage != 0) {
+            //The user scrolled back to a page that was dropped from memory
+            loadPage(missingPage);
+        } else if (lastVisible >= totalItemCount - PREFETCH_DISTANCE && mPageStore.hasMorePages()) {
+            loadPage(mPageStore.getNextPage());
+        }
+        //Let the adapter release the news of the dropped pages
+        showPages();
+    }
 
-        //Get the search topic input from preferences
-        String searchTopic = sharedPrefs.getString(
-                getString(R.string.settings_search_topic_key),
-                getString(R.string.settings_search_topic_default));
+    //Loads the articles of the visible news into the cache of the reader, top first
+    private void prefetchArticles(int firstVisible, int lastVisible) {
+        List<String> urls = new ArrayList<>();
+        for (int position = firstVisible; position <= lastVisible && position < mAdapter.getItemCount(); position++) {
+            News news = mAdapter.getItem(position);
+            if (news != null) {
+                urls.add(news.getUrl());
+            }
+        }
+        mArticleLoader.prefetch(urls);
+    }
 
-        //Call a method to format the user input if there are spaces (multiple words)
-        formattedUserInput = concatenateQuery(searchTopic);
+    //Hands the current pages to the adapter, which diffs them against the shown list.
+    //With a filter the adapter gets the loaded news that pass it instead
+    private void showPages() {
+        if (mShownVersion == mPageStore.getVersion() && mShownFilter == mFilter) {
+            return;
+        }
+        mShownVersion = mPageStore.getVersion();
+        mShownFilter = mFilter;
+        if (mFilter == null) {
+            mAdapter.submitList(mPageStore.snapshot());
+        } else {
+            mAdapter.submitList(getFilterIndex().apply(mFilter));
+        }
+    }
 
-        //Build the URI to pass it to the NewsLoader
-        Uri baseUri = Uri.parse(API_INITIAL_QUERY);
-        Uri.Builder uriBuilder = baseUri.buildUpon();
-        uriBuilder.appendQueryParameter("q", formattedUserInput);
-        uriBuilder.appendQueryParameter("api-key", API_KEY);
-        return new NewsLoader(this, uriBuilder.toString());
+    //Returns the indexes of the loaded news, they are built once for every version of the pages.
+    //While a filter is set the dropped pages are loaded again, so all pages are indexed
+    private NewsFilterIndex getFilterIndex() {
+        if (mFilterIndex == null || mFilterIndexVersion != mPageStore.getVersion()) {
+            mFilterIndex = new NewsFilterIndex(mPageStore.snapshot());
+            mFilterIndexVersion = mPageStore.getVersion();
+        }
+        return mFilterIndex;
+    }
+
+    //Opens the dialog of the filter with the sections of the loaded news
+    private void showFilterDialog() {
+        //The pages that were dropped from memory are read from the cache for the filter
+        loadDroppedPage();
+        NewsFilterDialog.newInstance(getFilterIndex().getSections(), mFilter)
+                .show(getSupportFragmentManager(), TAG_FILTER_DIALOG);
     }
 
     @Override
-    public void onLoadFinished(Loader<List<News>> loader, List<News> news) {
+    public void onFilterSet(NewsFilter filter) {
+        setFilter(filter);
+    }
+
+    //Filters and sorts the loaded news without a request, null shows all of them again
+    private void setFilter(NewsFilter filter) {
+        mFilter = filter;
+        updateEmptyText();
+        showPages();
+        if (filter != null) {
+            loadDroppedPage();
+        }
+    }
+
+    //Loads the first page that was dropped from memory again, the filter needs all pages.
+    //The pages are loaded one after the other, the next one when the page before has arrived
+    private void loadDroppedPage() {
+        int droppedPage = mPageStore.getFirstDroppedPage();
+        if (droppedPage != 0) {
+            loadPage(droppedPage);
+        }
+    }
+
+    //Tells why the list is empty: a filter that no news passes, no news or no connection
+    private void updateEmptyText() {
+        if (mFilter != null) {
+            mEmptyStateTextView.setText(R.string.no_matching_news);
+        } else if (mIsConnected) {
+            mEmptyStateTextView.setText(R.string.no_news);
+        } else {
+            mEmptyStateTextView.setText(R.string.no_connection);
+        }
+    }
+
+    //The empty_list_view is only visible when there are no items to show
+    private void updateEmptyView() {
+        mEmptyStateTextView.setVisibility(mAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+        if (!mFirstItemShown && mAdapter.getItemCount() > 0) {
+            mFirstItemShown = true;
+            StartupTrace.runAfterNextDraw(mEmptyStateTextView, new Runnable() {
+                @Override
+                public void run() {
+                    StartupTrace.onFirstItem();
+                }
+            });
+        }
+    }
+
+    //Fills the topic selector with the subscribed topics, it is hidden for a single topic
+    private void setupTopicSelector(final List<String> topics) {
+        if (mSelectedTopic != null && !topics.contains(mSelectedTopic)) {
+            //The topic was removed in the settings
+            mSelectedTopic = null;
+        }
+        if (topics.size() <= 1) {
+            mTopicSelector.setVisibility(View.GONE);
+            return;
+        }
+        List<String> entries = new ArrayList<>(topics.size() + 1);
+        entries.add(getString(R.string.all_topics));
+        entries.addAll(topics);
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, entries);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        mTopicSelector.setAdapter(adapter);
+        mTopicSelector.setSelection(mSelectedTopic == null ? 0 : topics.indexOf(mSelectedTopic) + 1);
+        mTopicSelector.setVisibility(View.VISIBLE);
+        //Also called after the first layout with the restored selection, which is already shown
+        mTopicSelector.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                String topic = position == 0 ? null : topics.get(position - 1);
+                if (topic == null ? mSelectedTopic != null : !topic.equals(mSelectedTopic)) {
+                    selectTopic(topic);
+                }
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+    }
+
+    //Shows the first page from memory if it was loaded before, else starts its load
+    private void loadFirstPage() {
+        if (mStartupState == null) {
+            //The first page is loaded when the startup state was read
+            return;
+        }
+        NewsLoader loader = createLoader(1);
+        NewsCache.Entry entry = loader.peek();
+        if (entry != null) {
+            onFirstPageLoadFinished(entry.getPage());
+            if (loader.isFresh(entry)) {
+                return;
+            }
+        }
+        Log.i(LOG_TAG, "The first page is loaded");
+        mFirstPageRequest = mFetchEngine.submit(FetchEngine.PRIORITY_USER, loader, new PageCallback(true));
+    }
+
+    //Shows the news of a new query of the search bar instead of the current ones
+    private void search(String query) {
+        mSearchQuery = query;
+        restartLoads();
+    }
+
+    //Shows the news of one subscribed topic, or of all of them for null
+    private void selectTopic(String topic) {
+        mSelectedTopic = topic;
+        //The topic replaces the query of the search bar, the cleared text sends no query
+        mSearchQuery = "";
+        mSearchView.setText("");
+        restartLoads();
+    }
+
+    //Replaces the shown news with the first page of the current query
+    private void restartLoads() {
+        //The load of the previous query is not wanted anymore, it stops using the network
+        stopRequest(mFirstPageRequest, false);
+        stopRequest(mPageRequest, false);
+        mFirstPageRequest = null;
+        mPageRequest = null;
+        mLoadingPage = 0;
+        mPagingStopped = false;
+        //The filter was set for the news of the previous query
+        mFilter = null;
+        mPageStore.clear();
+        showPages();
+        mProgressSpinner.setVisibility(View.VISIBLE);
+        //A recent query is shown from the memory cache without a request
+        loadFirstPage();
+    }
+
+    //Starts the load of a following page, only one page is loaded at a time
+    private void loadPage(int page) {
+        if (mLoadingPage != 0 || mPagingStopped) {
+            return;
+        }
+        mLoadingPage = page;
+        mPageRequest = mFetchEngine.submit(FetchEngine.PRIORITY_PAGING, createLoader(page), new PageCallback(false));
+    }
+
+    private NewsLoader createLoader(int page) {
+        //Build one URI for every topic of the search bar or the settings to pass them to
+        //the NewsLoader, which loads them in parallel and merges the results
+        if (mSearchQuery.isEmpty()) {
+            String topics = mSelectedTopic != null ? mSelectedTopic : mStartupState.getSearchTopics();
+            return new NewsLoader(this, NewsQuery.buildUrls(topics, page, mProfile), !mIsConnected);
+        }
+        boolean localOnly = !mIsConnected || mSearchQuery.length() < MIN_NETWORK_QUERY_LENGTH;
+        return new NewsLoader(this, NewsQuery.buildUrls(mSearchQuery, page, mProfile), localOnly);
+    }
+
+    /**
+     * Receives the results of the load of the first page or of a following page.
+     */
+    private final class PageCallback implements FetchEngine.Callback {
+
+        private final boolean mFirstPage;
+
+        PageCallback(boolean firstPage) {
+            mFirstPage = firstPage;
+        }
+
+        @Override
+        public void onPartialResult(NewsPage page) {
+            onLoadFinished(mFirstPage, page, false);
+        }
+
+        @Override
+        public void onResult(NewsPage page) {
+            onLoadFinished(mFirstPage, page, true);
+        }
+    }
+
+    private void onLoadFinished(boolean firstPage, NewsPage page, boolean last) {
+        long start = Metrics.startTimer();
+        if (firstPage) {
+            if (last) {
+                mFirstPageRequest = null;
+                //The list of all topics of the settings is shown first on the next cold start
+                if (page != null && mSearchQuery.isEmpty() && mSelectedTopic == null) {
+                    NewsSnapshot.writeAsync(mStartupState.getSnapshotFile(), mStartupState.getSearchTopics(), page);
+                }
+            }
+            onFirstPageLoadFinished(page);
+        } else {
+            if (last) {
+                mPageRequest = null;
+            }
+            onPageLoadFinished(page, last);
+        }
+        Metrics.stopTimer(Metrics.LOAD_FINISHED, start);
+    }
+
+    //Shows the first page, from the cache or from the network
+    private void onFirstPageLoadFinished(NewsPage page) {
         //Hide the ProgressSpinner, since the data processing has finished
         mProgressSpinner.setVisibility(View.GONE);
         //If the query has not return any data, then there will be not listItems,
         //so only the empty_list_view will be left on screen.
         //Here the app sets a text on that empty_list_view to inform the user that there is
-        //no data to be displayed
-        mEmptyStateTextView.setText(R.string.no_news);
-        // Clear the adapter of previous book data
-        mAdapter.clear();
-        // If there is a valid list of {@link News}, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (news != null && !news.isEmpty()) {
-            mAdapter.addAll(news);
+        //no data to be displayed. Without connection there were also no cached news
+        updateEmptyText();
+        // If there is a valid page of {@link News}, then put it in the store as the first page,
+        // the pages which are already loaded after it are kept.
+        if (page != null) {
+            mPageStore.putPage(page);
+            mPagingStopped = false;
+        }
+        // Trigger the RecyclerView to update the rows that changed.
+        showPages();
+    }
+
+    //Appends a loaded page, or replaces a page that was dropped from memory
+    private void onPageLoadFinished(NewsPage page, boolean last) {
+        if (page == null) {
+            //The page is not available (for example offline), stop asking for more
+            mPagingStopped = true;
+        } else if (mPageStore.putPage(page)) {
+            //A page refreshed after it was served from the cache also arrives here
+            showPages();
+        }
+        if (last) {
+            mLoadingPage = 0;
+            if (mFilter != null) {
+                //The filter indexes the pages that were dropped before it was set too
+                loadDroppedPage();
+            }
         }
     }
 
     @Override
-    public void onLoaderReset(Loader<List<News>> loader) {
-        Log.i(LOG_TAG, "Loader is reset..!");
-        // Loader is reset, so the app can clear out the existing data.
-        mAdapter.clear();
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(KEY_QUERY, mSearchQuery);
+        outState.putString(KEY_TOPIC, mSelectedTopic);
+        outState.putSerializable(KEY_FILTER, mFilter);
+    }
+
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        return mStartupState;
+    }
+
+    @Override
+    protected void onRestart() {
+        super.onRestart();
+        //The topics may have been changed in the settings and the network may have changed
+        readStartupState(false);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mDestroyed = true;
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        //After a rotation the new activity finds the page in the cache or joins the running
+        //request, so the load may finish. Otherwise nobody waits for it anymore
+        stopRequest(mFirstPageRequest, isChangingConfigurations());
+        stopRequest(mPageRequest, isChangingConfigurations());
+        //The articles of the visible news are prefetched again by the next list
+        mArticleLoader.cancelPrefetch();
+    }
+
+    private static void stopRequest(FetchEngine.Request request, boolean keepLoading) {
+        if (request == null) {
+            return;
+        }
+        if (keepLoading) {
+            request.detach();
+        } else {
+            request.cancel();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        //Write the timers and counters of this session to the log
+        Metrics.logDump();
+        if (BuildConfig.DEBUG) {
+            CacheManager.getInstance().logDump();
+        }
     }
 
     @Override
@@ -175,6 +701,11 @@ public class MainActivity extends AppCompatActivity implements LoaderCallbacks<L
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         int id = item.getItemId();
+        //The filter action narrows and sorts the news that are loaded already
+        if (id == R.id.filter_news) {
+            showFilterDialog();
+            return true;
+        }
         //If clicked option item is search_settings then
         //create an Intent to open the SettingsActivity
         if (id == R.id.search_settings) {
@@ -184,24 +715,4 @@ public class MainActivity extends AppCompatActivity implements LoaderCallbacks<L
         }
         return super.onOptionsItemSelected(item);
     }
-
-    //This method clears the spaces between user's input
-    //by replacing the spaces with "%20AND%20 "
-    //Now when the query is send to the API it will look for content containing
-    //all of the words entered by the user
-    private String concatenateQuery(String usersTextInput) {
-        //Split properly user's input because spaces are not allowed in the Query
-        String[] wordsInput = usersTextInput.split("\\s+");
-        String wordsToInputQuery = null;
-        for (int i = 0; i < wordsInput.length; i++) {
-            if (i == 0) {
-                wordsToInputQuery = wordsInput[i];
-            } else {
-                //Concatinate the word in a proper format
-                wordsToInputQuery = wordsToInputQuery + " AND " + wordsInput[i];
-            }
-        }
-        //Returns the properly formatted user input
-        return wordsToInputQuery;
-    }
 }
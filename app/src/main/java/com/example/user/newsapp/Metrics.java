@@ -0,0 +1,257 @@
+package com.example.user.newsapp;
+
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timers and counters of the stages of loading and showing the news.
+ * <p>
+ * Every timer keeps its last {@link #WINDOW} samples, the percentiles of the report are
+ * calculated over them. The counters count since the start or the last {@link #reset()}.
+ * <p>
+ * The metrics are off by default. While they are off the methods return right away and
+ * allocate nothing, so the calls can stay in the hot paths:
+ * <pre>
+ * long start = Metrics.startTimer();
+ * ...
+ * Metrics.stopTimer(Metrics.PARSE, start);
+ * </pre>
+ */
+public final class Metrics {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = Metrics.class.getSimpleName();
+
+    //Timers
+    //Opening the connection: DNS lookup, TCP and TLS handshakes. Close to 0 for a reused connection
+    public static final int CONNECT = 0;
+    //From sending the request to the status line of the response
+    public static final int FIRST_BYTE = 1;
+    //Time spent waiting for the body from the network while it was parsed
+    public static final int DOWNLOAD = 2;
+    //Time spent parsing the body, without DOWNLOAD
+    public static final int PARSE = 3;
+    //The whole request in QueryUtils.makeHttpRequest
+    public static final int REQUEST = 4;
+    //QueryUtils.readFromStream
+    public static final int READ_STREAM = 5;
+    //QueryUtils.extractDataFromJson
+    public static final int EXTRACT_JSON = 6;
+    //NewsLoader.run
+    public static final int LOAD = 7;
+    //MainActivity.onLoadFinished
+    public static final int LOAD_FINISHED = 8;
+    //NewsAdapter.onBindViewHolder
+    public static final int BIND = 9;
+    //NewsSnapshot.read, in the background while the first frame is drawn
+    public static final int SNAPSHOT_READ = 10;
+    //A page of the FeedStore timeline, on the main thread when the topic changes
+    public static final int TIMELINE = 11;
+    //From the creation of MainActivity to its first drawn frame
+    public static final int FIRST_DRAW = 12;
+    //From the creation of MainActivity to the first drawn frame with news
+    public static final int FIRST_ITEM = 13;
+
+    private static final String[] TIMER_NAMES = {"connect", "first_byte", "download", "parse",
+            "request", "read_stream", "extract_json", "load", "load_finished", "bind", "snapshot_read",
+            "timeline", "first_draw", "first_item"};
+
+    //Counters
+    //HTTP requests sent
+    public static final int REQUESTS = 0;
+    //Requests answered with 304 Not Modified
+    public static final int NOT_MODIFIED = 1;
+    //Requests that failed or had an error response
+    public static final int ERRORS = 2;
+    //News parsed from responses
+    public static final int ITEMS = 3;
+    //Body bytes received from the network for the queries of every QueryProfile
+    public static final int BYTES_LEAN = 4;
+    public static final int BYTES_STANDARD = 5;
+    public static final int BYTES_RICH = 6;
+    //Attempts that repeated a failed request
+    public static final int RETRIES = 7;
+    //Requests that were not sent because the circuit breaker was open
+    public static final int SHORT_CIRCUITED = 8;
+
+    private static final String[] COUNTER_NAMES = {"requests", "not_modified", "errors", "items",
+            "bytes_lean", "bytes_standard", "bytes_rich", "retries", "short_circuited"};
+
+    //Number of samples of every timer that the percentiles are calculated over
+    public static final int WINDOW = 256;
+
+    private static final long NANOS_PER_MICRO = 1000;
+
+    private static volatile boolean sEnabled;
+
+    private static final Histogram[] TIMERS = new Histogram[TIMER_NAMES.length];
+
+    private static final AtomicLongArray COUNTERS = new AtomicLongArray(COUNTER_NAMES.length);
+
+    static {
+        for (int i = 0; i < TIMERS.length; i++) {
+            TIMERS[i] = new Histogram();
+        }
+    }
+
+    /**
+     * The last samples of a timer in a ring buffer.
+     */
+    private static final class Histogram {
+
+        private final long[] mSamples = new long[WINDOW];
+
+        //Number of samples ever added, the next sample goes to mCount % WINDOW
+        private long mCount;
+
+        synchronized void add(long nanos) {
+            mSamples[(int) (mCount % WINDOW)] = nanos;
+            mCount++;
+        }
+
+        synchronized long getCount() {
+            return mCount;
+        }
+
+        //Returns a sorted copy of the samples in the window
+        synchronized long[] sortedSamples() {
+            long[] samples = Arrays.copyOf(mSamples, (int) Math.min(mCount, WINDOW));
+            Arrays.sort(samples);
+            return samples;
+        }
+
+        synchronized void clear() {
+            mCount = 0;
+        }
+    }
+
+    private Metrics() {
+    }
+
+    //Turns the metrics on or off. Samples recorded before are kept
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Returns the start time for {@link #stopTimer(int, long)}, or 0 if the metrics are off.
+     */
+    public static long startTimer() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since the start as a sample of the timer.
+     *
+     * @param timer      is one of the timer constants
+     * @param startNanos is the value returned by {@link #startTimer()}
+     */
+    public static void stopTimer(int timer, long startNanos) {
+        if (sEnabled && startNanos != 0) {
+            TIMERS[timer].add(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Records a duration that was measured in another way as a sample of the timer.
+     */
+    public static void record(int timer, long nanos) {
+        if (sEnabled) {
+            TIMERS[timer].add(nanos);
+        }
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param counter is one of the counter constants
+     */
+    public static void count(int counter, long delta) {
+        if (sEnabled) {
+            COUNTERS.addAndGet(counter, delta);
+        }
+    }
+
+    //Gets the value of a counter
+    public static long getCounter(int counter) {
+        return COUNTERS.get(counter);
+    }
+
+    //Gets the number of samples ever recorded for a timer
+    public static long getSampleCount(int timer) {
+        return TIMERS[timer].getCount();
+    }
+
+    /**
+     * Returns the percentile of the samples of the timer in the window, in nanoseconds,
+     * or 0 if it has no samples.
+     *
+     * @param percent is a number from 0 to 100
+     */
+    public static long getPercentile(int timer, int percent) {
+        return percentile(TIMERS[timer].sortedSamples(), percent);
+    }
+
+    /**
+     * Removes all samples and sets the counters to 0.
+     */
+    public static void reset() {
+        for (Histogram timer : TIMERS) {
+            timer.clear();
+        }
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            COUNTERS.set(i, 0);
+        }
+    }
+
+    /**
+     * Returns a report of all timers and counters, one line each. The times are in microseconds:
+     * <pre>
+     * parse count=12 p50=1830 p90=2410 p99=2980 max=2980
+     * items 240
+     * </pre>
+     */
+    public static String dump() {
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < TIMERS.length; i++) {
+            long[] samples = TIMERS[i].sortedSamples();
+            report.append(String.format(Locale.US, "%s count=%d p50=%d p90=%d p99=%d max=%d%n",
+                    TIMER_NAMES[i], TIMERS[i].getCount(),
+                    percentile(samples, 50) / NANOS_PER_MICRO,
+                    percentile(samples, 90) / NANOS_PER_MICRO,
+                    percentile(samples, 99) / NANOS_PER_MICRO,
+                    percentile(samples, 100) / NANOS_PER_MICRO));
+        }
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            report.append(COUNTER_NAMES[i]).append(' ').append(COUNTERS.get(i)).append('\n');
+        }
+        return report.toString();
+    }
+
+    /**
+     * Writes the report to the log if the metrics are on.
+     */
+    public static void logDump() {
+        if (sEnabled) {
+            Log.i(LOG_TAG, dump());
+        }
+    }
+
+    //Nearest-rank percentile of sorted samples
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
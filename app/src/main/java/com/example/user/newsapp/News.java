@@ -1,22 +1,36 @@
 package com.example.user.newsapp;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Created by Alexander Rashkov on 6/16/2017.
  */
 
 public class News {
 
+    //Publication time of a news without (valid) date
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    //Most sections are shared by many news, so each name is kept only once.
+    //The API has less than a hundred sections, the limit guards against unexpected values
+    private static final int MAX_SECTIONS = 256;
+    private static final Map<String, String> SECTIONS = new HashMap<>();
+
     //Tile of the news
-    private String mTitle;
+    private final String mTitle;
 
-    //Section of the news
-    private String mSection;
+    //Section of the news, the instance from SECTIONS
+    private final String mSection;
 
     //Url of the news
-    private String mUrl;
+    private final String mUrl;
+
+    //Publication time of the news in epoch milliseconds, or NO_DATE
+    private final long mPublishedAt;
 
-    //Date of the news
-    private String mDate;
+    //Url of the thumbnail image, or null if the news has none
+    private final String mThumbnailUrl;
 
     /**
      * Constructs a new {@link News} object.
@@ -24,14 +38,55 @@ public class News {
      * @param title   is the title of the news
      * @param section is the section of the news
      * @param url     is the web address of the news
-     * @param date    is the date when the news was published
+     * @param date    is the ISO 8601 date or time when the news was published, like 2017-06-17
      */
 
     public News(String title, String section, String url, String date) {
+        this(title, section, url, NewsDates.parse(date));
+    }
+
+    /**
+     * Constructs a new {@link News} object.
+     *
+     * @param title       is the title of the news
+     * @param section     is the section of the news
+     * @param url         is the web address of the news
+     * @param publishedAt is the time when the news was published in epoch milliseconds, or NO_DATE
+     */
+    public News(String title, String section, String url, long publishedAt) {
+        this(title, section, url, publishedAt, null);
+    }
+
+    /**
+     * Constructs a new {@link News} object.
+     *
+     * @param title        is the title of the news
+     * @param section      is the section of the news
+     * @param url          is the web address of the news
+     * @param publishedAt  is the time when the news was published in epoch milliseconds, or NO_DATE
+     * @param thumbnailUrl is the web address of the thumbnail image, or null
+     */
+    public News(String title, String section, String url, long publishedAt, String thumbnailUrl) {
         mTitle = title;
-        mSection = section;
+        mSection = internSection(section);
         mUrl = url;
-        mDate = date;
+        mPublishedAt = publishedAt;
+        mThumbnailUrl = thumbnailUrl;
+    }
+
+    //Returns the shared instance of the section name
+    private static String internSection(String section) {
+        if (section == null) {
+            return null;
+        }
+        synchronized (SECTIONS) {
+            String shared = SECTIONS.get(section);
+            if (shared == null && SECTIONS.size() < MAX_SECTIONS) {
+                SECTIONS.put(section, section);
+                shared = section;
+            }
+            return shared != null ? shared : section;
+        }
     }
 
     //Gets the title method
@@ -49,9 +104,38 @@ public class News {
         return mUrl;
     }
 
-    //Gets the date method
+    //Gets the date as yyyy-MM-dd for display, it is formatted on every call.
+    //Returns null if the news has no date
     public String getDate() {
-        return mDate;
+        return NewsDates.formatDate(mPublishedAt);
+    }
+
+    //Gets the publication time in epoch milliseconds, or NO_DATE
+    public long getPublishedAt() {
+        return mPublishedAt;
+    }
+
+    //Gets the url of the thumbnail image, or null
+    public String getThumbnailUrl() {
+        return mThumbnailUrl;
+    }
+
+    /**
+     * Returns an ID which stays the same for the same article across loads.
+     * It is a 64-bit FNV-1a hash of the url (or of the title if there is no url),
+     * and it is never negative.
+     */
+    public long getStableId() {
+        String key = mUrl != null ? mUrl : mTitle;
+        if (key == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash & Long.MAX_VALUE;
     }
 
 }
@@ -1,59 +1,227 @@
 package com.example.user.newsapp;
 
-import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Created by Alexander Rashkov on 6/16/2017.
  */
 
-public class NewsAdapter extends ArrayAdapter<News> {
+public class NewsAdapter extends RecyclerView.Adapter<NewsAdapter.NewsViewHolder> {
+
+    //Shown in place of a news whose page is being loaded again
+    private static final News EMPTY_NEWS = new News(null, null, null, News.NO_DATE);
+
+    //The differences between two lists are calculated on this thread, one list after the other
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Listener for clicks on a news of the list.
+     */
+    public interface OnNewsClickListener {
+        void onNewsClick(News news);
+    }
+
+    //Handler to apply the calculated differences on the main thread
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    //Receives the clicks on the list items
+    private final OnNewsClickListener mClickListener;
+
+    //Loads the thumbnails of the rows
+    private final ThumbnailLoader mThumbnailLoader;
+
+    //The news which are shown, a news whose page was dropped from memory is null
+    private List<News> mNews = new ArrayList<>();
+
+    //Increased with every submitted list, so only the differences to the newest list are applied
+    private int mGeneration;
+
+    /**
+     * Caches the views of a list item, so findViewById is only called when the item is created.
+     */
+    static class NewsViewHolder extends RecyclerView.ViewHolder {
+
+        final TextView mTitleTextView;
+
+        final TextView mSectionTextView;
+
+        final TextView mDateTextView;
+
+        final ImageView mThumbnailView;
+
+        NewsViewHolder(View itemView) {
+            super(itemView);
+            //Find the TextViews with ID "item_title", "item_section" and "item_date" from news_list_item.xml
+            mTitleTextView = (TextView) itemView.findViewById(R.id.item_title);
+            mSectionTextView = (TextView) itemView.findViewById(R.id.item_section);
+            mDateTextView = (TextView) itemView.findViewById(R.id.item_date);
+            mThumbnailView = (ImageView) itemView.findViewById(R.id.item_thumbnail);
+        }
+    }
 
     /**
      * Constructs a new {@link NewsAdapter}.
      *
-     * @param context of the app
-     * @param news    is the list of news, which is the data source of the adapter
+     * @param thumbnailLoader loads the thumbnails of the rows
+     * @param clickListener   receives the news which the user clicks on
      */
-    public NewsAdapter(Activity context, ArrayList<News> news) {
-        super(context, 0, news);
+    public NewsAdapter(ThumbnailLoader thumbnailLoader, OnNewsClickListener clickListener) {
+        mThumbnailLoader = thumbnailLoader;
+        mClickListener = clickListener;
+        //Every news keeps its ID, so a refresh does not rebind the rows that have not moved
+        setHasStableIds(true);
     }
 
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        // Check if there is an existing list item view (called convertView) that we can reuse,
-        // otherwise, if convertView is null, then inflate a new list item layout.
-        View listItemView = convertView;
-        if (listItemView == null) {
-            listItemView = LayoutInflater.from(getContext()).inflate(
-                    R.layout.news_list_item, parent, false);
-        }
+    public NewsViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View listItemView = LayoutInflater.from(parent.getContext()).inflate(
+                R.layout.news_list_item, parent, false);
+        final NewsViewHolder holder = new NewsViewHolder(listItemView);
+        listItemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                int position = holder.getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION && getItem(position) != null) {
+                    mClickListener.onNewsClick(getItem(position));
+                }
+            }
+        });
+        return holder;
+    }
 
-        // Find the news at the given position in the list of books
+    @Override
+    public void onBindViewHolder(NewsViewHolder holder, int position) {
+        long start = Metrics.startTimer();
+        // Find the news at the given position in the list
         News currentNews = getItem(position);
+        //The page of this news was dropped from memory, show an empty item until it is loaded
+        if (currentNews == null) {
+            currentNews = EMPTY_NEWS;
+        }
 
-        //Find the TextView with ID "item_title" from news_list_item.xml
-        TextView titleTextView = (TextView) listItemView.findViewById(R.id.item_title);
-        //Get the Title from the currentNews object and set this text on the TextView.
-        titleTextView.setText(currentNews.getTitle());
+        //Get the Title, Section and Date from the currentNews object and set them on the TextViews.
+        holder.mTitleTextView.setText(currentNews.getTitle());
+        holder.mSectionTextView.setText(currentNews.getSection());
+        holder.mDateTextView.setText(currentNews.getDate());
+        mThumbnailLoader.load(currentNews.getThumbnailUrl(), holder.mThumbnailView);
+        Metrics.stopTimer(Metrics.BIND, start);
+    }
 
-        //Find the TextView with ID "item_section" from news_list_item.xml
-        TextView sectionTextView = (TextView) listItemView.findViewById(R.id.item_section);
+    //The row is off screen, its thumbnail does not need to be loaded anymore
+    @Override
+    public void onViewRecycled(NewsViewHolder holder) {
+        mThumbnailLoader.cancel(holder.mThumbnailView);
+    }
+
+    @Override
+    public int getItemCount() {
+        return mNews.size();
+    }
+
+    //Placeholders get an ID from their position, which never collides with the non-negative news IDs
+    @Override
+    public long getItemId(int position) {
+        News news = mNews.get(position);
+        return news != null ? news.getStableId() : -1 - position;
+    }
+
+    //Returns the news at the position, or null if its page is being loaded again
+    public News getItem(int position) {
+        return mNews.get(position);
+    }
+
+    /**
+     * Shows a new list. The differences to the current list are calculated on a background
+     * thread, then only the rows that changed are inserted, removed, moved or rebound.
+     * The list must not be changed after it was submitted.
+     * A list that replaces an empty one is shown right away, so it is in the next frame.
+     */
+    public void submitList(final List<News> news) {
+        final int generation = ++mGeneration;
+        final List<News> oldNews = mNews;
+        if (oldNews.isEmpty()) {
+            //Everything is inserted, there is nothing to diff
+            mNews = news;
+            notifyItemRangeInserted(0, news.size());
+            return;
+        }
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new NewsDiffCallback(oldNews, news));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        //A newer list was submitted in the meantime, its differences will be applied
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        mNews = news;
+                        result.dispatchUpdatesTo(NewsAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Compares two lists of news by their stable IDs and by the shown texts.
+     */
+    static class NewsDiffCallback extends DiffUtil.Callback {
 
-        //Get the Section from the currentNews object and set this text on the TextView.
-        sectionTextView.setText(currentNews.getSection());
+        private final List<News> mOldNews;
 
-        //Find the TextView with ID "item_date" from news_list_item.xml
-        TextView dateTextView = (TextView) listItemView.findViewById(R.id.item_date);
+        private final List<News> mNewNews;
 
-        //Get the Section from the currentNews object and set this text on the TextView.
-        dateTextView.setText(currentNews.getDate());
-        return listItemView;
+        NewsDiffCallback(List<News> oldNews, List<News> newNews) {
+            mOldNews = oldNews;
+            mNewNews = newNews;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldNews.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewNews.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            News oldItem = mOldNews.get(oldItemPosition);
+            News newItem = mNewNews.get(newItemPosition);
+            if (oldItem == null || newItem == null) {
+                return oldItem == newItem;
+            }
+            return oldItem.getStableId() == newItem.getStableId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            News oldItem = mOldNews.get(oldItemPosition);
+            News newItem = mNewNews.get(newItemPosition);
+            if (oldItem == null || newItem == null) {
+                return oldItem == newItem;
+            }
+            return TextUtils.equals(oldItem.getTitle(), newItem.getTitle())
+                    && TextUtils.equals(oldItem.getSection(), newItem.getSection())
+                    && oldItem.getPublishedAt() == newItem.getPublishedAt();
+        }
     }
 }
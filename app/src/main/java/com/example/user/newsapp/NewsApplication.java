@@ -0,0 +1,24 @@
+package com.example.user.newsapp;
+
+import android.app.Application;
+
+/**
+ * The application, it hands the memory warnings of the system to the {@link CacheManager}.
+ * <p>
+ * The caches register themselves when they are first used, so nothing is created here and the
+ * start of the app does not wait for it.
+ */
+public class NewsApplication extends Application {
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        CacheManager.getInstance().onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        CacheManager.getInstance().onLowMemory();
+    }
+}
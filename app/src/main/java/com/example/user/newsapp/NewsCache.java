@@ -0,0 +1,390 @@
+package com.example.user.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent cache of the pages of news, keyed by the query URL that was used to load them.
+ * <p>
+ * The pages are stored in a {@link DiskLruCache} inside the app's cache directory, so the
+ * last results of a query can be shown right after a cold start and also without connection.
+ * The most recently used entries are also kept in memory, so a new loader for the same query,
+ * for example after returning from the settings, can show them without reading the disk.
+ * All cached news are also added to a {@link NewsSearchIndex}, which answers searches offline.
+ * The news of an entry leave the index when the entry is evicted from disk.
+ * The entries in memory are trimmed by the {@link CacheManager}, they are on disk already.
+ * The bytes of the search index are counted too. A trim takes the entries first, they are one
+ * disk read each. The index is only dropped when the trim keeps fewer bytes than it holds, the
+ * next local search builds it again from the whole disk cache.
+ */
+public final class NewsCache implements CacheManager.MemoryCache {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = NewsCache.class.getSimpleName();
+
+    //Entries older than this are still shown, but are refreshed from the network
+    public static final long TTL_MILLIS = 10 * 60 * 1000;
+
+    //Maximum size of the cache on disk
+    private static final long MAX_BYTES = 2 * 1024 * 1024;
+
+    //Name of the directory inside the app's cache directory
+    private static final String DIRECTORY_NAME = "news";
+
+    //Version of the format of an entry, increase it when the format changes
+    private static final int FORMAT_VERSION = 5;
+
+    //Number of entries that are kept in memory, enough for the recent queries of the search bar
+    private static final int MAX_MEMORY_ENTRIES = 16;
+
+    //The only instance, shared by all loaders
+    private static NewsCache sInstance;
+
+    //Store of the serialized entries
+    private final DiskLruCache mDiskCache;
+
+    //Index of the news of the entries on disk, by the names of the entries
+    private final NewsSearchIndex mSearchIndex = new NewsSearchIndex();
+
+    //True after the entries on disk were added to the search index, guarded by mDiskCache
+    private boolean mSearchIndexLoaded;
+
+    //Set when a trim cleared the search index, so the next search adds the entries on disk again.
+    //The trim runs on the main thread, which must not wait for the lock of the disk cache
+    private volatile boolean mSearchIndexDropped;
+
+    //The most recently used entries in access order, guarded by itself
+    private final LinkedHashMap<String, Entry> mMemoryCache = new LinkedHashMap<String, Entry>(
+            MAX_MEMORY_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() <= MAX_MEMORY_ENTRIES) {
+                return false;
+            }
+            mMemoryBytes -= eldest.getValue().mBytes;
+            mStats.recordEvictions(1);
+            return true;
+        }
+    };
+
+    //Estimated size of the entries in memory, guarded by mMemoryCache
+    private long mMemoryBytes;
+
+    private final CacheManager.Stats mStats = new CacheManager.Stats();
+
+    /**
+     * A page of news read from the cache together with the time when it was stored.
+     */
+    public static final class Entry {
+
+        private final NewsPage mPage;
+
+        private final long mSavedAt;
+
+        //Publication time of the newest news of every url of the key, or null
+        private final long[] mNewestByUrl;
+
+        //Estimated size in memory
+        private final long mBytes;
+
+        Entry(NewsPage page, long savedAt) {
+            this(page, savedAt, null);
+        }
+
+        Entry(NewsPage page, long savedAt, long[] newestByUrl) {
+            mPage = page;
+            mSavedAt = savedAt;
+            mNewestByUrl = newestByUrl;
+            mBytes = CacheManager.sizeOf(page);
+        }
+
+        //Gets the cached page
+        public NewsPage getPage() {
+            return mPage;
+        }
+
+        //Gets the time when the entry was stored, in milliseconds
+        public long getSavedAt() {
+            return mSavedAt;
+        }
+
+        /**
+         * Returns the publication time of the newest news of every url that the key joins,
+         * in their order. A time is NO_DATE if the url had no news, the array is null if the
+         * times are not known.
+         */
+        public long[] getNewestByUrl() {
+            return mNewestByUrl;
+        }
+
+        //Returns true if the entry is older than the TTL
+        public boolean isExpired(long now) {
+            return now - mSavedAt > TTL_MILLIS;
+        }
+    }
+
+    NewsCache(DiskLruCache diskCache) {
+        mDiskCache = diskCache;
+        mDiskCache.setOnRemovedListener(new DiskLruCache.OnRemovedListener() {
+            @Override
+            public void onRemoved(String name) {
+                mSearchIndex.remove(name);
+            }
+        });
+    }
+
+    /**
+     * Returns the cache of the application, creating it on first use.
+     */
+    public static synchronized NewsCache getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), DIRECTORY_NAME);
+            sInstance = new NewsCache(new DiskLruCache(directory, MAX_BYTES));
+            CacheManager.getInstance().register(sInstance);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the cached page for the query URL from memory, or null if it is not in memory.
+     * This does not read from disk, so it can be called on the main thread.
+     */
+    public Entry peek(String url) {
+        Entry entry;
+        synchronized (mMemoryCache) {
+            entry = mMemoryCache.get(url);
+        }
+        if (entry != null) {
+            mStats.recordHit();
+        } else {
+            mStats.recordMiss();
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the cached page for the query URL or null if there are none.
+     * This may read from disk, so it must not be called on the main thread.
+     */
+    public Entry get(String url) {
+        Entry entry = peek(url);
+        if (entry != null) {
+            return entry;
+        }
+        //The disk cache stays locked until the news are indexed, so the entry is not evicted
+        //in between and left in the index
+        synchronized (mDiskCache) {
+            byte[] data = mDiskCache.get(url);
+            if (data == null) {
+                return null;
+            }
+            try {
+                entry = decode(url, data);
+                mSearchIndex.put(DiskLruCache.fileNameFor(url), entry.getPage().getNews());
+            } catch (IOException e) {
+                //Unknown version or corrupted file, it will be replaced by the next put()
+                Log.e(LOG_TAG, "Problem reading the cached news for " + url, e);
+                mDiskCache.remove(url);
+                return null;
+            }
+        }
+        putInMemory(url, entry);
+        return entry;
+    }
+
+    /**
+     * Stores the page of news for the query URL.
+     * This writes to disk, so it must not be called on the main thread.
+     */
+    public void put(String url, NewsPage page) {
+        put(url, page, null);
+    }
+
+    /**
+     * Stores the page of news for the query URL together with the newest publication time of
+     * every url that the key joins, see {@link Entry#getNewestByUrl()}.
+     * This writes to disk, so it must not be called on the main thread.
+     */
+    public void put(String url, NewsPage page, long[] newestByUrl) {
+        long savedAt = System.currentTimeMillis();
+        String name = DiskLruCache.fileNameFor(url);
+        //Written to disk before memory, so a trim of the memory never drops the only copy
+        synchronized (mDiskCache) {
+            //Indexed first, so an entry that does not fit on disk is removed from the index again
+            mSearchIndex.put(name, page.getNews());
+            try {
+                mDiskCache.put(url, encode(url, page, savedAt, newestByUrl));
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem storing the news for " + url, e);
+                mSearchIndex.remove(name);
+            }
+        }
+        putInMemory(url, new Entry(page, savedAt, newestByUrl));
+    }
+
+    /**
+     * Returns the search index of all cached news. The first call adds the entries on disk,
+     * so it must not be called on the main thread.
+     */
+    public NewsSearchIndex getSearchIndex() {
+        //The disk cache stays locked until its entries are indexed, so none of them is evicted
+        //before it is indexed
+        synchronized (mDiskCache) {
+            if (mSearchIndexDropped) {
+                mSearchIndexDropped = false;
+                mSearchIndexLoaded = false;
+            }
+            if (!mSearchIndexLoaded) {
+                mSearchIndexLoaded = true;
+                for (Map.Entry<String, byte[]> data : mDiskCache.getAll().entrySet()) {
+                    try {
+                        mSearchIndex.put(data.getKey(), decode(null, data.getValue()).getPage().getNews());
+                    } catch (IOException e) {
+                        //Entries of an old format are replaced when their query is loaded again
+                    }
+                }
+            }
+        }
+        return mSearchIndex;
+    }
+
+    private void putInMemory(String url, Entry entry) {
+        synchronized (mMemoryCache) {
+            Entry previous = mMemoryCache.put(url, entry);
+            mMemoryBytes += entry.mBytes - (previous != null ? previous.mBytes : 0);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "news_pages";
+    }
+
+    @Override
+    public int getPriority() {
+        return CacheManager.PRIORITY_NEWS_PAGES;
+    }
+
+    //The entries and the search index
+    @Override
+    public long getMemoryBytes() {
+        long indexBytes = mSearchIndex.getMemoryBytes();
+        synchronized (mMemoryCache) {
+            return mMemoryBytes + indexBytes;
+        }
+    }
+
+    /**
+     * Drops the least recently used entries from memory, they are read from disk again.
+     * The search index, which holds the news of all entries on disk, is only dropped when
+     * the bytes that are kept are fewer than its own.
+     */
+    @Override
+    public void trimMemory(long maxBytes) {
+        long indexBytes = mSearchIndex.getMemoryBytes();
+        long maxEntryBytes = Math.max(0, maxBytes - indexBytes);
+        synchronized (mMemoryCache) {
+            Iterator<Entry> iterator = mMemoryCache.values().iterator();
+            while (mMemoryBytes > maxEntryBytes && iterator.hasNext()) {
+                mMemoryBytes -= iterator.next().mBytes;
+                iterator.remove();
+                mStats.recordEvictions(1);
+            }
+        }
+        if (indexBytes > maxBytes) {
+            //Cleared before it is marked, so a search that loads it meanwhile loads it again later
+            mSearchIndex.clear();
+            mSearchIndexDropped = true;
+        }
+    }
+
+    @Override
+    public CacheManager.Stats getStats() {
+        return mStats;
+    }
+
+    static byte[] encode(String url, NewsPage page, long savedAt, long[] newestByUrl) throws IOException {
+        List<News> news = page.getNews();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(FORMAT_VERSION);
+        //The URL is stored to detect two URLs that map to the same file
+        output.writeUTF(url);
+        output.writeLong(savedAt);
+        output.writeInt(page.getCurrentPage());
+        output.writeInt(page.getPages());
+        output.writeInt(news.size());
+        for (News item : news) {
+            writeNullableString(output, item.getTitle());
+            writeNullableString(output, item.getSection());
+            writeNullableString(output, item.getUrl());
+            output.writeLong(item.getPublishedAt());
+            writeNullableString(output, item.getThumbnailUrl());
+        }
+        output.writeInt(newestByUrl == null ? -1 : newestByUrl.length);
+        if (newestByUrl != null) {
+            for (long newest : newestByUrl) {
+                output.writeLong(newest);
+            }
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    static Entry decode(String url, byte[] data) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+        int version = input.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported cache format " + version);
+        }
+        //Without url the entry is read for the search index, where the url does not matter
+        String entryUrl = input.readUTF();
+        if (url != null && !url.equals(entryUrl)) {
+            throw new IOException("Cache entry belongs to another URL");
+        }
+        long savedAt = input.readLong();
+        int currentPage = input.readInt();
+        int pages = input.readInt();
+        int count = input.readInt();
+        List<News> news = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String title = readNullableString(input);
+            String section = readNullableString(input);
+            String newsUrl = readNullableString(input);
+            long publishedAt = input.readLong();
+            String thumbnailUrl = readNullableString(input);
+            news.add(new News(title, section, newsUrl, publishedAt, thumbnailUrl));
+        }
+        int urls = input.readInt();
+        long[] newestByUrl = urls < 0 ? null : new long[urls];
+        for (int i = 0; i < urls; i++) {
+            newestByUrl[i] = input.readLong();
+        }
+        return new Entry(new NewsPage(news, currentPage, pages), savedAt, newestByUrl);
+    }
+
+    private static void writeNullableString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.user.newsapp;
+
+/**
+ * Converts the publication dates of the API to epoch milliseconds and back to the shown text.
+ * <p>
+ * The API sends ISO 8601 timestamps like "2017-06-17T10:15:30Z". They are parsed by hand,
+ * because SimpleDateFormat is slow, allocates a lot and can not be shared between threads.
+ * All dates are in UTC, the same day that the first 10 characters of the timestamp show.
+ */
+final class NewsDates {
+
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    private NewsDates() {
+    }
+
+    /**
+     * Parses "yyyy-MM-dd" or "yyyy-MM-ddTHH:mm:ss" with optional fraction of seconds and
+     * an optional "Z" or "+hh:mm" offset. Without offset the time is taken as UTC.
+     *
+     * @return the epoch milliseconds, or {@link News#NO_DATE} if the text is null or invalid
+     */
+    static long parse(String text) {
+        if (text == null || text.length() < 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return News.NO_DATE;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return News.NO_DATE;
+        }
+        long millis = daysFromCivil(year, month, day) * MILLIS_PER_DAY;
+        if (text.length() == 10) {
+            return millis;
+        }
+
+        //The time of the day
+        if (text.length() < 19 || text.charAt(10) != 'T' || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return News.NO_DATE;
+        }
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return News.NO_DATE;
+        }
+        millis += hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE + second * MILLIS_PER_SECOND;
+
+        //Fraction of seconds, only the milliseconds are kept
+        int position = 19;
+        if (position < text.length() && text.charAt(position) == '.') {
+            position++;
+            int start = position;
+            long fraction = 0;
+            while (position < text.length() && isDigit(text.charAt(position))) {
+                if (position - start < 3) {
+                    fraction = fraction * 10 + text.charAt(position) - '0';
+                }
+                position++;
+            }
+            for (int i = position - start; i < 3; i++) {
+                fraction *= 10;
+            }
+            millis += fraction;
+        }
+
+        //Offset from UTC
+        if (position == text.length()) {
+            return millis;
+        }
+        char sign = text.charAt(position);
+        if (sign == 'Z' && position + 1 == text.length()) {
+            return millis;
+        }
+        if ((sign == '+' || sign == '-') && position + 6 == text.length() && text.charAt(position + 3) == ':') {
+            int offsetHours = digits(text, position + 1, 2);
+            int offsetMinutes = digits(text, position + 4, 2);
+            if (offsetHours < 0 || offsetMinutes < 0) {
+                return News.NO_DATE;
+            }
+            long offset = offsetHours * MILLIS_PER_HOUR + offsetMinutes * MILLIS_PER_MINUTE;
+            return sign == '+' ? millis - offset : millis + offset;
+        }
+        return News.NO_DATE;
+    }
+
+    /**
+     * Formats the day of the epoch milliseconds as "yyyy-MM-dd" in UTC.
+     *
+     * @return the text, or null for {@link News#NO_DATE}
+     */
+    static String formatDate(long millis) {
+        if (millis == News.NO_DATE) {
+            return null;
+        }
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+
+        //Inverse of daysFromCivil
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        char[] chars = new char[10];
+        writeDigits(chars, 0, (int) year, 4);
+        chars[4] = '-';
+        writeDigits(chars, 5, month, 2);
+        chars[7] = '-';
+        writeDigits(chars, 8, day, 2);
+        return new String(chars);
+    }
+
+    /**
+     * Formats the time as an API timestamp "yyyy-MM-ddTHH:mm:ssZ" in UTC, the milliseconds are
+     * dropped. Returns null for {@link News#NO_DATE}.
+     */
+    static String formatTimestamp(long millis) {
+        String date = formatDate(millis);
+        if (date == null) {
+            return null;
+        }
+        int secondOfDay = (int) ((millis - floorDiv(millis, MILLIS_PER_DAY) * MILLIS_PER_DAY) / MILLIS_PER_SECOND);
+        char[] chars = new char[20];
+        date.getChars(0, 10, chars, 0);
+        chars[10] = 'T';
+        writeDigits(chars, 11, secondOfDay / 3600, 2);
+        chars[13] = ':';
+        writeDigits(chars, 14, secondOfDay / 60 % 60, 2);
+        chars[16] = ':';
+        writeDigits(chars, 17, secondOfDay % 60, 2);
+        chars[19] = 'Z';
+        return new String(chars);
+    }
+
+    //Number of days since 1970-01-01 of a date in the proleptic Gregorian calendar
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    //Returns the number of the digits at the position, or -1 if one of them is not a digit
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    //Division that rounds towards negative infinity, Math.floorDiv needs API level 24
+    private static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        return (dividend % divisor != 0 && (dividend < 0) != (divisor < 0)) ? quotient - 1 : quotient;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static void writeDigits(char[] chars, int start, int value, int count) {
+        for (int i = start + count - 1; i >= start; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.user.newsapp;
+
+import java.io.Serializable;
+
+/**
+ * Filter and sort order of the loaded news, answered by a {@link NewsFilterIndex} without the
+ * network. A news is shown if it is of the section, was published in the date range and has
+ * all words of the keyword in its title.
+ */
+public class NewsFilter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //Sort orders
+    public static final int SORT_NEWEST = 0;
+    public static final int SORT_OLDEST = 1;
+    //Sections in alphabetical order, every section newest first
+    public static final int SORT_SECTION = 2;
+
+    //Open ends of the date range. With a start, news without a date are not shown
+    public static final long FROM_ANY = Long.MIN_VALUE;
+    public static final long TO_ANY = Long.MAX_VALUE;
+
+    //The section, null for all sections
+    private final String mSection;
+
+    //Start and end of the date range in epoch milliseconds, both included
+    private final long mFrom;
+    private final long mTo;
+
+    //Words that the title must contain, null for any title
+    private final String mKeyword;
+
+    //One of the sort constants
+    private final int mSort;
+
+    /**
+     * Constructs a new {@link NewsFilter}.
+     *
+     * @param section is null for all sections
+     * @param from    is the earliest publication time, or {@link #FROM_ANY}
+     * @param to      is the latest publication time, or {@link #TO_ANY}
+     * @param keyword is null or empty for any title
+     * @param sort    is one of the sort constants
+     */
+    public NewsFilter(String section, long from, long to, String keyword, int sort) {
+        mSection = section;
+        mFrom = from;
+        mTo = to;
+        mKeyword = keyword == null || keyword.trim().isEmpty() ? null : keyword.trim();
+        mSort = sort;
+    }
+
+    public String getSection() {
+        return mSection;
+    }
+
+    public long getFrom() {
+        return mFrom;
+    }
+
+    public long getTo() {
+        return mTo;
+    }
+
+    public String getKeyword() {
+        return mKeyword;
+    }
+
+    public int getSort() {
+        return mSort;
+    }
+
+    /**
+     * Returns true if the filter shows all news newest first, like the list without a filter.
+     */
+    public boolean isEmpty() {
+        return mSection == null && mFrom == FROM_ANY && mTo == TO_ANY && mKeyword == null && mSort == SORT_NEWEST;
+    }
+}
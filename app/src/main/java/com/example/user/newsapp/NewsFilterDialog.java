@@ -0,0 +1,137 @@
+package com.example.user.newsapp;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.os.Bundle;
+import android.support.v7.app.AlertDialog;
+import android.support.v7.app.AppCompatDialogFragment;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.ArrayAdapter;
+import android.widget.EditText;
+import android.widget.Spinner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dialog which sets the {@link NewsFilter} of the list, opened by the filter action of the menu.
+ * The date range is one of a few ranges up to now, the sections are the ones of the loaded news.
+ * <p>
+ * The dialog is a fragment, so it stays open with its fields when the activity is recreated,
+ * like after a rotation. The activity that shows it implements {@link OnFilterSetListener}.
+ */
+public class NewsFilterDialog extends AppCompatDialogFragment {
+
+    /**
+     * Receives the filter that the user set, implemented by the activity.
+     */
+    public interface OnFilterSetListener {
+        //The filter is null when it was cleared
+        void onFilterSet(NewsFilter filter);
+    }
+
+    //Days of the entries of the date field, 0 for any time
+    private static final int[] DATE_RANGE_DAYS = {0, 1, 7, 30};
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    //Keys of the arguments
+    private static final String ARG_SECTIONS = "sections";
+    private static final String ARG_FILTER = "filter";
+
+    /**
+     * Creates the dialog with the fields of the current filter.
+     *
+     * @param sections are the sections of the loaded news
+     * @param current  is the filter of the list, or null
+     */
+    public static NewsFilterDialog newInstance(List<String> sections, NewsFilter current) {
+        Bundle arguments = new Bundle();
+        arguments.putStringArrayList(ARG_SECTIONS, new ArrayList<>(sections));
+        arguments.putSerializable(ARG_FILTER, current);
+        NewsFilterDialog dialog = new NewsFilterDialog();
+        dialog.setArguments(arguments);
+        return dialog;
+    }
+
+    @Override
+    public Dialog onCreateDialog(Bundle savedInstanceState) {
+        Context context = getActivity();
+        final List<String> sections = getArguments().getStringArrayList(ARG_SECTIONS);
+        NewsFilter current = (NewsFilter) getArguments().getSerializable(ARG_FILTER);
+
+        //The fields the user changed are restored by the dialog after a rotation
+        View view = LayoutInflater.from(context).inflate(R.layout.dialog_filter, null);
+        final Spinner sectionField = (Spinner) view.findViewById(R.id.filter_section);
+        final Spinner dateField = (Spinner) view.findViewById(R.id.filter_date);
+        final EditText keywordField = (EditText) view.findViewById(R.id.filter_keyword);
+        final Spinner sortField = (Spinner) view.findViewById(R.id.filter_sort);
+
+        List<String> entries = new ArrayList<>(sections.size() + 1);
+        entries.add(context.getString(R.string.all_sections));
+        entries.addAll(sections);
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(context, android.R.layout.simple_spinner_item, entries);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        sectionField.setAdapter(adapter);
+
+        if (current != null) {
+            //A section that is not loaded anymore shows all sections
+            sectionField.setSelection(current.getSection() == null ? 0 : sections.indexOf(current.getSection()) + 1);
+            dateField.setSelection(dateEntryOf(current, System.currentTimeMillis()));
+            keywordField.setText(current.getKeyword());
+            sortField.setSelection(current.getSort());
+        }
+
+        return new AlertDialog.Builder(context)
+                .setTitle(R.string.filter_title)
+                .setView(view)
+                .setPositiveButton(R.string.filter_apply, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        int sectionEntry = sectionField.getSelectedItemPosition();
+                        int days = DATE_RANGE_DAYS[dateField.getSelectedItemPosition()];
+                        NewsFilter filter = new NewsFilter(
+                                sectionEntry <= 0 ? null : sections.get(sectionEntry - 1),
+                                days == 0 ? NewsFilter.FROM_ANY : System.currentTimeMillis() - days * DAY_MILLIS,
+                                NewsFilter.TO_ANY,
+                                keywordField.getText().toString(),
+                                sortField.getSelectedItemPosition());
+                        onFilterSet(filter.isEmpty() ? null : filter);
+                    }
+                })
+                .setNeutralButton(R.string.filter_clear, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        onFilterSet(null);
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .create();
+    }
+
+    //Hands the filter to the activity that shows the dialog
+    private void onFilterSet(NewsFilter filter) {
+        if (getActivity() instanceof OnFilterSetListener) {
+            ((OnFilterSetListener) getActivity()).onFilterSet(filter);
+        }
+    }
+
+    //The entry of the date field whose range is closest to the one of the filter, which was
+    //set some time ago
+    private static int dateEntryOf(NewsFilter filter, long now) {
+        if (filter.getFrom() == NewsFilter.FROM_ANY) {
+            return 0;
+        }
+        long rangeMillis = now - filter.getFrom();
+        int entry = 1;
+        for (int i = 2; i < DATE_RANGE_DAYS.length; i++) {
+            if (Math.abs(DATE_RANGE_DAYS[i] * DAY_MILLIS - rangeMillis)
+                    < Math.abs(DATE_RANGE_DAYS[entry] * DAY_MILLIS - rangeMillis)) {
+                entry = i;
+            }
+        }
+        return entry;
+    }
+}
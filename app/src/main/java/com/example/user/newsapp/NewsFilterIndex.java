@@ -0,0 +1,214 @@
+package com.example.user.newsapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Indexes of the loaded news for {@link NewsFilter}s, built once when the news were loaded.
+ * <p>
+ * The news are kept in date order, overall and for every section, so a section is a lookup
+ * and a date range is a binary search in its list. The words of the titles point to the news
+ * that contain them, like in the {@link NewsSearchIndex}, so a keyword is a few lookups instead
+ * of a scan of all titles. Sorting by section walks the lists of the sections in their order,
+ * so no filter sorts the news again.
+ */
+public class NewsFilterIndex {
+
+    //Section of the news that have none, it is sorted first and not listed by getSections
+    private static final String NO_SECTION = "";
+
+    //The indexed news, the position is their id
+    private final List<News> mNews = new ArrayList<>();
+
+    //Publication times of the news by id
+    private final long[] mPublishedAt;
+
+    //Ids of all news, newest first. News without a date are at the end
+    private final int[] mByDate;
+
+    //Ids of the news of every section, newest first. The sections in alphabetical order
+    private final TreeMap<String, int[]> mSections = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    //The news that contain a word in their title, the words sorted for prefix lookups
+    private final TreeMap<String, BitSet> mTitleWords = new TreeMap<>();
+
+    /**
+     * Constructs a new {@link NewsFilterIndex} and builds the indexes.
+     *
+     * @param news are the loaded news in the order of the list, the nulls of dropped pages are skipped
+     */
+    public NewsFilterIndex(List<News> news) {
+        for (News item : news) {
+            if (item != null) {
+                mNews.add(item);
+            }
+        }
+        mPublishedAt = new long[mNews.size()];
+        Integer[] byDate = new Integer[mNews.size()];
+        for (int id = 0; id < mNews.size(); id++) {
+            News item = mNews.get(id);
+            mPublishedAt[id] = item.getPublishedAt();
+            byDate[id] = id;
+            for (String word : NewsSearchIndex.words(item.getTitle())) {
+                BitSet ids = mTitleWords.get(word);
+                if (ids == null) {
+                    ids = new BitSet(mNews.size());
+                    mTitleWords.put(word, ids);
+                }
+                ids.set(id);
+            }
+        }
+        //The sort is stable, news of the same time keep the order of the list
+        Arrays.sort(byDate, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                long firstTime = mPublishedAt[first];
+                long secondTime = mPublishedAt[second];
+                return firstTime < secondTime ? 1 : (firstTime == secondTime ? 0 : -1);
+            }
+        });
+        mByDate = new int[byDate.length];
+        for (int i = 0; i < byDate.length; i++) {
+            mByDate[i] = byDate[i];
+        }
+
+        //Split the date order by section, so every section is in date order too
+        Map<String, List<Integer>> sections = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int id : mByDate) {
+            String section = mNews.get(id).getSection();
+            if (section == null) {
+                section = NO_SECTION;
+            }
+            List<Integer> ids = sections.get(section);
+            if (ids == null) {
+                ids = new ArrayList<>();
+                sections.put(section, ids);
+            }
+            ids.add(id);
+        }
+        for (Map.Entry<String, List<Integer>> entry : sections.entrySet()) {
+            List<Integer> ids = entry.getValue();
+            int[] array = new int[ids.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = ids.get(i);
+            }
+            mSections.put(entry.getKey(), array);
+        }
+    }
+
+    //Gets the number of indexed news
+    public int size() {
+        return mNews.size();
+    }
+
+    /**
+     * Returns the sections of the news in alphabetical order.
+     */
+    public List<String> getSections() {
+        List<String> sections = new ArrayList<>(mSections.keySet());
+        sections.remove(NO_SECTION);
+        return sections;
+    }
+
+    /**
+     * Returns the news that pass the filter, in its sort order.
+     */
+    public List<News> apply(NewsFilter filter) {
+        List<News> result = new ArrayList<>();
+        BitSet titleMatches = null;
+        if (filter.getKeyword() != null) {
+            titleMatches = matchTitles(filter.getKeyword());
+            if (titleMatches.isEmpty()) {
+                return result;
+            }
+        }
+        boolean oldestFirst = filter.getSort() == NewsFilter.SORT_OLDEST;
+        if (filter.getSection() != null) {
+            int[] ids = mSections.get(filter.getSection());
+            if (ids != null) {
+                addRange(ids, filter, titleMatches, oldestFirst, result);
+            }
+        } else if (filter.getSort() == NewsFilter.SORT_SECTION) {
+            for (int[] ids : mSections.values()) {
+                addRange(ids, filter, titleMatches, false, result);
+            }
+        } else {
+            addRange(mByDate, filter, titleMatches, oldestFirst, result);
+        }
+        return result;
+    }
+
+    //Adds the news of the date range of the ids, which are newest first
+    private void addRange(int[] ids, NewsFilter filter, BitSet titleMatches, boolean oldestFirst, List<News> result) {
+        int start = firstAtOrBefore(ids, filter.getTo());
+        int end = filter.getFrom() == NewsFilter.FROM_ANY ? ids.length : firstAtOrBefore(ids, filter.getFrom() - 1);
+        if (!oldestFirst) {
+            addIds(ids, start, end, titleMatches, result);
+            return;
+        }
+        //Oldest first, the news without a date stay at the end
+        int undated = Math.max(start, Math.min(end, firstAtOrBefore(ids, News.NO_DATE)));
+        for (int i = undated - 1; i >= start; i--) {
+            addId(ids[i], titleMatches, result);
+        }
+        addIds(ids, undated, end, titleMatches, result);
+    }
+
+    private void addIds(int[] ids, int start, int end, BitSet titleMatches, List<News> result) {
+        for (int i = start; i < end; i++) {
+            addId(ids[i], titleMatches, result);
+        }
+    }
+
+    private void addId(int id, BitSet titleMatches, List<News> result) {
+        if (titleMatches == null || titleMatches.get(id)) {
+            result.add(mNews.get(id));
+        }
+    }
+
+    //Binary search for the first of the ids, which are newest first, published at or before the time
+    private int firstAtOrBefore(int[] ids, long time) {
+        int low = 0;
+        int high = ids.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mPublishedAt[ids[middle]] > time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    //The news whose titles contain all words of the keyword, every word also matches the
+    //words that start with it
+    private BitSet matchTitles(String keyword) {
+        BitSet matches = null;
+        for (String word : NewsSearchIndex.words(keyword)) {
+            BitSet wordMatches = new BitSet(mNews.size());
+            NavigableMap<String, BitSet> prefixed =
+                    mTitleWords.subMap(word, true, word + Character.MAX_VALUE, false);
+            for (BitSet ids : prefixed.values()) {
+                wordMatches.or(ids);
+            }
+            if (matches == null) {
+                matches = wordMatches;
+            } else {
+                matches.and(wordMatches);
+            }
+        }
+        //A keyword without words, like punctuation, matches every title
+        if (matches == null) {
+            matches = new BitSet(mNews.size());
+            matches.set(0, mNews.size());
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,590 @@
+package com.example.user.newsapp;
+
+import android.util.Log;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * HTTP client for The Guardian API, shared by all requests of the app.
+ * <p>
+ * Connections are kept alive: the response body is always read to the end and closed instead
+ * of calling {@link HttpURLConnection#disconnect()}, so the connection goes back to the pool of
+ * {@link HttpURLConnection} and is reused by the next request to the same host.
+ * Responses are requested gzip compressed and are decompressed while they are parsed.
+ * The ETag and Last-Modified headers of every response are remembered together with the
+ * parsed news, so a refresh sends a conditional request and a 304 answer costs no body at all.
+ * <p>
+ * A request is aborted when the {@link CancelSignal} of the calling thread is cancelled: the
+ * connection is disconnected, which makes the blocking reads fail right away.
+ * <p>
+ * The articles of the reader are fetched with {@link #fetchArticle(URL)} over the same pool.
+ * <p>
+ * The {@link RetryPolicy} sets the timeouts of every attempt from the observed latencies and
+ * repeats the attempts that failed with a network error or an error response that may go
+ * away, like 503 or 429 with its Retry-After. The {@link CircuitBreaker} stops sending
+ * requests while the API keeps failing: the requests then fail right away and the loaders
+ * show their cached news.
+ */
+public class NewsHttpClient {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = NewsHttpClient.class.getSimpleName();
+
+    //Number of responses whose validators and news are remembered
+    private static final int MAX_VALIDATED_RESPONSES = 16;
+
+    //HTTP header names
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+    private static final String ENCODING_GZIP = "gzip";
+
+    //The only instance, so all requests share the connection pool and the validators
+    private static NewsHttpClient sInstance;
+
+    //Validators and news of the last responses, in access order
+    private final Map<String, ValidatedResponse> mValidatedResponses =
+            new LinkedHashMap<String, ValidatedResponse>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ValidatedResponse> eldest) {
+                    return size() > MAX_VALIDATED_RESPONSES;
+                }
+            };
+
+    //Decides the timeouts and the retries of the requests
+    private final RetryPolicy mRetryPolicy;
+
+    //Stops the requests while the API is failing
+    private final CircuitBreaker mCircuitBreaker;
+
+    //Counters of the traffic
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mNotModifiedCount = new AtomicLong();
+    private final AtomicLong mBytesReceived = new AtomicLong();
+    private final AtomicLong mBytesDecoded = new AtomicLong();
+
+    //A response which can be revalidated with a conditional request
+    private static final class ValidatedResponse {
+
+        final String mETag;
+
+        final String mLastModified;
+
+        final NewsPage mPage;
+
+        ValidatedResponse(String eTag, String lastModified, NewsPage page) {
+            mETag = eTag;
+            mLastModified = lastModified;
+            mPage = page;
+        }
+    }
+
+    /**
+     * One attempt of a request, which {@link #execute} repeats when it fails.
+     */
+    private interface Attempt<T> {
+        //Sends the request of the opened connection and reads the response
+        T run(HttpURLConnection urlConnection, CancelSignal signal) throws IOException;
+    }
+
+    /**
+     * An error response, so the attempt can be repeated if the error may go away.
+     */
+    private static final class HttpStatusException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        final int mResponseCode;
+
+        //Time the server asked to wait, or RetryPolicy.NO_RETRY_AFTER
+        final long mRetryAfterMillis;
+
+        HttpStatusException(int responseCode, long retryAfterMillis) {
+            super("Error response code: " + responseCode);
+            mResponseCode = responseCode;
+            mRetryAfterMillis = retryAfterMillis;
+        }
+    }
+
+    /**
+     * Constructs a new {@link NewsHttpClient} with the default retries and circuit breaker.
+     */
+    public NewsHttpClient() {
+        this(new RetryPolicy(), new CircuitBreaker());
+    }
+
+    /**
+     * Constructs a new {@link NewsHttpClient}.
+     *
+     * @param retryPolicy    decides the timeouts and the retries of the requests
+     * @param circuitBreaker stops the requests while the API is failing
+     */
+    public NewsHttpClient(RetryPolicy retryPolicy, CircuitBreaker circuitBreaker) {
+        mRetryPolicy = retryPolicy;
+        mCircuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Returns the client of the application, creating it on first use.
+     */
+    public static synchronized NewsHttpClient getInstance() {
+        if (sInstance == null) {
+            sInstance = new NewsHttpClient();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Make an HTTP GET request to the given URL and return the page of News parsed from the response.
+     * If the server answers 304 Not Modified, the page parsed from the previous response is returned.
+     *
+     * @return the page of news, or null if the request failed or the circuit is open
+     * @throws IOException if the last attempt failed with a network error
+     */
+    public NewsPage fetch(URL url) throws IOException {
+        final String key = url.toString();
+        return execute(url, new Attempt<NewsPage>() {
+            @Override
+            public NewsPage run(HttpURLConnection urlConnection, CancelSignal signal) throws IOException {
+                return fetchPage(key, urlConnection, signal);
+            }
+        });
+    }
+
+    //One attempt of fetch()
+    private NewsPage fetchPage(String key, HttpURLConnection urlConnection, CancelSignal signal) throws IOException {
+        ValidatedResponse previous;
+        synchronized (mValidatedResponses) {
+            previous = mValidatedResponses.get(key);
+        }
+        if (previous != null) {
+            if (previous.mETag != null) {
+                urlConnection.setRequestProperty(HEADER_IF_NONE_MATCH, previous.mETag);
+            }
+            if (previous.mLastModified != null) {
+                urlConnection.setRequestProperty(HEADER_IF_MODIFIED_SINCE, previous.mLastModified);
+            }
+        }
+
+        InputStream inputStream = null;
+        try {
+            int responseCode = getResponseCode(urlConnection);
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && previous != null) {
+                mNotModifiedCount.incrementAndGet();
+                Metrics.count(Metrics.NOT_MODIFIED, 1);
+                inputStream = urlConnection.getInputStream();
+                return copyOf(previous.mPage);
+            }
+            // If the request was successful (response code 200),
+            // then parse the input stream as it is read.
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                //The gzip header is read from the network already, so the body times start here
+                long start = Metrics.startTimer();
+                CountingInputStream wireStream = new CountingInputStream(urlConnection.getInputStream(), mBytesReceived);
+                inputStream = wireStream;
+                InputStream bodyStream = wireStream;
+                if (ENCODING_GZIP.equalsIgnoreCase(urlConnection.getContentEncoding())) {
+                    bodyStream = new GZIPInputStream(wireStream);
+                }
+                NewsPage page = new NewsPage();
+                try {
+                    NewsJsonParser.parse(new CountingInputStream(bodyStream, mBytesDecoded), page);
+                } catch (IOException e) {
+                    if (signal != null && signal.isCanceled()) {
+                        //A part of a cancelled response must not be cached
+                        throw e;
+                    }
+                    //Keep the news parsed before the error, the same way
+                    //extractDataFromJson keeps the partial list. They are not revalidated later.
+                    Log.e(LOG_TAG, "Parsing the JSON stream failed", e);
+                    Metrics.count(Metrics.ERRORS, 1);
+                    return page;
+                } finally {
+                    //The body is parsed while it arrives, the time spent waiting for it is the download
+                    recordBodyTimes(start, wireStream.getReadNanos());
+                    Metrics.count(Metrics.ITEMS, page.getNews().size());
+                    countProfileBytes(key, wireStream.getCount());
+                }
+                remember(key, urlConnection, page);
+                return page;
+            }
+            inputStream = urlConnection.getErrorStream();
+            throw statusException(urlConnection, responseCode);
+        } finally {
+            //Read the rest of the body and close it, so the connection can be reused.
+            //The connection of a cancelled request is closed already
+            if (inputStream != null && (signal == null || !signal.isCanceled())) {
+                drainAndClose(inputStream);
+            }
+        }
+    }
+
+    /**
+     * Make an HTTP GET request to the given URL of a single item and return its article.
+     * Articles do not change often and are cached by the caller, so no validators are kept.
+     *
+     * @return the article, or null if the request failed, was cancelled or the circuit is open
+     * @throws IOException if the last attempt failed with a network error
+     */
+    public Article fetchArticle(final URL url) throws IOException {
+        return execute(url, new Attempt<Article>() {
+            @Override
+            public Article run(HttpURLConnection urlConnection, CancelSignal signal) throws IOException {
+                return fetchArticle(url.toString(), urlConnection, signal);
+            }
+        });
+    }
+
+    //One attempt of fetchArticle()
+    private Article fetchArticle(String key, HttpURLConnection urlConnection, CancelSignal signal) throws IOException {
+        InputStream inputStream = null;
+        try {
+            int responseCode = getResponseCode(urlConnection);
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                inputStream = urlConnection.getErrorStream();
+                throw statusException(urlConnection, responseCode);
+            }
+            CountingInputStream wireStream = new CountingInputStream(urlConnection.getInputStream(), mBytesReceived);
+            inputStream = wireStream;
+            InputStream bodyStream = wireStream;
+            if (ENCODING_GZIP.equalsIgnoreCase(urlConnection.getContentEncoding())) {
+                bodyStream = new GZIPInputStream(wireStream);
+            }
+            try {
+                return NewsJsonParser.parseArticle(new CountingInputStream(bodyStream, mBytesDecoded));
+            } finally {
+                countProfileBytes(key, wireStream.getCount());
+            }
+        } finally {
+            if (inputStream != null && (signal == null || !signal.isCanceled())) {
+                drainAndClose(inputStream);
+            }
+        }
+    }
+
+    /**
+     * Runs the attempts of a request until one succeeds, the error can't go away or the
+     * {@link RetryPolicy} gives up. A request is aborted when the {@link CancelSignal} of the
+     * calling thread is cancelled, also while it waits for a retry.
+     *
+     * @return the result of the attempt, or null if the request was cancelled, the circuit is
+     * open or the server answered with an error response
+     * @throws IOException the network error of the last attempt
+     */
+    private <T> T execute(URL url, Attempt<T> attempt) throws IOException {
+        CancelSignal signal = CancelSignal.current();
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            if (signal != null && signal.isCanceled()) {
+                return null;
+            }
+            int permit = mCircuitBreaker.allowRequest();
+            if (permit == CircuitBreaker.PERMIT_DENIED) {
+                Log.i(LOG_TAG, "The API is failing, the request is not sent: " + url);
+                Metrics.count(Metrics.SHORT_CIRCUITED, 1);
+                return null;
+            }
+            final HttpURLConnection urlConnection;
+            try {
+                urlConnection = openConnection(url,
+                        mRetryPolicy.getConnectTimeout(attemptNumber), mRetryPolicy.getReadTimeout(attemptNumber));
+            } catch (IOException | RuntimeException e) {
+                //No request was sent, the next one may be the trial of the circuit
+                mCircuitBreaker.onCanceled(permit);
+                throw e;
+            }
+            mRequestCount.incrementAndGet();
+            Metrics.count(Metrics.REQUESTS, 1);
+            if (attemptNumber > 1) {
+                Metrics.count(Metrics.RETRIES, 1);
+            }
+
+            //Closing the socket is the only way to stop a read that waits for the network
+            CancelSignal.OnCancelListener abort = new CancelSignal.OnCancelListener() {
+                @Override
+                public void onCancel() {
+                    urlConnection.disconnect();
+                }
+            };
+            if (signal != null) {
+                signal.addOnCancelListener(abort);
+            }
+            IOException failure;
+            long retryAfterMillis = RetryPolicy.NO_RETRY_AFTER;
+            try {
+                T result = attempt.run(urlConnection, signal);
+                mCircuitBreaker.onSuccess(permit);
+                return result;
+            } catch (HttpStatusException e) {
+                Log.e(LOG_TAG, "Error response code: " + e.mResponseCode);
+                Metrics.count(Metrics.ERRORS, 1);
+                if (!RetryPolicy.isRetryable(e.mResponseCode)) {
+                    //The API works, it would give the same answer again
+                    mCircuitBreaker.onSuccess(permit);
+                    return null;
+                }
+                failure = e;
+                retryAfterMillis = e.mRetryAfterMillis;
+            } catch (IOException e) {
+                if (signal != null && signal.isCanceled()) {
+                    Log.i(LOG_TAG, "Request was cancelled: " + url);
+                    mCircuitBreaker.onCanceled(permit);
+                    return null;
+                }
+                failure = e;
+            } catch (RuntimeException | Error e) {
+                //Not an answer of the API, the next request may be the trial of the circuit
+                mCircuitBreaker.onCanceled(permit);
+                throw e;
+            } finally {
+                if (signal != null) {
+                    signal.removeOnCancelListener(abort);
+                }
+            }
+
+            mCircuitBreaker.onFailure(permit);
+            long delay = attemptNumber < mRetryPolicy.getMaxAttempts()
+                    ? mRetryPolicy.getRetryDelay(attemptNumber, retryAfterMillis) : RetryPolicy.NO_RETRY_AFTER;
+            if (delay == RetryPolicy.NO_RETRY_AFTER) {
+                if (retryAfterMillis != RetryPolicy.NO_RETRY_AFTER) {
+                    //No request is sent before the time the server asked for
+                    mCircuitBreaker.onRetryAfter(retryAfterMillis);
+                }
+                if (failure instanceof HttpStatusException) {
+                    return null;
+                }
+                throw failure;
+            }
+            Log.i(LOG_TAG, "Attempt " + attemptNumber + " failed, retrying in " + delay + " ms: " + url);
+            if (!waitForRetry(delay, signal)) {
+                return null;
+            }
+        }
+    }
+
+    //Waits before a retry, returns false if the request was cancelled meanwhile
+    private static boolean waitForRetry(long delayMillis, CancelSignal signal) {
+        final CountDownLatch canceled = new CountDownLatch(1);
+        CancelSignal.OnCancelListener wakeUp = new CancelSignal.OnCancelListener() {
+            @Override
+            public void onCancel() {
+                canceled.countDown();
+            }
+        };
+        if (signal != null) {
+            signal.addOnCancelListener(wakeUp);
+        }
+        try {
+            return !canceled.await(delayMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            //The load was stopped, like by the timeout of the FeedAggregator
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            if (signal != null) {
+                signal.removeOnCancelListener(wakeUp);
+            }
+        }
+    }
+
+    //Connects and waits for the status of the response. The times are the samples of the
+    //timeouts of the next requests, a timeout counts as a sample of its length
+    private int getResponseCode(HttpURLConnection urlConnection) throws IOException {
+        long start = System.nanoTime();
+        try {
+            urlConnection.connect();
+        } catch (SocketTimeoutException e) {
+            mRetryPolicy.recordConnectTime(urlConnection.getConnectTimeout());
+            throw e;
+        }
+        long connected = System.nanoTime();
+        mRetryPolicy.recordConnectTime(TimeUnit.NANOSECONDS.toMillis(connected - start));
+        Metrics.record(Metrics.CONNECT, connected - start);
+        int responseCode;
+        try {
+            responseCode = urlConnection.getResponseCode();
+        } catch (SocketTimeoutException e) {
+            mRetryPolicy.recordFirstByteTime(urlConnection.getReadTimeout());
+            throw e;
+        }
+        long firstByte = System.nanoTime();
+        mRetryPolicy.recordFirstByteTime(TimeUnit.NANOSECONDS.toMillis(firstByte - connected));
+        Metrics.record(Metrics.FIRST_BYTE, firstByte - connected);
+        return responseCode;
+    }
+
+    private static HttpStatusException statusException(HttpURLConnection urlConnection, int responseCode) {
+        long retryAfterMillis = RetryPolicy.parseRetryAfter(
+                urlConnection.getHeaderField(HEADER_RETRY_AFTER), System.currentTimeMillis());
+        return new HttpStatusException(responseCode, retryAfterMillis);
+    }
+
+    //Opens a GET request with the timeouts, which asks for a gzip compressed body
+    private static HttpURLConnection openConnection(URL url, int connectTimeout, int readTimeout) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setReadTimeout(readTimeout);
+        urlConnection.setConnectTimeout(connectTimeout);
+        urlConnection.setRequestMethod("GET");
+        //Setting the header turns off the transparent decompression, the body is unzipped while it is parsed
+        urlConnection.setRequestProperty(HEADER_ACCEPT_ENCODING, ENCODING_GZIP);
+        return urlConnection;
+    }
+
+    private static void recordBodyTimes(long startNanos, long readNanos) {
+        if (startNanos != 0) {
+            long bodyNanos = System.nanoTime() - startNanos;
+            Metrics.record(Metrics.DOWNLOAD, readNanos);
+            Metrics.record(Metrics.PARSE, bodyNanos - readNanos);
+        }
+    }
+
+    //Adds the received bytes to the counter of the QueryProfile of the url
+    private static void countProfileBytes(String url, long bytes) {
+        if (Metrics.isEnabled()) {
+            QueryProfile profile = QueryProfile.fromUrl(url);
+            if (profile != null) {
+                Metrics.count(profile.getBytesCounter(), bytes);
+            }
+        }
+    }
+
+    //Remembers the validators of the response, if the server sent any
+    private void remember(String key, HttpURLConnection urlConnection, NewsPage page) {
+        String eTag = urlConnection.getHeaderField(HEADER_ETAG);
+        String lastModified = urlConnection.getHeaderField(HEADER_LAST_MODIFIED);
+        synchronized (mValidatedResponses) {
+            if (eTag == null && lastModified == null) {
+                mValidatedResponses.remove(key);
+            } else {
+                mValidatedResponses.put(key, new ValidatedResponse(eTag, lastModified, copyOf(page)));
+            }
+        }
+    }
+
+    //The callers may change the list of news, so every one gets its own copy
+    private static NewsPage copyOf(NewsPage page) {
+        return new NewsPage(new ArrayList<>(page.getNews()), page.getCurrentPage(), page.getPages());
+    }
+
+    //Gets the number of requests sent
+    public long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    //Gets the number of requests answered with 304 Not Modified
+    public long getNotModifiedCount() {
+        return mNotModifiedCount.get();
+    }
+
+    //Gets the number of body bytes received from the network, before decompression
+    public long getBytesReceived() {
+        return mBytesReceived.get();
+    }
+
+    //Gets the number of body bytes after decompression
+    public long getBytesDecoded() {
+        return mBytesDecoded.get();
+    }
+
+    //Reads the rest of the body and closes it, so the connection goes back to the pool
+    static void drainAndClose(InputStream inputStream) {
+        try {
+            byte[] buffer = new byte[4096];
+            while (inputStream.read(buffer) != -1) {
+                //Discard the rest of the body
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the rest of the response", e);
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem closing the response", e);
+            }
+        }
+    }
+
+    /**
+     * Input stream which adds the number of bytes read to a counter. While the {@link Metrics}
+     * are on it also adds up the time spent in the reads.
+     */
+    static final class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong mCounter;
+
+        //Bytes read from this stream
+        private long mCount;
+
+        //Time spent in read(), only measured while the metrics are on
+        private long mReadNanos;
+
+        CountingInputStream(InputStream inputStream, AtomicLong counter) {
+            super(inputStream);
+            mCounter = counter;
+        }
+
+        //Gets the number of bytes read from this stream
+        long getCount() {
+            return mCount;
+        }
+
+        //Gets the time spent waiting in read()
+        long getReadNanos() {
+            return mReadNanos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = Metrics.startTimer();
+            int value = super.read();
+            addReadTime(start);
+            if (value != -1) {
+                mCount++;
+                mCounter.incrementAndGet();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            long start = Metrics.startTimer();
+            int read = super.read(buffer, offset, count);
+            addReadTime(start);
+            if (read > 0) {
+                mCount += read;
+                mCounter.addAndGet(read);
+            }
+            return read;
+        }
+
+        private void addReadTime(long startNanos) {
+            if (startNanos != 0) {
+                mReadNanos += System.nanoTime() - startNanos;
+            }
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(count);
+            mCount += skipped;
+            mCounter.addAndGet(skipped);
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.user.newsapp;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * Streaming parser for The Guardian search response.
+ * <p>
+ * Reads the {@link InputStream} once, token by token, and creates a {@link News} object as soon
+ * as each result has been read. Unknown fields are skipped without being materialized, so the
+ * whole response never has to be held in memory as a String or as a JSON tree.
+ * The response of a single item, with its "content" object, is read into an {@link Article}.
+ */
+public final class NewsJsonParser {
+
+    //Keys for JSON parsing
+    private static final String KEY_RESPONSE = "response";
+    private static final String KEY_RESULTS = "results";
+    private static final String KEY_CURRENT_PAGE = "currentPage";
+    private static final String KEY_PAGES = "pages";
+    private static final String KEY_WEB_TITLE = "webTitle";
+    private static final String KEY_SECTION = "sectionName";
+    private static final String KEY_URL_NEWS = "webUrl";
+    private static final String KEY_DATE = "webPublicationDate";
+    private static final String KEY_FIELDS = "fields";
+    private static final String KEY_THUMBNAIL = "thumbnail";
+    private static final String KEY_CONTENT = "content";
+    private static final String KEY_TRAIL_TEXT = "trailText";
+    private static final String KEY_BODY = "body";
+
+    /**
+     * Callback that receives every {@link News} as soon as it has been parsed.
+     */
+    public interface OnNewsParsedListener {
+        void onNewsParsed(News news);
+
+        //Called once the paging information of the response has been read
+        void onPageInfo(int currentPage, int pages);
+    }
+
+    /**
+     * Create a private constructor because no one should ever create a {@link NewsJsonParser} object.
+     */
+    private NewsJsonParser() {
+    }
+
+    /**
+     * Parses the response and collects the results in a page.
+     *
+     * @param inputStream the body of the HTTP response
+     * @return the page of News, or null if the stream is null
+     */
+    public static NewsPage parse(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            return null;
+        }
+        NewsPage page = new NewsPage();
+        parse(inputStream, page);
+        return page;
+    }
+
+    /**
+     * Parses the response and hands every result to the listener while the stream is read.
+     * If the JSON is malformed, the results that were emitted before the error are kept
+     * and the exception is thrown to the caller. The stream is not closed, so the caller
+     * can read it to the end and let the connection be reused.
+     *
+     * @param inputStream the body of the HTTP response
+     * @param listener    receives the News objects in the order they appear in the response
+     */
+    public static void parse(InputStream inputStream, OnNewsParsedListener listener) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (KEY_RESPONSE.equals(reader.nextName())) {
+                    readResponse(reader, listener);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            //JsonReader reports unexpected tokens with an IllegalStateException
+            throw new IOException("Unexpected JSON structure", e);
+        }
+    }
+
+    /**
+     * Parses the response of a single item, requested with show-fields=trailText,body.
+     *
+     * @param inputStream the body of the HTTP response
+     * @return the article, or null if the response has no content
+     */
+    public static Article parseArticle(InputStream inputStream) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        Article article = null;
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (KEY_RESPONSE.equals(reader.nextName())) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (KEY_CONTENT.equals(reader.nextName())) {
+                            article = readArticle(reader);
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            throw new IOException("Unexpected JSON structure", e);
+        }
+        return article;
+    }
+
+    //Reads the "response" object, its "results" array and the paging information.
+    //A response without paging information is a single page
+    private static void readResponse(JsonReader reader, OnNewsParsedListener listener) throws IOException {
+        int currentPage = 1;
+        int pages = 1;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (KEY_RESULTS.equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    listener.onNewsParsed(readNews(reader));
+                }
+                reader.endArray();
+            } else if (KEY_CURRENT_PAGE.equals(name)) {
+                currentPage = reader.nextInt();
+            } else if (KEY_PAGES.equals(name)) {
+                pages = reader.nextInt();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        listener.onPageInfo(currentPage, pages);
+    }
+
+    //Reads a single result. Keys which are missing are left as null,
+    //the same way the has() checks in QueryUtils.extractDataFromJson do it
+    private static News readNews(JsonReader reader) throws IOException {
+        String title = null;
+        String section = null;
+        String url = null;
+        long publishedAt = News.NO_DATE;
+        String thumbnailUrl = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (KEY_WEB_TITLE.equals(name)) {
+                title = readString(reader);
+            } else if (KEY_SECTION.equals(name)) {
+                section = readString(reader);
+            } else if (KEY_URL_NEWS.equals(name)) {
+                url = readString(reader);
+            } else if (KEY_DATE.equals(name)) {
+                //The whole timestamp is kept, the day is only formatted for display
+                publishedAt = NewsDates.parse(readString(reader));
+            } else if (KEY_FIELDS.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                thumbnailUrl = readThumbnail(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new News(title, section, url, publishedAt, thumbnailUrl);
+    }
+
+    //Reads the "content" object of a single item
+    private static Article readArticle(JsonReader reader) throws IOException {
+        String title = null;
+        String url = null;
+        String trailText = null;
+        String body = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (KEY_WEB_TITLE.equals(name)) {
+                title = readString(reader);
+            } else if (KEY_URL_NEWS.equals(name)) {
+                url = readString(reader);
+            } else if (KEY_FIELDS.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if (KEY_TRAIL_TEXT.equals(field)) {
+                        trailText = readString(reader);
+                    } else if (KEY_BODY.equals(field)) {
+                        body = readString(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Article(url, title, trailText, body);
+    }
+
+    //Reads the "fields" object that show-fields=thumbnail adds, the other fields are skipped
+    private static String readThumbnail(JsonReader reader) throws IOException {
+        String thumbnailUrl = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (KEY_THUMBNAIL.equals(reader.nextName())) {
+                thumbnailUrl = readString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return thumbnailUrl;
+    }
+
+    //Reads a value as String the same way JSONObject.getString() coerces it.
+    //An explicit JSON null is treated like a missing key
+    private static String readString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        } else if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        } else if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        //Objects and arrays are not expected for these keys
+        reader.skipValue();
+        return null;
+    }
+}
@@ -1,51 +1,322 @@
 package com.example.user.newsapp;
 
-import android.content.AsyncTaskLoader;
 import android.content.Context;
 import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Created by Alexander Rashkov on 6/17/2017.
  */
 
-public class NewsLoader extends AsyncTaskLoader<List<News>> {
+/**
+ * Loads a page of news on the {@link FetchEngine}, from the cache, the search index or the network.
+ * <p>
+ * Stale-while-revalidate: cached news are published right away and an expired entry is then
+ * refreshed from the network. A new search publishes the matching cached news first.
+ * <p>
+ * An expired first page is refreshed with a delta request, which only asks for the news
+ * published since the newest cached one. They are merged into the cached page, so the size of
+ * a refresh depends on the number of new news and not on the size of the page. Every topic is
+ * asked for the news since its own newest one, a quiet topic does not lose news to a busy one.
+ * <p>
+ * A refresh of the first page moves the news of the following pages, so their cached entries
+ * are refreshed too once the first page is newer than they are.
+ * <p>
+ * The loaded news of the subscribed topics are also added to their stores in the
+ * {@link FeedStore}. A page that is not cached is served from the timeline of the stores,
+ * also when there is no connection.
+ */
+public class NewsLoader implements FetchEngine.Job {
 
     /**
      * Tag for log messages
      */
     private static final String LOG_TAG = NewsLoader.class.getName();
 
-    //Query URL, passed from MainActivity
-    private String mUrl;
+    //Maximum number of news of every topic that a search of the cached news returns
+    private static final int MAX_LOCAL_RESULTS = 50;
+
+    //The cache belongs to the application, the loader must not keep the activity
+    private final Context mContext;
+
+    //Query URLs, one for every topic, passed from MainActivity
+    private final List<String> mUrls;
+
+    //All query URLs together, they are the key of the cache
+    private final String mUrl;
+
+    //Cache key of the first page of the query, null if the URLs are of the first page
+    private final String mFirstPageKey;
+
+    //When there is no connection only the cache is used
+    private final boolean mIsOffline;
 
     /**
      * Constructs a new {@link NewsLoader}
      *
-     * @param context of the activity
-     * @param url     to load data from
+     * @param context   of the activity
+     * @param urls      to load data from, the pages of several urls are merged
+     * @param isOffline true if there is no connection and only the cache should be used
      */
-    public NewsLoader(Context context, String url) {
-        super(context);
-        mUrl = url;
+    public NewsLoader(Context context, List<String> urls, boolean isOffline) {
+        mContext = context.getApplicationContext();
+        mUrls = urls;
+        mUrl = NewsQuery.cacheKey(urls);
+        mFirstPageKey = urls.isEmpty() || getPage() == 1 ? null : NewsQuery.cacheKey(firstPageUrls(urls));
+        mIsOffline = isOffline;
     }
 
-    @Override
-    protected void onStartLoading() {
-        forceLoad();
+    /**
+     * Returns the cache entry of the query if it is in memory, so a query that was loaded
+     * before is shown right away. Does not read the disk, can be called on the main thread.
+     */
+    public NewsCache.Entry peek() {
+        NewsCache.Entry entry = NewsCache.getInstance(mContext).peek(mUrl);
+        if (entry != null) {
+            return entry;
+        }
+        //A topic whose store is in memory is shown from the store, the entry is expired so
+        //the page is refreshed right after
+        List<String> keys = getTopicKeys();
+        NewsPage page = keys == null ? null
+                : FeedStore.getInstance(mContext).peekTimeline(keys, getPage(), getTimelinePageSize());
+        return page == null ? null : new NewsCache.Entry(page, 0);
+    }
+
+    /**
+     * Returns true if the entry can be shown without asking the network.
+     * A following page is not fresh once the first page was saved after it.
+     */
+    public boolean isFresh(NewsCache.Entry entry) {
+        if (mIsOffline) {
+            return true;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            return false;
+        }
+        NewsCache.Entry firstPage = mFirstPageKey == null ? null
+                : NewsCache.getInstance(mContext).peek(mFirstPageKey);
+        return firstPage == null || firstPage.getSavedAt() <= entry.getSavedAt();
     }
 
     @Override
-    public List<News> loadInBackground() {
-        if (mUrl == null) {
+    public NewsPage run(FetchEngine.Request request) throws InterruptedException {
+        long start = Metrics.startTimer();
+        try {
+            return load(request);
+        } finally {
+            Metrics.stopTimer(Metrics.LOAD, start);
+        }
+    }
+
+    //Loads the page from the cache, the search index or the network
+    private NewsPage load(FetchEngine.Request request) throws InterruptedException {
+        if (mUrls.isEmpty()) {
             return null;
         }
+        NewsCache cache = NewsCache.getInstance(mContext);
+
+        //The cache is read first, so the list can be shown after one disk read
+        NewsPage cachedPage;
+        NewsCache.Entry entry = cache.get(mUrl);
+        if (entry != null) {
+            Log.i(LOG_TAG, "load is served from the cache for:" + mUrl);
+            if (isFresh(entry)) {
+                return entry.getPage();
+            }
+            //Stale-while-revalidate: an expired entry is shown and then refreshed
+            cachedPage = entry.getPage();
+        } else {
+            //The subscribed topics are answered from their stores first and a new search
+            //from the cached news, then the results of the network replace them
+            cachedPage = getTimeline();
+            if (cachedPage != null) {
+                Log.i(LOG_TAG, "load is served from the topic stores for:" + mUrl);
+            } else {
+                cachedPage = searchLocally(cache);
+                if (cachedPage != null) {
+                    Log.i(LOG_TAG, "load is served from the search index for:" + mUrl);
+                }
+            }
+        }
+
+        //Without connection there is nothing more that can be loaded
+        if (mIsOffline) {
+            return cachedPage;
+        }
+        if (cachedPage != null) {
+            request.publish(cachedPage);
+        }
+
+        long[] newest = entry != null && isFirstPage() ? entry.getNewestByUrl() : null;
+        if (hasAllDates(newest)) {
+            Log.i(LOG_TAG, "load refreshes the news since the newest cached ones for:" + mUrl);
+            List<String> deltaUrls = new ArrayList<>(mUrls.size());
+            for (int i = 0; i < mUrls.size(); i++) {
+                deltaUrls.add(NewsQuery.deltaUrl(mUrls.get(i), newest[i]));
+            }
+            long[] deltaNewest = new long[mUrls.size()];
+            NewsPage delta = fetch(mContext, deltaUrls, deltaNewest);
+            if (request.isCanceled()) {
+                return null;
+            }
+            if (delta == null) {
+                //Keep showing the cached news if the request failed
+                return cachedPage;
+            }
+            if (delta.getPages() <= 1) {
+                NewsPage page = FeedAggregator.mergeNewer(cachedPage, delta.getNews());
+                for (int i = 0; i < newest.length; i++) {
+                    deltaNewest[i] = Math.max(deltaNewest[i], newest[i]);
+                }
+                cache.put(mUrl, page, deltaNewest);
+                return page;
+            }
+            //More news were published than one delta response holds, load the whole page
+        }
+
         //Here I check what url (query) is passed from MainActivity
-        Log.i(LOG_TAG, "loadInBackground is started..The url query passed is:" + mUrl);
-        //If there is a request URL, send it to it QueryUtils.fetchNewsData method
-        //that will return a list of objects to be populated on screen
-        List<News> news = QueryUtils.fetchNewsData(mUrl);
-        return news;
+        Log.i(LOG_TAG, "load is started..The url query passed is:" + mUrl);
+        long[] pageNewest = new long[mUrls.size()];
+        NewsPage page = fetch(mContext, mUrls, pageNewest);
+        if (request.isCanceled()) {
+            //A cancelled request returns what it read so far, it must not replace the cache
+            return null;
+        }
+        if (page == null) {
+            //Keep showing the cached news if the request failed
+            return cachedPage;
+        }
+        cache.put(mUrl, page, pageNewest);
+        return page;
+    }
+
+    //If there is one request URL, send it to it QueryUtils.fetchNewsPage method
+    //that will return a page of objects to be populated on screen.
+    //The pages of several topics are loaded in parallel and merged.
+    //The news of the subscribed topics are also added to their stores.
+    //The publication time of the newest news of every url is written to newestByUrl,
+    //NO_DATE if its request failed or it had no news with a date
+    static NewsPage fetch(Context context, List<String> urls, long[] newestByUrl)
+            throws InterruptedException {
+        List<NewsPage> pages;
+        if (urls.size() == 1) {
+            pages = Collections.singletonList(QueryUtils.fetchNewsPage(urls.get(0)));
+        } else {
+            pages = FeedAggregator.getInstance().fetchAll(urls);
+        }
+        List<String> subscribed = NewsQuery.getSubscribedTopicKeys(context);
+        FeedStore feedStore = FeedStore.getInstance(context);
+        List<NewsPage> loaded = new ArrayList<>(pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            NewsPage page = pages.get(i);
+            newestByUrl[i] = page == null ? News.NO_DATE : newestPublishedAt(page);
+            if (page == null) {
+                continue;
+            }
+            String key = NewsQuery.getTopicKey(urls.get(i));
+            if (subscribed.contains(key)) {
+                feedStore.add(key, page.getNews());
+            }
+            loaded.add(page);
+        }
+        if (loaded.isEmpty()) {
+            return null;
+        }
+        return urls.size() == 1 ? loaded.get(0) : FeedAggregator.merge(loaded);
+    }
+
+    //Returns the page from the stores of the topics, null if a topic is not subscribed
+    //or the stores have no news for the page
+    private NewsPage getTimeline() {
+        List<String> keys = getTopicKeys();
+        if (keys == null || !NewsQuery.getSubscribedTopicKeys(mContext).containsAll(keys)) {
+            return null;
+        }
+        return FeedStore.getInstance(mContext).getTimeline(keys, getPage(), getTimelinePageSize());
+    }
+
+    //Returns the keys of the stores of the topics of the URLs, null if a URL has no topic
+    private List<String> getTopicKeys() {
+        List<String> keys = new ArrayList<>(mUrls.size());
+        for (String url : mUrls) {
+            String key = NewsQuery.getTopicKey(url);
+            if (key == null) {
+                return null;
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    //The URLs are all for the same page
+    private int getPage() {
+        return NewsQuery.getPage(mUrls.get(0));
+    }
+
+    //The pages of the timeline have the size of the pages of the network
+    private int getTimelinePageSize() {
+        return NewsQuery.getPageSize(mUrls.get(0));
+    }
+
+    //Returns the URLs of the first page of the same query
+    private static List<String> firstPageUrls(List<String> urls) {
+        List<String> firstPageUrls = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            firstPageUrls.add(NewsQuery.pageUrl(url, 1));
+        }
+        return firstPageUrls;
+    }
+
+    //True if the cached entry knows the newest news of every topic, so a delta can be asked
+    private boolean hasAllDates(long[] newestByUrl) {
+        if (newestByUrl == null || newestByUrl.length != mUrls.size()) {
+            return false;
+        }
+        for (long newest : newestByUrl) {
+            if (newest == News.NO_DATE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //True if the URLs are of the first page, only the first page is refreshed with a delta
+    private boolean isFirstPage() {
+        for (String url : mUrls) {
+            if (NewsQuery.getFirstPageQuery(url) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Returns the publication time of the newest news, or NO_DATE if none has a date
+    private static long newestPublishedAt(NewsPage page) {
+        long newest = News.NO_DATE;
+        for (News news : page.getNews()) {
+            newest = Math.max(newest, news.getPublishedAt());
+        }
+        return newest;
+    }
+
+    //Searches the cached news for every topic, returns null if nothing was found
+    private NewsPage searchLocally(NewsCache cache) {
+        List<NewsPage> pages = new ArrayList<>();
+        for (String url : mUrls) {
+            String query = NewsQuery.getFirstPageQuery(url);
+            if (query == null) {
+                //The index has no pages, only the first page is answered
+                return null;
+            }
+            List<News> news = cache.getSearchIndex().search(query, MAX_LOCAL_RESULTS);
+            if (!news.isEmpty()) {
+                pages.add(new NewsPage(news, 1, 1));
+            }
+        }
+        return pages.isEmpty() ? null : FeedAggregator.merge(pages);
     }
 }
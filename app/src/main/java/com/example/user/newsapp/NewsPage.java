@@ -0,0 +1,71 @@
+package com.example.user.newsapp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of the results of a search, together with the paging information
+ * of the "response" object ("currentPage" and "pages").
+ */
+public class NewsPage implements NewsJsonParser.OnNewsParsedListener {
+
+    //The news of this page
+    private final List<News> mNews;
+
+    //Number of this page, starting at 1
+    private int mCurrentPage;
+
+    //Number of pages of the whole search
+    private int mPages;
+
+    /**
+     * Constructs a new empty {@link NewsPage}, which is filled by the {@link NewsJsonParser}.
+     */
+    public NewsPage() {
+        this(new ArrayList<News>(), 1, 1);
+    }
+
+    /**
+     * Constructs a new {@link NewsPage}.
+     *
+     * @param news        is the list of news of the page
+     * @param currentPage is the number of the page, starting at 1
+     * @param pages       is the number of pages of the whole search
+     */
+    public NewsPage(List<News> news, int currentPage, int pages) {
+        mNews = news;
+        mCurrentPage = currentPage;
+        mPages = pages;
+    }
+
+    @Override
+    public void onNewsParsed(News news) {
+        mNews.add(news);
+    }
+
+    @Override
+    public void onPageInfo(int currentPage, int pages) {
+        mCurrentPage = currentPage;
+        mPages = pages;
+    }
+
+    //Gets the news of the page
+    public List<News> getNews() {
+        return mNews;
+    }
+
+    //Gets the number of the page
+    public int getCurrentPage() {
+        return mCurrentPage;
+    }
+
+    //Gets the number of pages of the whole search
+    public int getPages() {
+        return mPages;
+    }
+
+    //Returns true if there are pages after this one
+    public boolean hasNextPage() {
+        return mCurrentPage < mPages;
+    }
+}
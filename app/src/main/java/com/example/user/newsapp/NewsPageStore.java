@@ -0,0 +1,220 @@
+package com.example.user.newsapp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The pages of a search that are shown in the list, in page order.
+ * <p>
+ * Only the pages near the visible part of the list are kept in memory. Pages that are more
+ * than {@code windowPages} away from the viewport are dropped, but their size is remembered,
+ * so the positions of the list do not change. When the user scrolls back to a dropped page,
+ * {@link #onViewportChanged(int, int)} returns it, so it can be loaded again.
+ * <p>
+ * A refreshed first page with other news moves the news of the following pages, so they are
+ * removed and loaded again after it, instead of showing gaps or duplicates between the pages.
+ */
+public class NewsPageStore {
+
+    //Number of pages that are kept before and after the visible pages
+    private final int mWindowPages;
+
+    //News of every loaded page, index 0 is page 1. A dropped page is null
+    private final List<List<News>> mPages = new ArrayList<>();
+
+    //Number of news of every loaded page, also of the dropped ones
+    private final List<Integer> mPageSizes = new ArrayList<>();
+
+    //Urls of the news of page 1, kept also when the page is dropped
+    private List<String> mFirstPageUrls;
+
+    //Number of pages of the whole search, as reported by the API
+    private int mTotalPages;
+
+    //Number of news of all loaded pages
+    private int mSize;
+
+    //Increased with every change of the pages, also when a page is dropped
+    private int mVersion;
+
+    /**
+     * Constructs a new {@link NewsPageStore}.
+     *
+     * @param windowPages is the number of pages kept in memory on each side of the viewport
+     */
+    public NewsPageStore(int windowPages) {
+        mWindowPages = windowPages;
+    }
+
+    /**
+     * Adds or replaces a page. Page 1 starts a new search when the store is empty,
+     * a page after the last loaded one is appended. When page 1 is replaced with other news,
+     * the following pages are removed.
+     *
+     * @return false if the page does not follow the loaded pages and was ignored
+     */
+    public boolean putPage(NewsPage page) {
+        int index = page.getCurrentPage() - 1;
+        if (index < 0 || index > mPages.size()) {
+            return false;
+        }
+        List<News> news = page.getNews();
+        if (index == 0) {
+            List<String> urls = urlsOf(news);
+            if (!urls.equals(mFirstPageUrls)) {
+                removePagesAfter(1);
+            }
+            mFirstPageUrls = urls;
+        }
+        if (index == mPages.size()) {
+            mPages.add(news);
+            mPageSizes.add(news.size());
+        } else {
+            mPages.set(index, news);
+            mSize -= mPageSizes.get(index);
+            mPageSizes.set(index, news.size());
+        }
+        mSize += news.size();
+        mTotalPages = page.getPages();
+        mVersion++;
+        return true;
+    }
+
+    /**
+     * Removes all pages, for example when the search topic changes.
+     */
+    public void clear() {
+        mPages.clear();
+        mPageSizes.clear();
+        mFirstPageUrls = null;
+        mTotalPages = 0;
+        mSize = 0;
+        mVersion++;
+    }
+
+    //Gets the number of news of all loaded pages
+    public int size() {
+        return mSize;
+    }
+
+    //Gets a number which changes whenever the pages change, to know when to take a new snapshot
+    public int getVersion() {
+        return mVersion;
+    }
+
+    //Gets the number of loaded pages
+    public int getLoadedPages() {
+        return mPages.size();
+    }
+
+    //Gets the number of the first page that was dropped from memory, or 0 if none was
+    public int getFirstDroppedPage() {
+        for (int index = 0; index < mPages.size(); index++) {
+            if (mPages.get(index) == null) {
+                return index + 1;
+            }
+        }
+        return 0;
+    }
+
+    //Returns true if the API has more pages than the ones loaded
+    public boolean hasMorePages() {
+        return mPages.size() < mTotalPages;
+    }
+
+    //Gets the number of the page which follows the loaded pages
+    public int getNextPage() {
+        return mPages.size() + 1;
+    }
+
+    /**
+     * Returns the news at the position of the list,
+     * or null if its page was dropped and is not loaded again yet.
+     */
+    public News get(int position) {
+        int index = 0;
+        while (index < mPageSizes.size() && position >= mPageSizes.get(index)) {
+            position -= mPageSizes.get(index);
+            index++;
+        }
+        if (index == mPages.size()) {
+            throw new IndexOutOfBoundsException("Position " + position + " is after the loaded pages");
+        }
+        List<News> news = mPages.get(index);
+        return news == null ? null : news.get(position);
+    }
+
+    /**
+     * Returns a copy of all positions of the list, the news of a dropped page are null.
+     * The copy does not change when pages are added later, so it can be diffed on another thread.
+     */
+    public List<News> snapshot() {
+        List<News> snapshot = new ArrayList<>(mSize);
+        for (int index = 0; index < mPages.size(); index++) {
+            List<News> news = mPages.get(index);
+            if (news != null) {
+                snapshot.addAll(news);
+            } else {
+                for (int i = 0; i < mPageSizes.get(index); i++) {
+                    snapshot.add(null);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drops the pages that are far away from the visible positions.
+     *
+     * @param firstVisible is the first visible position of the list
+     * @param lastVisible  is the last visible position of the list
+     * @return the number of a dropped page inside the window that has to be loaded again, or 0
+     */
+    public int onViewportChanged(int firstVisible, int lastVisible) {
+        if (mPages.isEmpty()) {
+            return 0;
+        }
+        int firstPage = pageIndexOf(firstVisible) - mWindowPages;
+        int lastPage = pageIndexOf(lastVisible) + mWindowPages;
+        int missingPage = 0;
+        for (int index = 0; index < mPages.size(); index++) {
+            if (index < firstPage || index > lastPage) {
+                if (mPages.get(index) != null) {
+                    mPages.set(index, null);
+                    mVersion++;
+                }
+            } else if (mPages.get(index) == null && missingPage == 0) {
+                missingPage = index + 1;
+            }
+        }
+        return missingPage;
+    }
+
+    //Removes the loaded pages after the first pages
+    private void removePagesAfter(int pages) {
+        while (mPages.size() > pages) {
+            int last = mPages.size() - 1;
+            mSize -= mPageSizes.remove(last);
+            mPages.remove(last);
+        }
+    }
+
+    //Returns the urls of the news, in their order
+    private static List<String> urlsOf(List<News> news) {
+        List<String> urls = new ArrayList<>(news.size());
+        for (News item : news) {
+            urls.add(item.getUrl());
+        }
+        return urls;
+    }
+
+    //Returns the index of the page that holds the position
+    private int pageIndexOf(int position) {
+        int index = 0;
+        while (index < mPageSizes.size() - 1 && position >= mPageSizes.get(index)) {
+            position -= mPageSizes.get(index);
+            index++;
+        }
+        return index;
+    }
+}
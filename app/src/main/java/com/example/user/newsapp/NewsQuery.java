@@ -0,0 +1,240 @@
+package com.example.user.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the query URLs for the search topics that the user entered in the settings.
+ * The activity and the background prefetch use the same URLs, so they share the cache entries.
+ */
+public final class NewsQuery {
+
+    //Initial Query which will be combined with the user's input
+    private static final String API_INITIAL_QUERY = "https://content.guardianapis.com/search";
+
+    //Address of a single item, its id is the path of its web address
+    private static final String API_ITEM_BASE = "https://content.guardianapis.com";
+
+    //Host of the web addresses of the news
+    private static final String WEB_HOST = "www.theguardian.com";
+
+    //For this app I use "test" API KEY, but if have to I signed for an API KEY,
+    //I can simply update this constant
+    private static final String API_KEY = "test";
+
+    //Number of news requested by a delta refresh. If more news were published since the last
+    //refresh, the whole first page is loaded again
+    private static final int DELTA_PAGE_SIZE = 50;
+
+    //Query parameters
+    private static final String PARAM_PAGE = "page";
+    private static final String PARAM_PAGE_SIZE = "page-size";
+    private static final String PARAM_FROM_DATE = "from-date";
+
+    private NewsQuery() {
+    }
+
+    /**
+     * Returns one URL for every topic in the settings, all for the same page.
+     *
+     * @param profile selects the fields and the page size
+     */
+    public static List<String> buildUrls(Context context, int page, QueryProfile profile) {
+        return buildUrls(getSearchTopics(context), page, profile);
+    }
+
+    /**
+     * Returns the search topics of the settings, several topics are separated by commas.
+     */
+    public static String getSearchTopics(Context context) {
+        //Create SharedPreferences object to get the user's input
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+
+        //Get the search topics input from preferences
+        return sharedPrefs.getString(
+                context.getString(R.string.settings_search_topic_key),
+                context.getString(R.string.settings_search_topic_default));
+    }
+
+    /**
+     * Returns one URL for every topic of the text, all for the same page.
+     *
+     * @param searchTopics are the topics separated by commas, like in the settings
+     * @param profile      selects the fields and the page size
+     */
+    public static List<String> buildUrls(String searchTopics, int page, QueryProfile profile) {
+        List<String> urls = new ArrayList<>();
+        for (String searchTopic : splitTopics(searchTopics)) {
+            urls.add(buildQueryUrl(searchTopic, page, profile));
+        }
+        return urls;
+    }
+
+    /**
+     * Returns the topics that the user subscribed to in the settings, in their order.
+     */
+    public static List<String> getSubscribedTopics(Context context) {
+        return splitTopics(getSearchTopics(context));
+    }
+
+    /**
+     * Returns the keys of the stores of the subscribed topics, see {@link #topicKey}.
+     */
+    public static List<String> getSubscribedTopicKeys(Context context) {
+        List<String> keys = new ArrayList<>();
+        for (String topic : getSubscribedTopics(context)) {
+            keys.add(topicKey(topic));
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the key of the store of a topic, the search words of its query URLs.
+     */
+    public static String topicKey(String topic) {
+        return QueryUtils.concatenateQuery(topic.trim());
+    }
+
+    /**
+     * Returns the key of the store of the topic of a query URL, like {@link #topicKey}.
+     */
+    public static String getTopicKey(String url) {
+        return Uri.parse(url).getQueryParameter("q");
+    }
+
+    /**
+     * Returns the number of the page of a query URL.
+     */
+    public static int getPage(String url) {
+        return getIntParameter(url, PARAM_PAGE, 1);
+    }
+
+    /**
+     * Returns the number of news of a page of a query URL.
+     */
+    public static int getPageSize(String url) {
+        return getIntParameter(url, PARAM_PAGE_SIZE, QueryProfile.STANDARD.getPageSize());
+    }
+
+    //Splits the topics separated by commas. If there are none, the whole text is one topic
+    private static List<String> splitTopics(String searchTopics) {
+        List<String> topics = new ArrayList<>();
+        for (String searchTopic : searchTopics.split(",")) {
+            if (!searchTopic.trim().isEmpty()) {
+                topics.add(searchTopic.trim());
+            }
+        }
+        if (topics.isEmpty()) {
+            topics.add(searchTopics);
+        }
+        return topics;
+    }
+
+    private static int getIntParameter(String url, String name, int defaultValue) {
+        String value = Uri.parse(url).getQueryParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns the key under which the merged page of the URLs is cached.
+     */
+    public static String cacheKey(List<String> urls) {
+        return TextUtils.join("\n", urls);
+    }
+
+    /**
+     * Returns the search words of a query URL of the first page, as concatenateQuery built them.
+     * Returns null for the URLs of the following pages.
+     */
+    public static String getFirstPageQuery(String url) {
+        Uri uri = Uri.parse(url);
+        String page = uri.getQueryParameter(PARAM_PAGE);
+        if (page != null && !"1".equals(page)) {
+            return null;
+        }
+        return uri.getQueryParameter("q");
+    }
+
+    /**
+     * Returns the URL of a delta refresh of a query URL: the news published since the time,
+     * newest first, in one response. The news published at the time itself are included.
+     */
+    public static String deltaUrl(String url, long sinceMillis) {
+        Uri uri = Uri.parse(url);
+        Uri.Builder uriBuilder = uri.buildUpon().clearQuery();
+        for (String name : uri.getQueryParameterNames()) {
+            if (!PARAM_PAGE.equals(name) && !PARAM_PAGE_SIZE.equals(name) && !PARAM_FROM_DATE.equals(name)) {
+                uriBuilder.appendQueryParameter(name, uri.getQueryParameter(name));
+            }
+        }
+        uriBuilder.appendQueryParameter(PARAM_PAGE, "1");
+        uriBuilder.appendQueryParameter(PARAM_PAGE_SIZE, String.valueOf(DELTA_PAGE_SIZE));
+        uriBuilder.appendQueryParameter(PARAM_FROM_DATE, NewsDates.formatTimestamp(sinceMillis));
+        return uriBuilder.toString();
+    }
+
+    /**
+     * Returns the query URL with another page number, the other parameters are kept.
+     */
+    public static String pageUrl(String url, int page) {
+        Uri uri = Uri.parse(url);
+        Uri.Builder uriBuilder = uri.buildUpon().clearQuery();
+        for (String name : uri.getQueryParameterNames()) {
+            uriBuilder.appendQueryParameter(name, PARAM_PAGE.equals(name)
+                    ? String.valueOf(page) : uri.getQueryParameter(name));
+        }
+        return uriBuilder.toString();
+    }
+
+    /**
+     * Returns the URL of the article of a news with its trail text and body,
+     * or null if the web address is not one of The Guardian.
+     */
+    public static String buildArticleUrl(String webUrl) {
+        if (webUrl == null) {
+            return null;
+        }
+        Uri webUri = Uri.parse(webUrl);
+        String path = webUri.getEncodedPath();
+        if (!WEB_HOST.equals(webUri.getHost()) || path == null || path.length() <= 1) {
+            return null;
+        }
+        Uri.Builder uriBuilder = Uri.parse(API_ITEM_BASE).buildUpon().encodedPath(path);
+        uriBuilder.appendQueryParameter(QueryProfile.PARAM_SHOW_FIELDS, QueryProfile.RICH.getShowFields());
+        uriBuilder.appendQueryParameter("api-key", API_KEY);
+        return uriBuilder.toString();
+    }
+
+    //Builds the URI of a page of the search for the topic
+    private static String buildQueryUrl(String searchTopic, int page, QueryProfile profile) {
+        //Call a method to format the user input if there are spaces (multiple words)
+        String formattedUserInput = QueryUtils.concatenateQuery(searchTopic);
+
+        Uri baseUri = Uri.parse(API_INITIAL_QUERY);
+        Uri.Builder uriBuilder = baseUri.buildUpon();
+        uriBuilder.appendQueryParameter("q", formattedUserInput);
+        uriBuilder.appendQueryParameter(PARAM_PAGE, String.valueOf(page));
+        uriBuilder.appendQueryParameter(PARAM_PAGE_SIZE, String.valueOf(profile.getPageSize()));
+        //Newest first, so a refresh only has to ask for the news after the newest one it has
+        uriBuilder.appendQueryParameter("order-by", "newest");
+        //The optional fields of the news, like the url of their thumbnail image
+        if (profile.getShowFields() != null) {
+            uriBuilder.appendQueryParameter(QueryProfile.PARAM_SHOW_FIELDS, profile.getShowFields());
+        }
+        uriBuilder.appendQueryParameter("api-key", API_KEY);
+        return uriBuilder.toString();
+    }
+}
@@ -0,0 +1,404 @@
+package com.example.user.newsapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over the titles and sections of news, so searches can be answered
+ * on the device without the network.
+ * <p>
+ * A query has the same meaning as {@link QueryUtils#concatenateQuery(String)}: the words
+ * separated by spaces are joined with AND, so a news must match all of them. Every word also
+ * matches the words that start with it, so "clim" finds "climate". The results are ranked by
+ * how well they match, title words count more than section words and whole words more than
+ * prefixes. News with the same score are ordered newest first.
+ * <p>
+ * The news of a cache entry are added with {@link #put(String, List)} and dropped with
+ * {@link #remove(String)} when the cache evicts the entry, so the index does not outgrow the
+ * cache. A news stays indexed as long as an entry refers to it. Removed news are skipped by
+ * the searches until they are the majority, then the index is built again without them.
+ * <p>
+ * The index estimates its size in memory, so the {@link NewsCache} can count it in the bytes
+ * that the {@link CacheManager} trims.
+ */
+public class NewsSearchIndex {
+
+    //Weight of a word of the title and of the section
+    private static final int TITLE_WEIGHT = 2;
+    private static final int SECTION_WEIGHT = 1;
+
+    //A query word that is a whole word of the news counts this many times more than a prefix
+    private static final int WHOLE_WORD_FACTOR = 2;
+
+    //The operator that concatenateQuery puts between the words
+    private static final String AND_OPERATOR = "AND";
+
+    //Removed news are kept in the postings until there are at least this many
+    private static final int MIN_REMOVED_TO_COMPACT = 64;
+
+    //Estimated size of the entries of a document in the maps and arrays, without the news
+    private static final int DOCUMENT_OVERHEAD_BYTES = 48;
+
+    //Estimated size of a word in the tree with its postings, without the characters
+    private static final int WORD_OVERHEAD_BYTES = 96;
+
+    //Size of a posting, the document and the weight
+    private static final int POSTING_BYTES = 8;
+
+    //The indexed news, the position is the document id. Removed news are null until the
+    //index is compacted
+    private final List<News> mDocuments = new ArrayList<>();
+
+    //Number of references to every document, it is removed when it has none left
+    private int[] mReferences = new int[16];
+
+    //Number of removed documents which are still in the postings
+    private int mRemoved;
+
+    //Documents of the indexed news by url, so a news that is added again is not indexed twice
+    private final Map<String, Integer> mUrls = new HashMap<>();
+
+    //Documents of the news of every entry that was put
+    private final Map<String, int[]> mEntries = new HashMap<>();
+
+    //Postings of every word, sorted so all words with a prefix are next to each other
+    private final TreeMap<String, Postings> mWords = new TreeMap<>();
+
+    //Buffers of search by document, reused by all searches. Only the candidates of a search
+    //are set, and they are cleared again when it returns
+    private int[] mMatched = new int[0];
+    private int[] mScores = new int[0];
+
+    //The documents that matched the first word of a search
+    private int[] mCandidates = new int[16];
+
+    //Estimated size of the news and the postings in memory
+    private long mMemoryBytes;
+
+    /**
+     * The documents that contain a word, in the order in which they were added,
+     * with the weight of the word in every document.
+     */
+    private static final class Postings {
+
+        private int[] mDocuments = new int[2];
+
+        private int[] mWeights = new int[2];
+
+        private int mSize;
+
+        //Returns false if the document had a posting already
+        boolean add(int document, int weight) {
+            //A word that appears several times in a document has one posting
+            if (mSize > 0 && mDocuments[mSize - 1] == document) {
+                mWeights[mSize - 1] += weight;
+                return false;
+            }
+            if (mSize == mDocuments.length) {
+                int[] documents = new int[mSize * 2];
+                int[] weights = new int[mSize * 2];
+                System.arraycopy(mDocuments, 0, documents, 0, mSize);
+                System.arraycopy(mWeights, 0, weights, 0, mSize);
+                mDocuments = documents;
+                mWeights = weights;
+            }
+            mDocuments[mSize] = document;
+            mWeights[mSize] = weight;
+            mSize++;
+            return true;
+        }
+    }
+
+    /**
+     * Adds the news to the index for good. A news whose url is already indexed is skipped.
+     */
+    public synchronized void addAll(List<News> news) {
+        for (News item : news) {
+            addDocument(item);
+        }
+    }
+
+    /**
+     * Adds a news to the index for good. A news whose url is already indexed is skipped.
+     */
+    public synchronized void add(News news) {
+        addDocument(news);
+    }
+
+    /**
+     * Indexes the news of an entry of a cache, they replace the news that were put for the
+     * same key before.
+     */
+    public synchronized void put(String key, List<News> news) {
+        int[] documents = new int[news.size()];
+        for (int i = 0; i < documents.length; i++) {
+            documents[i] = addDocument(news.get(i));
+        }
+        //The news that are in both lists are added before they are released, so they stay
+        release(mEntries.put(key, documents));
+    }
+
+    /**
+     * Removes the news of an entry, unless another entry refers to them too.
+     */
+    public synchronized void remove(String key) {
+        release(mEntries.remove(key));
+    }
+
+    /**
+     * Removes all news, like when the memory is low. The buffers of the searches are freed too.
+     */
+    public synchronized void clear() {
+        mDocuments.clear();
+        mReferences = new int[16];
+        mRemoved = 0;
+        mUrls.clear();
+        mEntries.clear();
+        mWords.clear();
+        mMatched = new int[0];
+        mScores = new int[0];
+        mCandidates = new int[16];
+        mMemoryBytes = 0;
+    }
+
+    /**
+     * Returns the estimated size of the index in memory. Removed news leave their postings
+     * until the index is compacted.
+     */
+    public synchronized long getMemoryBytes() {
+        return mMemoryBytes;
+    }
+
+    //Gets the number of indexed news
+    public synchronized int size() {
+        return mDocuments.size() - mRemoved;
+    }
+
+    /**
+     * Returns the news that match all words of the query, best match first.
+     *
+     * @param query is the text that the user entered, or the output of concatenateQuery
+     * @param limit is the maximum number of results
+     */
+    public synchronized List<News> search(String query, int limit) {
+        List<String> queryWords = new ArrayList<>();
+        for (String queryWord : query.trim().split("\\s+")) {
+            if (!AND_OPERATOR.equals(queryWord)) {
+                //A word like "sea-ice" is indexed as "sea" and "ice", both must match
+                queryWords.addAll(words(queryWord));
+            }
+        }
+        if (queryWords.isEmpty() || mDocuments.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        if (mMatched.length < mDocuments.size()) {
+            //All entries of the old buffers are 0 between searches, like the new ones
+            mMatched = new int[mDocuments.size() * 2];
+            mScores = new int[mDocuments.size() * 2];
+        }
+        //matched[document] is the number of query words that the document matched so far,
+        //only documents that matched all previous words are counted for the next word
+        final int[] matched = mMatched;
+        final int[] scores = mScores;
+        int candidates = 0;
+        try {
+            for (int i = 0; i < queryWords.size(); i++) {
+                String queryWord = queryWords.get(i);
+                NavigableMap<String, Postings> prefixed =
+                        mWords.subMap(queryWord, true, queryWord + Character.MAX_VALUE, false);
+                if (prefixed.isEmpty()) {
+                    return new ArrayList<>();
+                }
+                for (Map.Entry<String, Postings> entry : prefixed.entrySet()) {
+                    int factor = entry.getKey().length() == queryWord.length() ? WHOLE_WORD_FACTOR : 1;
+                    Postings postings = entry.getValue();
+                    for (int j = 0; j < postings.mSize; j++) {
+                        int document = postings.mDocuments[j];
+                        if (matched[document] == i) {
+                            if (i == 0) {
+                                if (mDocuments.get(document) == null) {
+                                    //Removed, but not compacted yet
+                                    continue;
+                                }
+                                if (candidates == mCandidates.length) {
+                                    mCandidates = Arrays.copyOf(mCandidates, candidates * 2);
+                                }
+                                mCandidates[candidates++] = document;
+                            }
+                            matched[document] = i + 1;
+                        } else if (matched[document] != i + 1) {
+                            continue;
+                        }
+                        scores[document] += factor * postings.mWeights[j];
+                    }
+                }
+            }
+
+            //Only the best results are kept while the matches are collected, instead of sorting all
+            Comparator<Integer> ranking = new Comparator<Integer>() {
+                @Override
+                public int compare(Integer first, Integer second) {
+                    int byScore = scores[second] - scores[first];
+                    if (byScore != 0) {
+                        return byScore;
+                    }
+                    return FeedAggregator.NEWEST_FIRST.compare(mDocuments.get(first), mDocuments.get(second));
+                }
+            };
+            PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, Collections.reverseOrder(ranking));
+            for (int c = 0; c < candidates; c++) {
+                int document = mCandidates[c];
+                if (matched[document] == queryWords.size()) {
+                    best.add(document);
+                    if (best.size() > limit) {
+                        //Drop the worst one
+                        best.poll();
+                    }
+                }
+            }
+
+            List<Integer> found = new ArrayList<>(best);
+            Collections.sort(found, ranking);
+            List<News> results = new ArrayList<>(found.size());
+            for (int document : found) {
+                results.add(mDocuments.get(document));
+            }
+            return results;
+        } finally {
+            for (int c = 0; c < candidates; c++) {
+                matched[mCandidates[c]] = 0;
+                scores[mCandidates[c]] = 0;
+            }
+        }
+    }
+
+    //Adds a reference to the document of the news, which is indexed if it is new
+    private int addDocument(News news) {
+        Integer existing = news.getUrl() != null ? mUrls.get(news.getUrl()) : null;
+        if (existing != null) {
+            mReferences[existing]++;
+            return existing;
+        }
+        int document = mDocuments.size();
+        mDocuments.add(news);
+        if (document == mReferences.length) {
+            mReferences = Arrays.copyOf(mReferences, document * 2);
+        }
+        mReferences[document] = 1;
+        if (news.getUrl() != null) {
+            mUrls.put(news.getUrl(), document);
+        }
+        mMemoryBytes += DOCUMENT_OVERHEAD_BYTES + CacheManager.sizeOf(news);
+        indexWords(document, news);
+        return document;
+    }
+
+    //Drops a reference to each of the documents, the ones without references are removed
+    private void release(int[] documents) {
+        if (documents == null) {
+            return;
+        }
+        for (int document : documents) {
+            if (--mReferences[document] == 0) {
+                News news = mDocuments.set(document, null);
+                if (news.getUrl() != null) {
+                    mUrls.remove(news.getUrl());
+                }
+                mMemoryBytes -= DOCUMENT_OVERHEAD_BYTES + CacheManager.sizeOf(news);
+                mRemoved++;
+            }
+        }
+        if (mRemoved >= MIN_REMOVED_TO_COMPACT && mRemoved * 2 > mDocuments.size()) {
+            compact();
+        }
+    }
+
+    //Builds the postings again without the removed documents, the others get new ids in the
+    //same order
+    private void compact() {
+        int[] newIds = new int[mDocuments.size()];
+        List<News> documents = new ArrayList<>(mDocuments.size() - mRemoved);
+        int[] references = new int[Math.max(16, (mDocuments.size() - mRemoved) * 2)];
+        mWords.clear();
+        mUrls.clear();
+        mMemoryBytes = 0;
+        for (int document = 0; document < mDocuments.size(); document++) {
+            News news = mDocuments.get(document);
+            if (news == null) {
+                continue;
+            }
+            int id = documents.size();
+            newIds[document] = id;
+            documents.add(news);
+            references[id] = mReferences[document];
+            if (news.getUrl() != null) {
+                mUrls.put(news.getUrl(), id);
+            }
+            mMemoryBytes += DOCUMENT_OVERHEAD_BYTES + CacheManager.sizeOf(news);
+            indexWords(id, news);
+        }
+        //The entries only refer to documents which were not removed
+        for (int[] entry : mEntries.values()) {
+            for (int i = 0; i < entry.length; i++) {
+                entry[i] = newIds[entry[i]];
+            }
+        }
+        mDocuments.clear();
+        mDocuments.addAll(documents);
+        mReferences = references;
+        mRemoved = 0;
+    }
+
+    private void indexWords(int document, News news) {
+        for (String word : words(news.getTitle())) {
+            if (postingsOf(word).add(document, TITLE_WEIGHT)) {
+                mMemoryBytes += POSTING_BYTES;
+            }
+        }
+        for (String word : words(news.getSection())) {
+            if (postingsOf(word).add(document, SECTION_WEIGHT)) {
+                mMemoryBytes += POSTING_BYTES;
+            }
+        }
+    }
+
+    private Postings postingsOf(String word) {
+        Postings postings = mWords.get(word);
+        if (postings == null) {
+            postings = new Postings();
+            mWords.put(word, postings);
+            mMemoryBytes += WORD_OVERHEAD_BYTES + CacheManager.sizeOf(word);
+        }
+        return postings;
+    }
+
+    //Splits the text into lower case words of letters and digits
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String lowerCase = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lowerCase.length(); i++) {
+            boolean wordCharacter = i < lowerCase.length() && Character.isLetterOrDigit(lowerCase.charAt(i));
+            if (wordCharacter && start < 0) {
+                start = i;
+            } else if (!wordCharacter && start >= 0) {
+                words.add(lowerCase.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
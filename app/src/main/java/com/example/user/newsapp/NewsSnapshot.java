@@ -0,0 +1,269 @@
+package com.example.user.newsapp;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * The first page of the list as it was last shown, in a small binary file, so a cold start
+ * can show the list without the network and without parsing JSON. {@link StartupState} reads
+ * it on a background thread while the first frame is drawn, and the list is shown as soon as
+ * the read is done.
+ * <p>
+ * The file starts with a magic number and a format version, a file of another version is
+ * ignored. Every string is stored as its UTF-8 bytes after their length, and the sections
+ * are stored once in a table, so reading is a single read of the file and a walk over the
+ * bytes. The file is written to a temporary file which is renamed over the old one, so a
+ * crash while writing leaves the previous snapshot.
+ */
+public final class NewsSnapshot {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = NewsSnapshot.class.getSimpleName();
+
+    //Name of the file inside the app's cache directory
+    public static final String FILE_NAME = "list.snapshot";
+
+    //"NSNP", tells a snapshot from any other file
+    static final int MAGIC = 0x4e534e50;
+
+    //Version of the format, increase it when the format changes
+    static final int FORMAT_VERSION = 1;
+
+    //Only the top of the list is restored, the load replaces it right after
+    static final int MAX_NEWS = 50;
+
+    //Larger files are not from this class, they are not read at all
+    private static final int MAX_BYTES = 256 * 1024;
+
+    //Length of a null string
+    private static final int NULL_LENGTH = -1;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    //Writes the snapshots in the order in which they were taken
+    private static final Executor WRITE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private NewsSnapshot() {
+    }
+
+    /**
+     * Returns the page of the snapshot, or null if there is none for the key or it can't be
+     * read. It reads the file from the disk, so it must not be called on the main thread,
+     * {@link StartupState#readAsync} calls it on a background thread.
+     *
+     * @param key is the query of the list, like the search topics
+     */
+    public static NewsPage read(File file, String key) {
+        long start = Metrics.startTimer();
+        try {
+            if (!file.exists()) {
+                return null;
+            }
+            return decode(readFile(file), key);
+        } catch (IOException e) {
+            //Old version or damaged file, it is replaced by the next write
+            Log.e(LOG_TAG, "Problem reading the snapshot", e);
+            file.delete();
+            return null;
+        } finally {
+            Metrics.stopTimer(Metrics.SNAPSHOT_READ, start);
+        }
+    }
+
+    /**
+     * Writes the page as the snapshot for the key on a background thread.
+     */
+    public static void writeAsync(final File file, final String key, final NewsPage page) {
+        WRITE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(file, key, page);
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem writing the snapshot", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the page as the snapshot for the key, replacing the old snapshot atomically.
+     */
+    static void write(File file, String key, NewsPage page) throws IOException {
+        byte[] data = encode(key, page);
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        FileOutputStream outputStream = new FileOutputStream(temp);
+        try {
+            outputStream.write(data);
+            //The rename must not reach the disk before the data
+            outputStream.getFD().sync();
+        } finally {
+            outputStream.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not rename " + temp);
+        }
+    }
+
+    static byte[] encode(String key, NewsPage page) throws IOException {
+        return encode(key, page, MAX_NEWS);
+    }
+
+    /**
+     * Encodes the first news of the page, the stores of the topics keep many more news
+     * than the snapshot of the list.
+     *
+     * @param maxNews is the number of news that are kept
+     */
+    static byte[] encode(String key, NewsPage page, int maxNews) throws IOException {
+        List<News> news = page.getNews();
+        int count = Math.min(news.size(), maxNews);
+
+        //Every section name once, the news refer to it by index
+        Map<String, Integer> sectionIndexes = new HashMap<>();
+        List<String> sections = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String section = news.get(i).getSection();
+            if (section != null && !sectionIndexes.containsKey(section)) {
+                sectionIndexes.put(section, sections.size());
+                sections.add(section);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+        writeString(output, key);
+        output.writeInt(page.getCurrentPage());
+        output.writeInt(page.getPages());
+        output.writeInt(sections.size());
+        for (String section : sections) {
+            writeString(output, section);
+        }
+        output.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            News item = news.get(i);
+            writeString(output, item.getTitle());
+            output.writeInt(item.getSection() == null ? NULL_LENGTH : sectionIndexes.get(item.getSection()));
+            writeString(output, item.getUrl());
+            output.writeLong(item.getPublishedAt());
+            writeString(output, item.getThumbnailUrl());
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the page of the snapshot, or null if it was taken for another key.
+     *
+     * @throws IOException if the data is not a snapshot of this version or is damaged
+     */
+    static NewsPage decode(byte[] data, String key) throws IOException {
+        //ByteBuffer reads the big-endian values of DataOutputStream without copying
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format " + version);
+            }
+            if (!key.equals(readString(buffer))) {
+                return null;
+            }
+            int currentPage = buffer.getInt();
+            int pages = buffer.getInt();
+            String[] sections = new String[checkCount(buffer.getInt(), buffer)];
+            for (int i = 0; i < sections.length; i++) {
+                sections[i] = readString(buffer);
+            }
+            int count = checkCount(buffer.getInt(), buffer);
+            List<News> news = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String title = readString(buffer);
+                int section = buffer.getInt();
+                String url = readString(buffer);
+                long publishedAt = buffer.getLong();
+                String thumbnailUrl = readString(buffer);
+                news.add(new News(title, section == NULL_LENGTH ? null : sections[section], url,
+                        publishedAt, thumbnailUrl));
+            }
+            return new NewsPage(news, currentPage, pages);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Damaged snapshot", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        checkCount(length, buffer);
+        String value = new String(buffer.array(), buffer.position(), length, UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    //A count can't be larger than the remaining bytes, this guards the allocations
+    private static int checkCount(int count, ByteBuffer buffer) throws IOException {
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IOException("Damaged snapshot");
+        }
+        return count;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        long length = file.length();
+        if (length > MAX_BYTES) {
+            throw new IOException("Snapshot is too large: " + length);
+        }
+        byte[] data = new byte[(int) length];
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < data.length) {
+                int count = inputStream.read(data, offset, data.length - offset);
+                if (count == -1) {
+                    throw new IOException("Snapshot ended early");
+                }
+                offset += count;
+            }
+        } finally {
+            inputStream.close();
+        }
+        return data;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.user.newsapp;
+
+/**
+ * Decides when the topics are prefetched in the background.
+ * <p>
+ * A prefetch only runs when the device is connected and the network is unmetered or the
+ * device is charging. After a successful prefetch the next one is due after the interval.
+ * After a failure the next one is due after a backoff, which doubles with every failure in a
+ * row up to a maximum. Only one prefetch runs at a time, duplicate jobs that arrive while one
+ * is running or before the next one is due are skipped.
+ * <p>
+ * The policy has no Android dependencies, the time comes from a {@link Clock}.
+ */
+public class PrefetchPolicy {
+
+    private final Clock mClock;
+
+    //Time between two successful prefetches
+    private final long mIntervalMillis;
+
+    //Backoff after the first failure, it doubles with every further failure
+    private final long mInitialBackoffMillis;
+
+    //Longest backoff
+    private final long mMaxBackoffMillis;
+
+    //Time when the next prefetch is due, 0 if it is due right away
+    private long mNextRunAt;
+
+    //Number of failed prefetches in a row
+    private int mFailures;
+
+    //True while a prefetch is running
+    private boolean mRunning;
+
+    /**
+     * Constructs a new {@link PrefetchPolicy}.
+     *
+     * @param clock                gives the current time
+     * @param intervalMillis       is the time between two successful prefetches
+     * @param initialBackoffMillis is the time before the retry of a failed prefetch
+     * @param maxBackoffMillis     is the longest time before a retry
+     */
+    public PrefetchPolicy(Clock clock, long intervalMillis, long initialBackoffMillis, long maxBackoffMillis) {
+        mClock = clock;
+        mIntervalMillis = intervalMillis;
+        mInitialBackoffMillis = initialBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Restores the state that was saved with {@link #getNextRunAt()} and {@link #getFailures()}.
+     */
+    public synchronized void restore(long nextRunAt, int failures) {
+        mNextRunAt = nextRunAt;
+        mFailures = failures;
+    }
+
+    //Gets the time when the next prefetch is due
+    public synchronized long getNextRunAt() {
+        return mNextRunAt;
+    }
+
+    //Gets the number of failed prefetches in a row
+    public synchronized int getFailures() {
+        return mFailures;
+    }
+
+    /**
+     * Starts a prefetch if the conditions allow it, it is due and no other prefetch is running.
+     * A started prefetch must be ended with {@link #onSuccess()} or {@link #onFailure()}.
+     *
+     * @param connected true if there is a network connection
+     * @param unmetered true if the network is not metered, for example Wi-Fi
+     * @param charging  true if the device is charging
+     * @return true if the prefetch may run
+     */
+    public synchronized boolean tryStart(boolean connected, boolean unmetered, boolean charging) {
+        if (mRunning || !connected || !(unmetered || charging)) {
+            return false;
+        }
+        if (mClock.now() < mNextRunAt) {
+            return false;
+        }
+        mRunning = true;
+        return true;
+    }
+
+    /**
+     * Ends a prefetch that succeeded, the next one is due after the interval.
+     */
+    public synchronized void onSuccess() {
+        mRunning = false;
+        mFailures = 0;
+        mNextRunAt = mClock.now() + mIntervalMillis;
+    }
+
+    /**
+     * Ends a prefetch that failed, the next one is due after the backoff.
+     */
+    public synchronized void onFailure() {
+        mRunning = false;
+        mFailures++;
+        mNextRunAt = mClock.now() + getBackoffMillis(mFailures);
+    }
+
+    //Returns the backoff after the number of failures in a row, without overflowing
+    private long getBackoffMillis(int failures) {
+        long backoff = mInitialBackoffMillis;
+        for (int i = 1; i < failures && backoff < mMaxBackoffMillis; i++) {
+            backoff *= 2;
+        }
+        return Math.min(backoff, mMaxBackoffMillis);
+    }
+}
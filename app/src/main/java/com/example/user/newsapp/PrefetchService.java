@@ -0,0 +1,148 @@
+package com.example.user.newsapp;
+
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.SystemClock;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * Prefetches the first page of the configured topics into the {@link NewsCache} and the
+ * stores of the {@link FeedStore}, so opening the app shows them from disk.
+ * <p>
+ * An inexact repeating alarm starts the service regularly, {@link PrefetchPolicy} decides if
+ * a prefetch runs. The intents are handled one after the other, so a duplicate intent finds
+ * the prefetch already done and is skipped.
+ */
+public class PrefetchService extends IntentService {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = PrefetchService.class.getSimpleName();
+
+    //The alarm checks this often if a prefetch is due
+    private static final long CHECK_INTERVAL_MILLIS = AlarmManager.INTERVAL_FIFTEEN_MINUTES;
+
+    //Time between two successful prefetches
+    private static final long PREFETCH_INTERVAL_MILLIS = AlarmManager.INTERVAL_HOUR;
+
+    //Backoff after the first failed prefetch
+    private static final long INITIAL_BACKOFF_MILLIS = AlarmManager.INTERVAL_FIFTEEN_MINUTES;
+
+    //Longest backoff after failed prefetches
+    private static final long MAX_BACKOFF_MILLIS = 8 * AlarmManager.INTERVAL_HOUR;
+
+    //Preferences file of the policy state, it survives the process
+    private static final String PREFS_NAME = "prefetch";
+    private static final String KEY_NEXT_RUN_AT = "next_run_at";
+    private static final String KEY_FAILURES = "failures";
+
+    //The policy, shared by all intents of the process
+    private static PrefetchPolicy sPolicy;
+
+    /**
+     * Constructs a new {@link PrefetchService}.
+     */
+    public PrefetchService() {
+        super(LOG_TAG);
+    }
+
+    /**
+     * Schedules the repeating alarm if it is not scheduled yet, so it can be called on every
+     * start of the app. Scheduling again would move the first check back every time.
+     */
+    public static void schedule(Context context) {
+        //The PendingIntent lives as long as its alarm, until a reboot or a force stop
+        Intent intent = new Intent(context, PrefetchService.class);
+        if (PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_NO_CREATE) != null) {
+            return;
+        }
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS,
+                newPendingIntent(context));
+    }
+
+    //The same PendingIntent every time, so there is only one alarm
+    private static PendingIntent newPendingIntent(Context context) {
+        Intent intent = new Intent(context, PrefetchService.class);
+        return PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        PrefetchPolicy policy = getPolicy(this);
+
+        ConnectivityManager cm = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+        boolean connected = activeNetwork != null && activeNetwork.isConnected();
+        boolean unmetered = connected && !ConnectivityManagerCompat.isActiveNetworkMetered(cm);
+        if (!policy.tryStart(connected, unmetered, isCharging())) {
+            return;
+        }
+
+        //The same profile as the activity on this network, so it finds the prefetched entry
+        final List<String> urls = NewsQuery.buildUrls(this, 1, QueryProfile.forNetwork(!unmetered));
+        //The newest news of every topic, the next load of the activity refreshes from them
+        final long[] newestByUrl = new long[urls.size()];
+        Log.i(LOG_TAG, "Prefetching " + urls);
+        //The prefetch waits behind the loads of the user
+        FetchEngine.Request request = FetchEngine.getInstance().submit(FetchEngine.PRIORITY_PREFETCH,
+                new FetchEngine.Job() {
+                    @Override
+                    public NewsPage run(FetchEngine.Request prefetch) throws InterruptedException {
+                        //The stores of the topics are filled too, they are read offline
+                        return NewsLoader.fetch(PrefetchService.this, urls, newestByUrl);
+                    }
+                }, null);
+        NewsPage page = null;
+        try {
+            page = request.await();
+        } catch (InterruptedException e) {
+            Log.i(LOG_TAG, "Prefetch was interrupted");
+            request.cancel();
+        }
+        if (page != null) {
+            NewsCache.getInstance(this).put(NewsQuery.cacheKey(urls), page, newestByUrl);
+            policy.onSuccess();
+        } else {
+            policy.onFailure();
+        }
+        savePolicy(policy);
+    }
+
+    //Returns true if the device is plugged in
+    private boolean isCharging() {
+        //The battery state is a sticky broadcast, registering without receiver returns it
+        Intent battery = registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+
+    private static synchronized PrefetchPolicy getPolicy(Context context) {
+        if (sPolicy == null) {
+            sPolicy = new PrefetchPolicy(Clock.SYSTEM, PREFETCH_INTERVAL_MILLIS,
+                    INITIAL_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            sPolicy.restore(prefs.getLong(KEY_NEXT_RUN_AT, 0), prefs.getInt(KEY_FAILURES, 0));
+        }
+        return sPolicy;
+    }
+
+    private void savePolicy(PrefetchPolicy policy) {
+        getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putLong(KEY_NEXT_RUN_AT, policy.getNextRunAt())
+                .putInt(KEY_FAILURES, policy.getFailures())
+                .apply();
+    }
+}
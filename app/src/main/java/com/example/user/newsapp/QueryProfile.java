@@ -0,0 +1,110 @@
+package com.example.user.newsapp;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+
+/**
+ * How much of every news a query asks for, which trades the size of the responses against
+ * what can be shown.
+ * <p>
+ * Title, section, url and publication date are always in the responses. A profile adds
+ * optional fields with show-fields and sets the number of news per page. The list uses
+ * {@link #LEAN} on metered networks and {@link #STANDARD} otherwise, see
+ * {@link #forNetwork(boolean)}. The bytes received for every profile are counted in
+ * {@link Metrics}.
+ */
+public final class QueryProfile {
+
+    //Only the fields which are always sent and half a page, no thumbnails are downloaded either
+    public static final QueryProfile LEAN = new QueryProfile("lean", null, 10, Metrics.BYTES_LEAN);
+
+    //The list with thumbnails
+    public static final QueryProfile STANDARD = new QueryProfile("standard", "thumbnail", 20, Metrics.BYTES_STANDARD);
+
+    //Detail views, with the trail text and the body of the article
+    public static final QueryProfile RICH = new QueryProfile("rich", "thumbnail,trailText,body", 20, Metrics.BYTES_RICH);
+
+    private static final QueryProfile[] PROFILES = {LEAN, STANDARD, RICH};
+
+    //Name of the query parameter of the optional fields
+    static final String PARAM_SHOW_FIELDS = "show-fields";
+
+    private final String mName;
+
+    //Value of show-fields, null to send none
+    private final String mShowFields;
+
+    private final int mPageSize;
+
+    //Metrics counter of the received bytes
+    private final int mBytesCounter;
+
+    private QueryProfile(String name, String showFields, int pageSize, int bytesCounter) {
+        mName = name;
+        mShowFields = showFields;
+        mPageSize = pageSize;
+        mBytesCounter = bytesCounter;
+    }
+
+    /**
+     * Returns the profile of the list for the network: {@link #LEAN} if it is metered, like
+     * cellular data, {@link #STANDARD} if not.
+     */
+    public static QueryProfile forNetwork(boolean metered) {
+        return metered ? LEAN : STANDARD;
+    }
+
+    /**
+     * Returns the profile that a query URL was built with, or null if it matches none.
+     */
+    public static QueryProfile fromUrl(String url) {
+        String showFields = queryParameter(url, PARAM_SHOW_FIELDS);
+        for (QueryProfile profile : PROFILES) {
+            if (showFields == null ? profile.mShowFields == null : showFields.equals(profile.mShowFields)) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    //Gets the value of show-fields, null if the profile sends none
+    public String getShowFields() {
+        return mShowFields;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    //Gets the Metrics counter of the bytes received with this profile
+    public int getBytesCounter() {
+        return mBytesCounter;
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+
+    //Returns the decoded value of a parameter of the query of the url, or null
+    private static String queryParameter(String url, String name) {
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return null;
+        }
+        for (String parameter : url.substring(query + 1).split("&")) {
+            if (parameter.startsWith(name + "=")) {
+                try {
+                    return URLDecoder.decode(parameter.substring(name.length() + 1), "UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return null;
+    }
+}
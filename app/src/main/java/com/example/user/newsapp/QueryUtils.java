@@ -15,7 +15,6 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
@@ -37,6 +36,15 @@ public final class QueryUtils {
     private static final String KEY_URL_NEWS = "webUrl";
     private static final String KEY_DATE = "webPublicationDate";
 
+    //The requests that are running, shared by all loaders, the aggregator and the prefetch
+    private static final InFlightRequests IN_FLIGHT_REQUESTS = new InFlightRequests(
+            new FeedAggregator.PageFetcher() {
+                @Override
+                public NewsPage fetchPage(String url) {
+                    return loadNewsPage(url);
+                }
+            });
+
     /**
      * Create a private constructor because no one should ever create a {@link QueryUtils} object.
      * This class is only meant to hold static variables and methods, which can be accessed
@@ -51,22 +59,55 @@ public final class QueryUtils {
     * @return List<News>: the list of News objects
     */
     public static List<News> fetchNewsData(String requestUrl) {
+        NewsPage page = fetchNewsPage(requestUrl);
+        return page == null ? null : page.getNews();
+    }
+
+    /*
+    * Same as fetchNewsData, but also returns the paging information of the response.
+    * Concurrent calls for the same URL share one HTTP request
+    * @param requestUrl: the target URL of the HTTP request, with the "page" parameter
+    * @return NewsPage: the page of News objects, or null if the request failed
+    */
+    public static NewsPage fetchNewsPage(String requestUrl) {
+        return IN_FLIGHT_REQUESTS.fetch(requestUrl);
+    }
+
+    //Makes the HTTP request for the URL, only called by IN_FLIGHT_REQUESTS
+    private static NewsPage loadNewsPage(String requestUrl) {
         //Create URL object
         URL url = createUrl(requestUrl);
 
-        //Perform HTTP request to the URL and receive a JSON response back
-        String jsonResponse = null;
+        //Perform HTTP request to the URL and parse the JSON response while it is received
+        NewsPage page = null;
         try {
-            jsonResponse = makeHttpRequest(url);
+            page = makeHttpRequest(url);
         } catch (IOException e) {
             Log.e(LOG_TAG, "Problem making the HTTP request.", e);
         }
 
-        //Create a list of the results by the extractDataFromJson method
-        List<News> news = extractDataFromJson(jsonResponse);
+        //return the page of news
+        return page;
+    }
 
-        //return the list of news
-        return news;
+    //This method clears the spaces between user's input
+    //by replacing the spaces with "%20AND%20 "
+    //Now when the query is send to the API it will look for content containing
+    //all of the words entered by the user
+    public static String concatenateQuery(String usersTextInput) {
+        //Split properly user's input because spaces are not allowed in the Query
+        String[] wordsInput = usersTextInput.split("\\s+");
+        String wordsToInputQuery = null;
+        for (int i = 0; i < wordsInput.length; i++) {
+            if (i == 0) {
+                wordsToInputQuery = wordsInput[i];
+            } else {
+                //Concatinate the word in a proper format
+                wordsToInputQuery = wordsToInputQuery + " AND " + wordsInput[i];
+            }
+        }
+        //Returns the properly formatted user input
+        return wordsToInputQuery;
     }
 
     /**
@@ -83,54 +124,34 @@ public final class QueryUtils {
     }
 
     /**
-     * Make an HTTP request to the given URL and return a String as the response.
+     * Make an HTTP request to the given URL and return the page of News parsed from the response.
+     * The request goes through the shared {@link NewsHttpClient}, which reuses connections,
+     * requests gzip and revalidates previous responses.
+     * Returns null if the request failed.
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
-
+    private static NewsPage makeHttpRequest(URL url) throws IOException {
         // If the URL is null, then return early.
         if (url == null) {
-            return jsonResponse;
+            return null;
         }
-
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
+        long start = Metrics.startTimer();
         try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(10000 /* milliseconds */);
-            urlConnection.setConnectTimeout(15000 /* milliseconds */);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // If the request was successful (response code 200),
-            // then read the input stream and parse the response.
-            if (urlConnection.getResponseCode() == 200) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
-            } else {
-                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
-            }
+            return NewsHttpClient.getInstance().fetch(url);
         } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the earthquake JSON results.", e);
+            Metrics.count(Metrics.ERRORS, 1);
+            throw e;
         } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (inputStream != null) {
-                // Closing the input stream could throw an IOException, which is why
-                // the makeHttpRequest(URL url) method signature specifies than an IOException
-                // could be thrown.
-                inputStream.close();
-            }
+            Metrics.stopTimer(Metrics.REQUEST, start);
         }
-        return jsonResponse;
     }
 
     /**
      * Convert the {@link InputStream} into a String which contains the
      * whole JSON response from the server.
+     * Kept as the reference path for {@link #extractDataFromJson(String)}.
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
+    static String readFromStream(InputStream inputStream) throws IOException {
+        long start = Metrics.startTimer();
         StringBuilder output = new StringBuilder();
         if (inputStream != null) {
             InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
@@ -141,20 +162,23 @@ public final class QueryUtils {
                 line = reader.readLine();
             }
         }
+        Metrics.stopTimer(Metrics.READ_STREAM, start);
         return output.toString();
     }
 
     /*
     * Extracts the data from the JSON response
+    * Kept as the reference implementation for the streaming NewsJsonParser.
     * @param jsonResponse: the jsonResponse read from the InputStream of the HTTP request
     * @return List<News>: the results as a List of News objects
     */
-    private static List<News> extractDataFromJson(String jsonResponse) {
+    static List<News> extractDataFromJson(String jsonResponse) {
         //If the response is empty, return early
         if (TextUtils.isEmpty(jsonResponse)) {
             return null;
         }
 
+        long start = Metrics.startTimer();
         // Create an empty ArrayList that we can start adding news to
         List<News> news = new ArrayList<>();
 
@@ -217,6 +241,7 @@ public final class QueryUtils {
             //If it fails, print the error to the log
             Log.e(LOG_TAG, "Fetching data from JSON failed", e);
         }
+        Metrics.stopTimer(Metrics.EXTRACT_JSON, start);
         return news;
     }
 }
@@ -0,0 +1,143 @@
+package com.example.user.newsapp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.text.Html;
+import android.text.method.LinkMovementMethod;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+/**
+ * Shows the text of a news inside the app. The article comes from the cache of the
+ * {@link ArticleLoader} when the list prefetched it, so it opens right away and also offline.
+ * The web page of the news can still be opened in the browser from the menu.
+ */
+public class ReaderActivity extends AppCompatActivity {
+
+    //Keys of the extras of the intent
+    private static final String EXTRA_URL = "url";
+    private static final String EXTRA_TITLE = "title";
+    private static final String EXTRA_SECTION = "section";
+    private static final String EXTRA_DATE = "date";
+
+    //Web address of the news
+    private String mUrl;
+
+    //Load of the article, null when it has finished
+    private ArticleLoader.Task mTask;
+
+    private TextView mTrailTextView;
+
+    private TextView mBodyView;
+
+    //TextView that is displayed when the article could not be loaded
+    private TextView mEmptyStateTextView;
+
+    private ProgressBar mProgressSpinner;
+
+    /**
+     * Returns the intent which shows the news in the reader.
+     */
+    public static Intent newIntent(Context context, News news) {
+        Intent intent = new Intent(context, ReaderActivity.class);
+        intent.putExtra(EXTRA_URL, news.getUrl());
+        intent.putExtra(EXTRA_TITLE, news.getTitle());
+        intent.putExtra(EXTRA_SECTION, news.getSection());
+        intent.putExtra(EXTRA_DATE, news.getDate());
+        return intent;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_reader);
+
+        Intent intent = getIntent();
+        mUrl = intent.getStringExtra(EXTRA_URL);
+        //The title, section and date of the row are shown while the article is loaded
+        ((TextView) findViewById(R.id.reader_title)).setText(intent.getStringExtra(EXTRA_TITLE));
+        ((TextView) findViewById(R.id.reader_section)).setText(intent.getStringExtra(EXTRA_SECTION));
+        ((TextView) findViewById(R.id.reader_date)).setText(intent.getStringExtra(EXTRA_DATE));
+        mTrailTextView = (TextView) findViewById(R.id.reader_trail_text);
+        mBodyView = (TextView) findViewById(R.id.reader_body);
+        //The links of the body open in the browser
+        mBodyView.setMovementMethod(LinkMovementMethod.getInstance());
+        mEmptyStateTextView = (TextView) findViewById(R.id.reader_empty_view);
+        mProgressSpinner = (ProgressBar) findViewById(R.id.reader_loading_spinner);
+
+        ArticleLoader loader = ArticleLoader.getInstance(this);
+        Article article = loader.peek(mUrl);
+        if (article != null) {
+            showArticle(article);
+            return;
+        }
+        mTask = loader.load(mUrl, !isConnected(), new ArticleLoader.Callback() {
+            @Override
+            public void onArticleLoaded(Article article) {
+                mTask = null;
+                showArticle(article);
+            }
+        });
+    }
+
+    private boolean isConnected() {
+        ConnectivityManager cm = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+        return activeNetwork != null && activeNetwork.isConnectedOrConnecting();
+    }
+
+    //Shows the article, or the empty view if there is none
+    @SuppressWarnings("deprecation")
+    private void showArticle(Article article) {
+        mProgressSpinner.setVisibility(View.GONE);
+        if (article == null || article.getBody() == null) {
+            mEmptyStateTextView.setText(isConnected() ? R.string.article_unavailable : R.string.no_connection);
+            mEmptyStateTextView.setVisibility(View.VISIBLE);
+            return;
+        }
+        //Html.fromHtml(String, int) is only available from API 24
+        if (article.getTrailText() != null) {
+            mTrailTextView.setText(Html.fromHtml(article.getTrailText()));
+            mTrailTextView.setVisibility(View.VISIBLE);
+        }
+        mBodyView.setText(Html.fromHtml(article.getBody()));
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mTask == null) {
+            return;
+        }
+        //The article of a rotated reader is still loaded into the cache, the new reader finds it
+        if (isChangingConfigurations()) {
+            mTask.detach();
+        } else {
+            mTask.cancel();
+        }
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.reader, menu);
+        return true;
+    }
+
+    //Opens the web page of the news in the browser
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.open_in_browser) {
+            startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(mUrl)));
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+}
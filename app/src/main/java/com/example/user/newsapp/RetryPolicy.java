@@ -0,0 +1,246 @@
+package com.example.user.newsapp;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Decides how long an attempt of a request may take and when a failed attempt is repeated.
+ * <p>
+ * The timeouts follow the network: they are a multiple of the 95th percentile of the last
+ * connect and first byte times, between a minimum and the fixed timeouts the app used
+ * before. A timed out attempt is recorded as a sample of its timeout, so on a network that
+ * got slow the timeouts grow back to the maximum. Until there are enough samples the maximum
+ * is used. Every retry of a request doubles the timeouts, up to the maximum.
+ * <p>
+ * Only GET requests are sent, they are idempotent and can be repeated. A failed attempt is
+ * repeated after an exponential backoff with jitter, so the clients that failed together do
+ * not retry together. The Retry-After of a 429 or 503 answer is waited for instead.
+ * <p>
+ * The policy has no Android dependencies, the jitter comes from a {@link Random}.
+ */
+public class RetryPolicy {
+
+    //Number of attempts of a request, the first one included
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    //Backoff before the first retry, it doubles with every further retry
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 500;
+
+    //Longest backoff before a retry
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 4000;
+
+    //A longer Retry-After is not waited for, the request fails and the caller shows the cache
+    public static final long DEFAULT_MAX_RETRY_AFTER_MILLIS = 10000;
+
+    //Timeouts before there are enough samples, they are also the longest timeouts
+    static final int MAX_CONNECT_TIMEOUT = 15000; /* milliseconds */
+    static final int MAX_READ_TIMEOUT = 10000; /* milliseconds */
+
+    //Shortest timeouts, even a fast network has a slow response now and then
+    static final int MIN_CONNECT_TIMEOUT = 2000; /* milliseconds */
+    static final int MIN_READ_TIMEOUT = 3000; /* milliseconds */
+
+    //Number of samples from which on the timeouts follow the percentile
+    static final int MIN_SAMPLES = 8;
+
+    //The timeouts are this multiple of the percentile
+    private static final int TIMEOUT_MULTIPLIER = 3;
+
+    private static final int PERCENTILE = 95;
+
+    //Number of last samples the percentile is calculated over
+    private static final int WINDOW = 64;
+
+    //Value of a missing or invalid Retry-After
+    public static final long NO_RETRY_AFTER = -1;
+
+    //Format of a Retry-After with a date, like "Wed, 21 Oct 2015 07:28:00 GMT"
+    private static final String HTTP_DATE_PATTERN = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final int mMaxAttempts;
+
+    private final long mInitialBackoffMillis;
+
+    private final long mMaxBackoffMillis;
+
+    private final long mMaxRetryAfterMillis;
+
+    //Guarded by itself
+    private final Random mRandom;
+
+    //Times to connect and to the first byte of the response, in milliseconds
+    private final LatencyWindow mConnectTimes = new LatencyWindow();
+    private final LatencyWindow mFirstByteTimes = new LatencyWindow();
+
+    /**
+     * Constructs a new {@link RetryPolicy} with the default attempts and backoffs.
+     */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS,
+                DEFAULT_MAX_RETRY_AFTER_MILLIS, new Random());
+    }
+
+    /**
+     * Constructs a new {@link RetryPolicy}.
+     *
+     * @param maxAttempts          is the number of attempts of a request, the first one included
+     * @param initialBackoffMillis is the backoff before the first retry
+     * @param maxBackoffMillis     is the longest backoff
+     * @param maxRetryAfterMillis  is the longest Retry-After that is waited for
+     * @param random               gives the jitter of the backoffs
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis,
+                       long maxRetryAfterMillis, Random random) {
+        mMaxAttempts = maxAttempts;
+        mInitialBackoffMillis = initialBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+        mMaxRetryAfterMillis = maxRetryAfterMillis;
+        mRandom = random;
+    }
+
+    //Gets the number of attempts of a request, the first one included
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     * Returns the connect timeout of an attempt in milliseconds.
+     *
+     * @param attempt is the number of the attempt, starting at 1
+     */
+    public int getConnectTimeout(int attempt) {
+        return timeout(mConnectTimes, MIN_CONNECT_TIMEOUT, MAX_CONNECT_TIMEOUT, attempt);
+    }
+
+    /**
+     * Returns the read timeout of an attempt in milliseconds.
+     *
+     * @param attempt is the number of the attempt, starting at 1
+     */
+    public int getReadTimeout(int attempt) {
+        return timeout(mFirstByteTimes, MIN_READ_TIMEOUT, MAX_READ_TIMEOUT, attempt);
+    }
+
+    //Records the time an attempt took to connect, or its connect timeout if it timed out
+    public void recordConnectTime(long millis) {
+        mConnectTimes.add(millis);
+    }
+
+    //Records the time from the request to the first byte of the response, or the read timeout
+    public void recordFirstByteTime(long millis) {
+        mFirstByteTimes.add(millis);
+    }
+
+    /**
+     * Returns the time to wait before the next attempt, or {@link #NO_RETRY_AFTER} if the
+     * request should not be repeated because the server asked to wait too long.
+     *
+     * @param attempt          is the number of the attempt that failed, starting at 1
+     * @param retryAfterMillis is the Retry-After of the response, or {@link #NO_RETRY_AFTER}
+     */
+    public long getRetryDelay(int attempt, long retryAfterMillis) {
+        if (retryAfterMillis != NO_RETRY_AFTER) {
+            return retryAfterMillis <= mMaxRetryAfterMillis ? retryAfterMillis : NO_RETRY_AFTER;
+        }
+        long backoff = mMaxBackoffMillis;
+        if (attempt - 1 < 31) {
+            backoff = Math.min(mMaxBackoffMillis, mInitialBackoffMillis << (attempt - 1));
+        }
+        //Half of the backoff is fixed and half is random, so a retry never follows right away
+        long half = backoff / 2;
+        double jitter;
+        synchronized (mRandom) {
+            jitter = mRandom.nextDouble();
+        }
+        return half + (long) (jitter * (backoff - half));
+    }
+
+    /**
+     * Returns true if an attempt that got the response code may succeed when it is repeated.
+     * The other error responses, like 404, would get the same answer again.
+     */
+    public static boolean isRetryable(int responseCode) {
+        switch (responseCode) {
+            case 408: //Request Timeout
+            case 429: //Too Many Requests
+            case 500: //Internal Server Error
+            case 502: //Bad Gateway
+            case 503: //Service Unavailable
+            case 504: //Gateway Timeout
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the time that a Retry-After header asks to wait, in milliseconds.
+     *
+     * @param value     is the value of the header, seconds or a date, or null
+     * @param nowMillis is the current time, for a date
+     * @return the time to wait, or {@link #NO_RETRY_AFTER} if the value is missing or invalid
+     */
+    public static long parseRetryAfter(String value, long nowMillis) {
+        if (value == null) {
+            return NO_RETRY_AFTER;
+        }
+        value = value.trim();
+        try {
+            long seconds = Long.parseLong(value);
+            return seconds < 0 ? NO_RETRY_AFTER : seconds * 1000;
+        } catch (NumberFormatException e) {
+            //Not a number of seconds, it can be a date
+        }
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_PATTERN, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, format.parse(value).getTime() - nowMillis);
+        } catch (ParseException e) {
+            return NO_RETRY_AFTER;
+        }
+    }
+
+    //Returns the timeout of the attempt from the samples, doubled for every retry
+    private static int timeout(LatencyWindow samples, int min, int max, int attempt) {
+        long timeout = max;
+        long percentile = samples.getPercentile(PERCENTILE);
+        if (percentile >= 0) {
+            timeout = Math.max(min, Math.min(max, percentile * TIMEOUT_MULTIPLIER));
+        }
+        for (int i = 1; i < attempt && timeout < max; i++) {
+            timeout *= 2;
+        }
+        return (int) Math.min(max, timeout);
+    }
+
+    /**
+     * The last latencies in a ring buffer.
+     */
+    private static final class LatencyWindow {
+
+        private final long[] mSamples = new long[WINDOW];
+
+        //Number of samples ever added, the next sample goes to mCount % WINDOW
+        private long mCount;
+
+        synchronized void add(long millis) {
+            mSamples[(int) (mCount % WINDOW)] = millis;
+            mCount++;
+        }
+
+        //Returns the percentile of the samples, or -1 if there are too few samples
+        synchronized long getPercentile(int percent) {
+            if (mCount < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] samples = Arrays.copyOf(mSamples, (int) Math.min(mCount, WINDOW));
+            Arrays.sort(samples);
+            int index = (int) Math.ceil(percent / 100.0 * samples.length) - 1;
+            return samples[Math.max(0, index)];
+        }
+    }
+}
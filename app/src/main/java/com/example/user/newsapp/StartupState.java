@@ -0,0 +1,149 @@
+package com.example.user.newsapp;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.net.ConnectivityManagerCompat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * What the list needs before its first load: the topics of the settings, the state of the
+ * network and the snapshot of the last session.
+ * <p>
+ * Reading the settings and the snapshot goes to the disk and the network state is asked from
+ * the system, so the state is read on a background thread with {@link #readAsync} while the
+ * first frame is drawn with the empty list.
+ */
+public final class StartupState {
+
+    /**
+     * Receives the state on the main thread.
+     */
+    public interface Callback {
+        void onStartupStateRead(StartupState state);
+    }
+
+    //Reads the states one after the other
+    private static final Executor READ_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    //The search topics of the settings, separated by commas
+    private final String mSearchTopics;
+
+    //The subscribed topics, in the order of the settings
+    private final List<String> mSubscribedTopics;
+
+    //True if there was an internet connection
+    private final boolean mIsConnected;
+
+    //True if the network was unmetered, like Wi-Fi
+    private final boolean mIsUnmetered;
+
+    //The file of the snapshot of the list
+    private final File mSnapshotFile;
+
+    //The first page of the snapshot, null if it was not read or there is none for the topics
+    private final NewsPage mSnapshot;
+
+    /**
+     * Constructs a new {@link StartupState}.
+     */
+    public StartupState(String searchTopics, List<String> subscribedTopics, boolean isConnected,
+                        boolean isUnmetered, File snapshotFile, NewsPage snapshot) {
+        mSearchTopics = searchTopics;
+        mSubscribedTopics = subscribedTopics;
+        mIsConnected = isConnected;
+        mIsUnmetered = isUnmetered;
+        mSnapshotFile = snapshotFile;
+        mSnapshot = snapshot;
+    }
+
+    /**
+     * Reads the state on the calling thread, which should not be the main thread.
+     *
+     * @param readSnapshot is false if the list is not shown from the snapshot, like after a rotation
+     */
+    public static StartupState read(Context context, boolean readSnapshot) {
+        String searchTopics = NewsQuery.getSearchTopics(context);
+
+        //Check for internet connection
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+        boolean isConnected = activeNetwork != null && activeNetwork.isConnectedOrConnecting();
+        boolean isUnmetered = isConnected && !ConnectivityManagerCompat.isActiveNetworkMetered(cm);
+
+        File snapshotFile = new File(context.getCacheDir(), NewsSnapshot.FILE_NAME);
+        NewsPage snapshot = readSnapshot ? NewsSnapshot.read(snapshotFile, searchTopics) : null;
+        return new StartupState(searchTopics, NewsQuery.getSubscribedTopics(context), isConnected,
+                isUnmetered, snapshotFile, snapshot);
+    }
+
+    /**
+     * Reads the state on a background thread and hands it to the callback on the main thread.
+     */
+    public static void readAsync(Context context, final boolean readSnapshot, final Callback callback) {
+        final Context appContext = context.getApplicationContext();
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        READ_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final StartupState state = read(appContext, readSnapshot);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onStartupStateRead(state);
+                    }
+                });
+            }
+        });
+    }
+
+    public String getSearchTopics() {
+        return mSearchTopics;
+    }
+
+    public List<String> getSubscribedTopics() {
+        return mSubscribedTopics;
+    }
+
+    /**
+     * Returns the keys of the stores of the subscribed topics, see {@link NewsQuery#topicKey}.
+     */
+    public List<String> getSubscribedTopicKeys() {
+        List<String> keys = new ArrayList<>();
+        for (String topic : mSubscribedTopics) {
+            keys.add(NewsQuery.topicKey(topic));
+        }
+        return keys;
+    }
+
+    public boolean isConnected() {
+        return mIsConnected;
+    }
+
+    public boolean isUnmetered() {
+        return mIsUnmetered;
+    }
+
+    public File getSnapshotFile() {
+        return mSnapshotFile;
+    }
+
+    public NewsPage getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * Returns true if the topics differ from the ones of the other state, like after the
+     * settings were changed.
+     */
+    public boolean hasOtherTopics(StartupState other) {
+        return !mSearchTopics.equals(other.mSearchTopics) || !mSubscribedTopics.equals(other.mSubscribedTopics);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.user.newsapp;
+
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Times of the start of the list: from the creation of {@link MainActivity} to its first drawn
+ * frame and to the first frame that shows news. They are written to the log and to the
+ * {@link Metrics}, and read by the startup benchmark of the instrumented tests.
+ * <p>
+ * The times are of {@link System#nanoTime()} and 0 until they happened. Every new activity
+ * starts a new trace.
+ */
+public final class StartupTrace {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = StartupTrace.class.getSimpleName();
+
+    private static volatile long sCreatedAt;
+
+    private static volatile long sFirstDrawAt;
+
+    private static volatile long sFirstItemAt;
+
+    private StartupTrace() {
+    }
+
+    //Called first in onCreate of the activity
+    static void onCreate() {
+        sFirstDrawAt = 0;
+        sFirstItemAt = 0;
+        sCreatedAt = System.nanoTime();
+    }
+
+    //Called after the first frame of the activity was drawn
+    static void onFirstDraw() {
+        if (sFirstDrawAt == 0) {
+            sFirstDrawAt = System.nanoTime();
+            report("first draw", Metrics.FIRST_DRAW, sFirstDrawAt);
+        }
+    }
+
+    //Called after the first frame with news was drawn
+    static void onFirstItem() {
+        if (sFirstItemAt == 0) {
+            sFirstItemAt = System.nanoTime();
+            report("first item", Metrics.FIRST_ITEM, sFirstItemAt);
+        }
+    }
+
+    public static long getCreatedAt() {
+        return sCreatedAt;
+    }
+
+    public static long getFirstDrawAt() {
+        return sFirstDrawAt;
+    }
+
+    public static long getFirstItemAt() {
+        return sFirstItemAt;
+    }
+
+    /**
+     * Runs the runnable on the main thread once the next frame of the view's window was drawn.
+     * The view does not need to be attached yet.
+     */
+    static void runAfterNextDraw(final View view, final Runnable runnable) {
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                //The frame is drawn in this pass, the posted runnable comes after it
+                view.post(runnable);
+                return true;
+            }
+        });
+    }
+
+    private static void report(String name, int timer, long time) {
+        long nanos = time - sCreatedAt;
+        Metrics.record(timer, nanos);
+        Log.i(LOG_TAG, "Time to " + name + ": " + nanos / 1000000 + " ms");
+    }
+}
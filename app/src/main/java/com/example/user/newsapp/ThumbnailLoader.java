@@ -0,0 +1,403 @@
+package com.example.user.newsapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+import android.widget.ImageView;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the thumbnails of the news into the rows of the list.
+ * <p>
+ * The downloaded files are kept in a {@link DiskLruCache}, the decoded bitmaps in a memory
+ * cache that is bounded by bytes. Images are downloaded and decoded on background threads,
+ * downsampled to the size of the view. When a row is recycled its pending work is cancelled,
+ * so scrolling quickly through a long list does not queue up images that are not shown, and
+ * its {@link CancelSignal} closes the connection of a download that is running.
+ * The bitmaps in memory are the first cache that the {@link CacheManager} trims.
+ */
+public class ThumbnailLoader implements CacheManager.MemoryCache {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = ThumbnailLoader.class.getSimpleName();
+
+    //Part of the app's heap which the decoded thumbnails may use
+    private static final int MEMORY_CACHE_FRACTION = 8;
+
+    //Maximum size of the downloaded images on disk
+    private static final long DISK_CACHE_BYTES = 10 * 1024 * 1024;
+
+    //Name of the directory inside the app's cache directory
+    private static final String DIRECTORY_NAME = "thumbnails";
+
+    //Thumbnails bigger than this are not downloaded
+    private static final int MAX_DOWNLOAD_BYTES = 1024 * 1024;
+
+    //Number of thumbnails which are loaded at the same time
+    private static final int THREADS = 2;
+
+    private static final int READ_TIMEOUT = 10000; /* milliseconds */
+    private static final int CONNECT_TIMEOUT = 15000; /* milliseconds */
+
+    //The only instance, shared by all lists
+    private static ThumbnailLoader sInstance;
+
+    /**
+     * Downloads a thumbnail.
+     */
+    public interface ThumbnailFetcher {
+        //Returns the image file of the url, or null on an error response or if it is too big
+        byte[] fetchThumbnail(String url) throws IOException;
+    }
+
+    //Decoded thumbnails by url, bounded by their size in bytes
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    private final CacheManager.Stats mStats = new CacheManager.Stats();
+
+    //The downloaded image files by url
+    private final DiskLruCache mDiskCache;
+
+    private final ThumbnailFetcher mFetcher;
+
+    //Downloads and decodes the thumbnails
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(THREADS);
+
+    //Sets the bitmaps on the views, the main thread in the app
+    private final Executor mDeliveryExecutor;
+
+    //Width and height of the thumbnail views in pixels, the bitmaps are decoded for this size
+    private final int mWidth;
+    private final int mHeight;
+
+    /**
+     * Constructs a new {@link ThumbnailLoader}.
+     *
+     * @param diskCache        keeps the downloaded images
+     * @param fetcher          downloads the images
+     * @param deliveryExecutor sets the bitmaps on the views, the main thread in the app
+     * @param memoryCacheBytes is the maximum size of the decoded bitmaps in memory
+     * @param width            of the thumbnail views in pixels
+     * @param height           of the thumbnail views in pixels
+     */
+    public ThumbnailLoader(DiskLruCache diskCache, ThumbnailFetcher fetcher, Executor deliveryExecutor,
+                           int memoryCacheBytes, int width, int height) {
+        mDiskCache = diskCache;
+        mFetcher = fetcher;
+        mDeliveryExecutor = deliveryExecutor;
+        mWidth = width;
+        mHeight = height;
+        mMemoryCache = new LruCache<String, Bitmap>(memoryCacheBytes) {
+            @Override
+            protected int sizeOf(String url, Bitmap bitmap) {
+                return bitmap.getRowBytes() * bitmap.getHeight();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String url, Bitmap oldBitmap, Bitmap newBitmap) {
+                if (evicted) {
+                    mStats.recordEvictions(1);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the loader of the application, creating it on first use.
+     */
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            File directory = new File(appContext.getCacheDir(), DIRECTORY_NAME);
+            int memoryCacheBytes = (int) (Runtime.getRuntime().maxMemory() / MEMORY_CACHE_FRACTION);
+            int width = appContext.getResources().getDimensionPixelSize(R.dimen.thumbnail_width);
+            int height = appContext.getResources().getDimensionPixelSize(R.dimen.thumbnail_height);
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            sInstance = new ThumbnailLoader(new DiskLruCache(directory, DISK_CACHE_BYTES), new ThumbnailFetcher() {
+                @Override
+                public byte[] fetchThumbnail(String url) throws IOException {
+                    return download(url);
+                }
+            }, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    mainHandler.post(command);
+                }
+            }, memoryCacheBytes, width, height);
+            CacheManager.getInstance().register(sInstance);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Shows the thumbnail of the url in the view. The view is hidden if there is no url,
+     * it is empty until the thumbnail is loaded. Must be called on the main thread.
+     */
+    public void load(String url, ImageView imageView) {
+        cancel(imageView);
+        if (url == null) {
+            imageView.setImageDrawable(null);
+            imageView.setVisibility(ImageView.GONE);
+            return;
+        }
+        imageView.setVisibility(ImageView.VISIBLE);
+        Bitmap bitmap = peek(url);
+        if (bitmap != null) {
+            imageView.setImageBitmap(bitmap);
+            return;
+        }
+        imageView.setImageDrawable(null);
+        ThumbnailTask task = new ThumbnailTask(url, imageView);
+        task.mFuture = mExecutor.submit(task);
+        imageView.setTag(R.id.thumbnail_task, task);
+    }
+
+    /**
+     * Cancels the loading of the thumbnail of the view, for example when its row is recycled.
+     * Must be called on the main thread.
+     */
+    public void cancel(ImageView imageView) {
+        ThumbnailTask task = (ThumbnailTask) imageView.getTag(R.id.thumbnail_task);
+        if (task != null) {
+            task.cancel();
+            imageView.setTag(R.id.thumbnail_task, null);
+        }
+    }
+
+    /**
+     * Returns the decoded thumbnail from memory, or null if it is not in memory.
+     */
+    Bitmap peek(String url) {
+        Bitmap bitmap = mMemoryCache.get(url);
+        if (bitmap != null) {
+            mStats.recordHit();
+        } else {
+            mStats.recordMiss();
+        }
+        return bitmap;
+    }
+
+    /**
+     * Returns the image file of the url from the disk cache, or downloads and stores it.
+     * Returns null if it could not be downloaded or the {@link CancelSignal} of the thread
+     * was cancelled. This reads from disk, so it must not be called on the main thread.
+     */
+    byte[] loadData(String url) {
+        byte[] data = mDiskCache.get(url);
+        if (data != null) {
+            return data;
+        }
+        CancelSignal signal = CancelSignal.current();
+        if (signal != null && signal.isCanceled()) {
+            return null;
+        }
+        try {
+            data = mFetcher.fetchThumbnail(url);
+        } catch (IOException e) {
+            if (signal == null || !signal.isCanceled()) {
+                Log.e(LOG_TAG, "Problem downloading the thumbnail " + url, e);
+            }
+            return null;
+        }
+        if (data == null) {
+            return null;
+        }
+        try {
+            mDiskCache.put(url, data);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem storing the thumbnail " + url, e);
+        }
+        return data;
+    }
+
+    /**
+     * Removes the decoded thumbnails from memory, they are decoded again from disk when needed.
+     */
+    public void clearMemory() {
+        mMemoryCache.evictAll();
+    }
+
+    @Override
+    public String getName() {
+        return "thumbnails";
+    }
+
+    @Override
+    public int getPriority() {
+        return CacheManager.PRIORITY_THUMBNAILS;
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return mMemoryCache.size();
+    }
+
+    /**
+     * Drops the least recently used bitmaps, the shown ones were used last and stay.
+     */
+    @Override
+    public void trimMemory(long maxBytes) {
+        mMemoryCache.trimToSize((int) Math.min(maxBytes, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public CacheManager.Stats getStats() {
+        return mStats;
+    }
+
+    /**
+     * Loads one thumbnail and sets it on the view, unless the view got another task meanwhile.
+     */
+    private final class ThumbnailTask implements Runnable {
+
+        private final String mUrl;
+
+        private final ImageView mImageView;
+
+        //Aborts the download of the task
+        private final CancelSignal mSignal = new CancelSignal();
+
+        //Set right after the task was submitted, before the task can be cancelled
+        private volatile Future<?> mFuture;
+
+        ThumbnailTask(String url, ImageView imageView) {
+            mUrl = url;
+            mImageView = imageView;
+        }
+
+        @Override
+        public void run() {
+            if (mSignal.isCanceled()) {
+                return;
+            }
+            CancelSignal previous = CancelSignal.setCurrent(mSignal);
+            byte[] data;
+            try {
+                data = loadData(mUrl);
+            } finally {
+                CancelSignal.setCurrent(previous);
+            }
+            //The row was recycled while the image was downloaded, the file is kept for later
+            if (data == null || mSignal.isCanceled()) {
+                return;
+            }
+            final Bitmap bitmap = decode(data, mWidth, mHeight);
+            if (bitmap == null) {
+                return;
+            }
+            mMemoryCache.put(mUrl, bitmap);
+            mDeliveryExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (mImageView.getTag(R.id.thumbnail_task) == ThumbnailTask.this) {
+                        mImageView.setTag(R.id.thumbnail_task, null);
+                        mImageView.setImageBitmap(bitmap);
+                    }
+                }
+            });
+        }
+
+        //Closes the connection of a running download and drops the task if it did not start
+        void cancel() {
+            mSignal.cancel();
+            mFuture.cancel(false);
+        }
+    }
+
+    /**
+     * Downloads the image, returns null on an error response or if it is too big. The download
+     * is aborted when the {@link CancelSignal} of the thread is cancelled.
+     */
+    static byte[] download(String url) throws IOException {
+        final HttpURLConnection urlConnection = (HttpURLConnection) new URL(url).openConnection();
+        urlConnection.setReadTimeout(READ_TIMEOUT);
+        urlConnection.setConnectTimeout(CONNECT_TIMEOUT);
+        //Closing the socket is the only way to stop a read that waits for the network
+        CancelSignal signal = CancelSignal.current();
+        CancelSignal.OnCancelListener abort = new CancelSignal.OnCancelListener() {
+            @Override
+            public void onCancel() {
+                urlConnection.disconnect();
+            }
+        };
+        if (signal != null) {
+            signal.addOnCancelListener(abort);
+        }
+        InputStream inputStream = null;
+        try {
+            int responseCode = urlConnection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                Log.e(LOG_TAG, "Error response code " + responseCode + " for " + url);
+                //The body of the error is read below, so the connection can be reused
+                inputStream = urlConnection.getErrorStream();
+                return null;
+            }
+            inputStream = urlConnection.getInputStream();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+                if (output.size() > MAX_DOWNLOAD_BYTES) {
+                    Log.e(LOG_TAG, "Thumbnail is too big: " + url);
+                    //Reading the rest would take longer than opening a new connection
+                    inputStream = null;
+                    urlConnection.disconnect();
+                    return null;
+                }
+            }
+            return output.toByteArray();
+        } finally {
+            if (signal != null) {
+                signal.removeOnCancelListener(abort);
+            }
+            //The connection of a cancelled download is closed already
+            if (inputStream != null && (signal == null || !signal.isCanceled())) {
+                NewsHttpClient.drainAndClose(inputStream);
+            }
+        }
+    }
+
+    //Decodes the image downsampled to about the size of the view
+    private static Bitmap decode(byte[] data, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, width, height);
+        //Thumbnails have no transparency, RGB_565 halves their memory
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    /**
+     * Returns the largest power of two by which the image can be scaled down,
+     * so that it is still at least as big as the view in both directions.
+     */
+    static int calculateInSampleSize(int imageWidth, int imageHeight, int viewWidth, int viewHeight) {
+        int inSampleSize = 1;
+        while (imageWidth / (inSampleSize * 2) >= viewWidth && imageHeight / (inSampleSize * 2) >= viewHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+}
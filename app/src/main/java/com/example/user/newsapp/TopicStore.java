@@ -0,0 +1,176 @@
+package com.example.user.newsapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The stored news of one subscribed topic, ordered by {@link FeedAggregator#NEWEST_FIRST}.
+ * <p>
+ * The news are kept in an array that is never changed after it was published. A write merges
+ * the new news into a copy and replaces the array, so the timeline reads a consistent array
+ * without a lock and without copying it. Writes happen on the loader threads, a few times a
+ * minute at most, reads on the main thread whenever the list switches topics.
+ */
+public class TopicStore {
+
+    //Number of news kept by a store, the oldest news drop out
+    public static final int MAX_NEWS = 5000;
+
+    private static final News[] EMPTY = new News[0];
+
+    //Maximum number of news of this store
+    private final int mMaxNews;
+
+    //The news, newest first. Replaced by every write, never changed
+    private volatile News[] mNews = EMPTY;
+
+    //Increased by every write that changed the news
+    private volatile int mVersion;
+
+    //Estimated size of the news in memory, updated by every write
+    private volatile long mMemoryBytes;
+
+    /**
+     * Constructs a new {@link TopicStore} which keeps {@link #MAX_NEWS} news.
+     */
+    public TopicStore() {
+        this(MAX_NEWS);
+    }
+
+    /**
+     * Constructs a new {@link TopicStore}.
+     *
+     * @param maxNews is the number of news that are kept
+     */
+    public TopicStore(int maxNews) {
+        mMaxNews = maxNews;
+    }
+
+    /**
+     * Merges news of the topic into the store. A news whose url is already stored replaces the
+     * stored one, so a refreshed title or thumbnail is kept.
+     *
+     * @param news are the news of a page or a delta, in any order
+     * @return true if the store changed, false if it had all the news already
+     */
+    public synchronized boolean add(List<News> news) {
+        if (news.isEmpty()) {
+            return false;
+        }
+        //The pages are already ordered newest first, the sort only checks it then
+        List<News> newer = new ArrayList<>(news);
+        Collections.sort(newer, FeedAggregator.NEWEST_FIRST);
+        Set<String> urls = new HashSet<>();
+        for (News item : newer) {
+            if (item.getUrl() != null) {
+                urls.add(item.getUrl());
+            }
+        }
+
+        News[] stored = mNews;
+        News[] merged = new News[Math.min(mMaxNews, stored.length + newer.size())];
+        long bytes = mMemoryBytes;
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (count < merged.length && (i < stored.length || j < newer.size())) {
+            if (i < stored.length && stored[i].getUrl() != null && urls.contains(stored[i].getUrl())) {
+                //Replaced by the new version of the news
+                bytes -= CacheManager.sizeOf(stored[i++]);
+            } else if (i >= stored.length
+                    || (j < newer.size() && FeedAggregator.NEWEST_FIRST.compare(newer.get(j), stored[i]) <= 0)) {
+                bytes += CacheManager.sizeOf(newer.get(j));
+                merged[count++] = newer.get(j++);
+            } else {
+                merged[count++] = stored[i++];
+            }
+        }
+        //The oldest news over the limit drop out
+        while (i < stored.length) {
+            bytes -= CacheManager.sizeOf(stored[i++]);
+        }
+        if (count < merged.length) {
+            //Some of the new news replaced stored ones
+            News[] trimmed = new News[count];
+            System.arraycopy(merged, 0, trimmed, 0, count);
+            merged = trimmed;
+        }
+        //A refresh that brought no new news does not publish a new array
+        if (isSame(merged, stored)) {
+            return false;
+        }
+        mNews = merged;
+        mMemoryBytes = bytes;
+        mVersion++;
+        return true;
+    }
+
+    /**
+     * Replaces the news, like after they were read from disk.
+     *
+     * @param news are ordered newest first
+     */
+    synchronized void set(List<News> news) {
+        int count = Math.min(news.size(), mMaxNews);
+        News[] stored = news.subList(0, count).toArray(new News[count]);
+        long bytes = 0;
+        for (News item : stored) {
+            bytes += CacheManager.sizeOf(item);
+        }
+        mNews = stored;
+        mMemoryBytes = bytes;
+        mVersion++;
+    }
+
+    //True if the arrays have the same news with the same fields, in the same order
+    private static boolean isSame(News[] first, News[] second) {
+        if (first.length != second.length) {
+            return false;
+        }
+        for (int i = 0; i < first.length; i++) {
+            News a = first[i];
+            News b = second[i];
+            if (a != b && (a.getPublishedAt() != b.getPublishedAt() || !equal(a.getUrl(), b.getUrl())
+                    || !equal(a.getTitle(), b.getTitle()) || !equal(a.getSection(), b.getSection())
+                    || !equal(a.getThumbnailUrl(), b.getThumbnailUrl()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //java.util.Objects needs API level 19
+    private static boolean equal(String first, String second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    //Gets the number of stored news
+    public int size() {
+        return mNews.length;
+    }
+
+    //Gets the stored news at the position, newest first
+    public News get(int position) {
+        return mNews[position];
+    }
+
+    //Gets the estimated size of the news in memory, without walking them
+    public long getMemoryBytes() {
+        return mMemoryBytes;
+    }
+
+    //Gets the number of writes that changed the news
+    public int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Returns the news, newest first. The array is shared and must not be changed.
+     */
+    News[] array() {
+        return mNews;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.user.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link ArticleLoader} serves the articles from its caches and prefetches them.
+ */
+public class ArticleLoaderTest {
+
+    private static final String URL = "https://www.theguardian.com/world/a";
+
+    //Runs the callbacks on the thread of the load, the tests have no main thread
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void load_fetchesOnceAndThenReadsTheDisk() throws Exception {
+        CountingFetcher fetcher = new CountingFetcher();
+        assertEquals("Body of " + URL, load(newLoader(fetcher), URL, false).getBody());
+
+        //A new process only has the disk, offline
+        ArticleLoader loader = newLoader(fetcher);
+        assertNull(loader.peek(URL));
+        assertEquals("Body of " + URL, load(loader, URL, true).getBody());
+
+        assertEquals(Collections.singletonList(URL), fetcher.mFetched);
+        assertNotNull(loader.peek(URL));
+    }
+
+    @Test
+    public void load_offlineWithoutCacheReturnsNull() throws Exception {
+        CountingFetcher fetcher = new CountingFetcher();
+
+        assertNull(load(newLoader(fetcher), URL, true));
+        assertTrue(fetcher.mFetched.isEmpty());
+    }
+
+    @Test
+    public void prefetch_loadsTheTopVisibleNewsThatAreNotCached() throws Exception {
+        //The loaded article and the prefetched ones
+        CountingFetcher fetcher = new CountingFetcher(ArticleLoader.MAX_PREFETCH);
+        ArticleLoader loader = newLoader(fetcher);
+        load(loader, "https://www.theguardian.com/0", false);
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < ArticleLoader.MAX_PREFETCH + 3; i++) {
+            urls.add("https://www.theguardian.com/" + i);
+        }
+
+        loader.prefetch(urls);
+        assertTrue(fetcher.mFetchedAll.await(5, TimeUnit.SECONDS));
+
+        //The first article was loaded before and is not fetched again, the news after the top ones are not fetched
+        assertEquals(urls.subList(0, ArticleLoader.MAX_PREFETCH), fetcher.mFetched);
+    }
+
+    @Test
+    public void load_waitsForThePrefetchOfTheSameArticle() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        CountingFetcher fetcher = new CountingFetcher(1) {
+            @Override
+            public Article fetchArticle(String webUrl) throws IOException {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return super.fetchArticle(webUrl);
+            }
+        };
+        ArticleLoader loader = newLoader(fetcher);
+        loader.prefetch(Collections.singletonList(URL));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        //The prefetch is requested again and the reader opens the article while it downloads
+        loader.prefetch(Collections.singletonList(URL));
+        final CountDownLatch done = new CountDownLatch(1);
+        loader.load(URL, false, new ArticleLoader.Callback() {
+            @Override
+            public void onArticleLoaded(Article article) {
+                done.countDown();
+            }
+        });
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(URL), fetcher.mFetched);
+    }
+
+    @Test
+    public void getInstance_registersTheLoaderWithTheCacheManager() {
+        ArticleLoader loader = ArticleLoader.getInstance(mFolder.getRoot(), DIRECT);
+
+        assertSame(loader, ArticleLoader.getInstance(mFolder.getRoot(), DIRECT));
+        assertTrue(CacheManager.getInstance().getCaches().contains(loader));
+    }
+
+    @Test
+    public void encode_keepsBodiesLongerThanWriteUtf() throws Exception {
+        char[] body = new char[70000];
+        Arrays.fill(body, '\u00e9');
+        Article article = new Article(URL, "Title", null, new String(body));
+
+        Article decoded = ArticleLoader.decode(ArticleLoader.encode(article));
+
+        assertEquals(URL, decoded.getUrl());
+        assertEquals("Title", decoded.getTitle());
+        assertNull(decoded.getTrailText());
+        assertEquals(new String(body), decoded.getBody());
+    }
+
+    private ArticleLoader newLoader(CountingFetcher fetcher) {
+        return new ArticleLoader(new DiskLruCache(mFolder.getRoot(), 1024 * 1024), fetcher, DIRECT);
+    }
+
+    //Loads the article and waits for the callback
+    private static Article load(ArticleLoader loader, String url, boolean offline) throws InterruptedException {
+        final Article[] result = new Article[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        loader.load(url, offline, new ArticleLoader.Callback() {
+            @Override
+            public void onArticleLoaded(Article article) {
+                result[0] = article;
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        return result[0];
+    }
+
+    //Answers every web address with an article and remembers the fetched addresses
+    private static class CountingFetcher implements ArticleLoader.ArticleFetcher {
+
+        final List<String> mFetched = Collections.synchronizedList(new ArrayList<String>());
+
+        //Counts down with every fetch
+        final CountDownLatch mFetchedAll;
+
+        CountingFetcher() {
+            this(0);
+        }
+
+        CountingFetcher(int fetches) {
+            mFetchedAll = new CountDownLatch(fetches);
+        }
+
+        @Override
+        public Article fetchArticle(String webUrl) throws IOException {
+            mFetched.add(webUrl);
+            mFetchedAll.countDown();
+            return new Article(webUrl, "Title", "Trail", "Body of " + webUrl);
+        }
+    }
+}
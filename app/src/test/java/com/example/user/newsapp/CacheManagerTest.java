@@ -0,0 +1,134 @@
+package com.example.user.newsapp;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how {@link CacheManager} splits a trim between the caches by their priorities.
+ */
+public class CacheManagerTest {
+
+    /**
+     * A cache whose bytes only shrink by trims.
+     */
+    private static final class FakeCache implements CacheManager.MemoryCache {
+
+        private final int mPriority;
+
+        private long mBytes;
+
+        private final CacheManager.Stats mStats = new CacheManager.Stats();
+
+        FakeCache(int priority, long bytes) {
+            mPriority = priority;
+            mBytes = bytes;
+        }
+
+        @Override
+        public String getName() {
+            return "fake" + mPriority;
+        }
+
+        @Override
+        public int getPriority() {
+            return mPriority;
+        }
+
+        @Override
+        public long getMemoryBytes() {
+            return mBytes;
+        }
+
+        @Override
+        public void trimMemory(long maxBytes) {
+            mBytes = Math.min(mBytes, maxBytes);
+        }
+
+        @Override
+        public CacheManager.Stats getStats() {
+            return mStats;
+        }
+    }
+
+    private final CacheManager mManager = new CacheManager();
+
+    //Registered out of order, the manager sorts them
+    private final FakeCache mTopics = register(CacheManager.PRIORITY_TOPICS, 1000);
+    private final FakeCache mThumbnails = register(CacheManager.PRIORITY_THUMBNAILS, 4000);
+    private final FakeCache mNewsPages = register(CacheManager.PRIORITY_NEWS_PAGES, 2000);
+    private final FakeCache mArticles = register(CacheManager.PRIORITY_ARTICLES, 1000);
+
+    @Test
+    public void onTrimMemory_takesFromTheLowestPriorityFirst() {
+        assertEquals(8000, mManager.getMemoryBytes());
+
+        //The UI is hidden, half of the bytes are kept
+        mManager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+
+        assertEquals(0, mThumbnails.getMemoryBytes());
+        assertEquals(1000, mArticles.getMemoryBytes());
+        assertEquals(2000, mNewsPages.getMemoryBytes());
+        assertEquals(1000, mTopics.getMemoryBytes());
+    }
+
+    @Test
+    public void onTrimMemory_trimsLittleInTheForeground() {
+        mManager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+
+        assertEquals(6000, mManager.getMemoryBytes());
+        assertEquals(2000, mThumbnails.getMemoryBytes());
+        assertEquals(1000, mArticles.getMemoryBytes());
+    }
+
+    @Test
+    public void onTrimMemory_spillsIntoTheNextPriorities() {
+        //A quarter of 8000 is kept, the thumbnails and the articles are not enough
+        mManager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+
+        assertEquals(2000, mManager.getMemoryBytes());
+        assertEquals(0, mArticles.getMemoryBytes());
+        assertEquals(1000, mNewsPages.getMemoryBytes());
+        assertEquals(1000, mTopics.getMemoryBytes());
+    }
+
+    @Test
+    public void onLowMemory_dropsEverything() {
+        mManager.onLowMemory();
+
+        assertEquals(0, mManager.getMemoryBytes());
+    }
+
+    @Test
+    public void keepFraction_shrinksWithTheLevel() {
+        assertEquals(1, CacheManager.keepFraction(0), 0);
+        assertTrue(CacheManager.keepFraction(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND)
+                < CacheManager.keepFraction(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN));
+        assertTrue(CacheManager.keepFraction(ComponentCallbacks2.TRIM_MEMORY_MODERATE)
+                < CacheManager.keepFraction(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND));
+        assertEquals(0, CacheManager.keepFraction(ComponentCallbacks2.TRIM_MEMORY_COMPLETE), 0);
+    }
+
+    @Test
+    public void stats_countHitsMissesAndEvictions() {
+        CacheManager.Stats stats = new CacheManager.Stats();
+        assertEquals(0, stats.getHitRate(), 0);
+
+        stats.recordHit();
+        stats.recordHit();
+        stats.recordHit();
+        stats.recordMiss();
+        stats.recordEvictions(2);
+
+        assertEquals(0.75f, stats.getHitRate(), 0.0001f);
+        assertEquals(2, stats.getEvictions());
+    }
+
+    private FakeCache register(int priority, long bytes) {
+        FakeCache cache = new FakeCache(priority, bytes);
+        mManager.register(cache);
+        return cache;
+    }
+}
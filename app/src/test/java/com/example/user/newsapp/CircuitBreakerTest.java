@@ -0,0 +1,121 @@
+package com.example.user.newsapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the states of {@link CircuitBreaker} with a fake clock.
+ */
+public class CircuitBreakerTest {
+
+    private static final int THRESHOLD = 3;
+
+    private static final long OPEN_MILLIS = 1000;
+
+    private static final long MAX_OPEN_MILLIS = 3000;
+
+    private long mNow = 50000;
+
+    private final CircuitBreaker mBreaker = new CircuitBreaker(new Clock() {
+        @Override
+        public long now() {
+            return mNow;
+        }
+    }, THRESHOLD, OPEN_MILLIS, MAX_OPEN_MILLIS);
+
+    @Test
+    public void opensAfterFailuresInARow() {
+        fail(THRESHOLD - 1);
+        mBreaker.onSuccess(mBreaker.allowRequest());
+        fail(THRESHOLD - 1);
+        assertEquals(CircuitBreaker.STATE_CLOSED, mBreaker.getState());
+
+        fail(1);
+
+        assertEquals(CircuitBreaker.STATE_OPEN, mBreaker.getState());
+        assertEquals(CircuitBreaker.PERMIT_DENIED, mBreaker.allowRequest());
+    }
+
+    @Test
+    public void letsOneTrialThroughAfterTheOpenTime() {
+        fail(THRESHOLD);
+        mNow += OPEN_MILLIS;
+
+        int trial = mBreaker.allowRequest();
+        assertEquals(CircuitBreaker.PERMIT_TRIAL, trial);
+        assertEquals(CircuitBreaker.STATE_HALF_OPEN, mBreaker.getState());
+        assertEquals(CircuitBreaker.PERMIT_DENIED, mBreaker.allowRequest());
+
+        mBreaker.onSuccess(trial);
+        assertEquals(CircuitBreaker.STATE_CLOSED, mBreaker.getState());
+        assertEquals(CircuitBreaker.PERMIT_NORMAL, mBreaker.allowRequest());
+    }
+
+    @Test
+    public void failedTrialsOpenLonger() {
+        fail(THRESHOLD);
+        mNow += OPEN_MILLIS;
+        mBreaker.onFailure(mBreaker.allowRequest());
+
+        //The second time the circuit is open twice as long
+        mNow += OPEN_MILLIS;
+        assertEquals(CircuitBreaker.PERMIT_DENIED, mBreaker.allowRequest());
+        mNow += OPEN_MILLIS;
+        int trial = mBreaker.allowRequest();
+        assertEquals(CircuitBreaker.PERMIT_TRIAL, trial);
+
+        //Up to the maximum
+        mBreaker.onFailure(trial);
+        mNow += MAX_OPEN_MILLIS;
+        assertEquals(CircuitBreaker.PERMIT_TRIAL, mBreaker.allowRequest());
+    }
+
+    @Test
+    public void aCancelledTrialLetsTheNextRequestThrough() {
+        fail(THRESHOLD);
+        mNow += OPEN_MILLIS;
+
+        mBreaker.onCanceled(mBreaker.allowRequest());
+
+        assertEquals(CircuitBreaker.PERMIT_TRIAL, mBreaker.allowRequest());
+    }
+
+    @Test
+    public void onlyTheTrialChangesTheHalfOpenCircuit() {
+        //Sent while the circuit was closed, they end while the trial runs
+        int late = mBreaker.allowRequest();
+        int lateToo = mBreaker.allowRequest();
+        fail(THRESHOLD);
+        mNow += OPEN_MILLIS;
+        int trial = mBreaker.allowRequest();
+
+        mBreaker.onCanceled(late);
+        mBreaker.onFailure(lateToo);
+
+        //The trial still runs alone
+        assertEquals(CircuitBreaker.STATE_HALF_OPEN, mBreaker.getState());
+        assertEquals(CircuitBreaker.PERMIT_DENIED, mBreaker.allowRequest());
+        mBreaker.onSuccess(trial);
+        assertEquals(CircuitBreaker.STATE_CLOSED, mBreaker.getState());
+    }
+
+    @Test
+    public void retryAfterOpensForTheRequestedTime() {
+        mBreaker.onRetryAfter(5000);
+
+        assertEquals(CircuitBreaker.PERMIT_DENIED, mBreaker.allowRequest());
+        mNow += 4999;
+        assertEquals(CircuitBreaker.PERMIT_DENIED, mBreaker.allowRequest());
+        mNow += 1;
+        assertEquals(CircuitBreaker.PERMIT_TRIAL, mBreaker.allowRequest());
+    }
+
+    private void fail(int count) {
+        for (int i = 0; i < count; i++) {
+            int permit = mBreaker.allowRequest();
+            assertEquals(CircuitBreaker.PERMIT_NORMAL, permit);
+            mBreaker.onFailure(permit);
+        }
+    }
+}
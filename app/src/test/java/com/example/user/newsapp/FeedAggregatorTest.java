@@ -0,0 +1,214 @@
+package com.example.user.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs {@link FeedAggregator} against a local stub server which answers every topic
+ * after a delay that is given in the query.
+ */
+public class FeedAggregatorTest {
+
+    private static final long DELAY_MILLIS = 400;
+
+    private HttpServer mServer;
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        //The server answers requests in parallel, like the real API
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String[] query = exchange.getRequestURI().getQuery().split("&");
+                String topic = query[0].substring("q=".length());
+                long delay = Long.parseLong(query[1].substring("delay=".length()));
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if ("broken".equals(topic)) {
+                    exchange.sendResponseHeaders(500, -1);
+                    exchange.close();
+                    return;
+                }
+                byte[] body = responseFor(topic).getBytes(Charset.forName("UTF-8"));
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(body);
+                output.close();
+            }
+        });
+        mServer.start();
+        mExecutor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        mServer.stop(0);
+    }
+
+    @Test
+    public void fetch_takesAboutAsLongAsTheSlowestRequest() throws Exception {
+        FeedAggregator aggregator = newAggregator(5000);
+
+        long start = System.currentTimeMillis();
+        NewsPage page = aggregator.fetch(Arrays.asList(
+                url("world", DELAY_MILLIS), url("sport", DELAY_MILLIS), url("politics", DELAY_MILLIS)));
+        long elapsed = System.currentTimeMillis() - start;
+
+        //Every topic finds three news, one of them is the shared one
+        assertEquals(7, page.getNews().size());
+        assertTrue("Took " + elapsed + " ms", elapsed < 2 * DELAY_MILLIS);
+    }
+
+    @Test
+    public void fetch_mergesByDateAndRemovesDuplicates() throws Exception {
+        FeedAggregator aggregator = newAggregator(5000);
+
+        //Both searches find the shared article
+        NewsPage page = aggregator.fetch(Arrays.asList(url("world", 0), url("politics", 0)));
+
+        List<News> news = page.getNews();
+        assertEquals(5, news.size());
+        for (int i = 1; i < news.size(); i++) {
+            assertTrue(news.get(i - 1).getPublishedAt() >= news.get(i).getPublishedAt());
+        }
+        assertEquals("politics".length(), page.getPages());
+    }
+
+    @Test
+    public void fetch_toleratesFailedAndSlowRequests() throws Exception {
+        FeedAggregator aggregator = newAggregator(DELAY_MILLIS);
+
+        long start = System.currentTimeMillis();
+        NewsPage page = aggregator.fetch(Arrays.asList(
+                url("world", 0), url("broken", 0), url("sport", 4 * DELAY_MILLIS)));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(3, page.getNews().size());
+        assertEquals("world", page.getNews().get(0).getSection());
+        assertTrue("Took " + elapsed + " ms", elapsed < 3 * DELAY_MILLIS);
+
+        //The slow request was aborted, so all threads of the pool are free long before the
+        //server would have answered
+        final CountDownLatch started = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        started.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        assertTrue(started.await(DELAY_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void fetch_returnsNullIfAllRequestsFail() throws Exception {
+        FeedAggregator aggregator = newAggregator(5000);
+
+        assertNull(aggregator.fetch(Arrays.asList(url("broken", 0), url("broken", 0))));
+    }
+
+    @Test
+    public void mergeNewer_addsTheNewNewsInOrderAndKeepsTheSize() {
+        NewsPage page = new NewsPage(new ArrayList<>(Arrays.asList(
+                news("c", "2017-06-17T10:00:00Z"), news("b", "2017-06-16T10:00:00Z"),
+                news("a", "2017-06-15T10:00:00Z"))), 1, 4);
+        //The delta starts at the time of the newest news, so it is found again
+        List<News> newer = Arrays.asList(news("e", "2017-06-18T12:00:00Z"),
+                news("d", "2017-06-17T10:00:00Z"), news("c", "2017-06-17T10:00:00Z"));
+
+        NewsPage merged = FeedAggregator.mergeNewer(page, newer);
+
+        assertEquals(Arrays.asList("e", "c", "d"), titles(merged.getNews()));
+        assertEquals(1, merged.getCurrentPage());
+        assertEquals(4, merged.getPages());
+        //The cached page is not changed
+        assertEquals(Arrays.asList("c", "b", "a"), titles(page.getNews()));
+    }
+
+    @Test
+    public void mergeNewer_withoutNewNewsKeepsThePage() {
+        NewsPage page = new NewsPage(new ArrayList<>(Arrays.asList(
+                news("b", "2017-06-16T10:00:00Z"), news("a", "2017-06-15T10:00:00Z"))), 1, 1);
+
+        NewsPage merged = FeedAggregator.mergeNewer(page, Collections.singletonList(news("b", "2017-06-16T10:00:00Z")));
+
+        assertEquals(Arrays.asList("b", "a"), titles(merged.getNews()));
+        assertSame(page, FeedAggregator.mergeNewer(page, Collections.<News>emptyList()));
+    }
+
+    private static News news(String id, String date) {
+        return new News(id, "world", "https://www.theguardian.com/" + id, date);
+    }
+
+    private static List<String> titles(List<News> news) {
+        List<String> titles = new ArrayList<>();
+        for (News item : news) {
+            titles.add(item.getTitle());
+        }
+        return titles;
+    }
+
+    private FeedAggregator newAggregator(long timeoutMillis) {
+        return new FeedAggregator(mExecutor, timeoutMillis, new FeedAggregator.PageFetcher() {
+            @Override
+            public NewsPage fetchPage(String url) {
+                return QueryUtils.fetchNewsPage(url);
+            }
+        });
+    }
+
+    private String url(String topic, long delayMillis) {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort()
+                + "/search?q=" + topic + "&delay=" + delayMillis;
+    }
+
+    //Three news of the topic, one of them is found by every topic
+    private static String responseFor(String topic) {
+        int pages = topic.length();
+        return "{\"response\":{\"currentPage\":1,\"pages\":" + pages + ",\"results\":["
+                + result(topic, topic + "-1", "2017-06-1" + pages + "T10:00:00Z") + ","
+                + result(topic, "shared", "2017-06-01T10:00:00Z") + ","
+                + result(topic, topic + "-2", "2017-06-0" + pages + "T10:00:00Z")
+                + "]}}";
+    }
+
+    private static String result(String section, String id, String date) {
+        return "{\"webTitle\":\"" + id + "\",\"sectionName\":\"" + section
+                + "\",\"webUrl\":\"https://www.theguardian.com/" + id
+                + "\",\"webPublicationDate\":\"" + date + "\"}";
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.user.newsapp;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the k-way merge of the timeline of {@link FeedStore} and that the stores of the
+ * topics survive a restart.
+ */
+public class FeedStoreTest {
+
+    //Runs the disk work on the calling thread
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private DiskLruCache mDiskCache;
+
+    @Before
+    public void setUp() {
+        mDiskCache = new DiskLruCache(mFolder.getRoot(), 1024 * 1024);
+    }
+
+    @Test
+    public void merge_ordersTheStreamsNewestFirst() {
+        News[][] streams = {
+                {news("a5", 50), news("a2", 20)},
+                {news("b4", 40), news("b3", 30), news("b1", 10)},
+                {},
+                {news("c6", 60)}};
+
+        assertEquals(Arrays.asList("c6", "a5", "b4", "b3", "a2", "b1"), urls(FeedStore.merge(streams, 0, 10)));
+    }
+
+    @Test
+    public void merge_returnsThePartAfterTheOffset() {
+        News[][] streams = {
+                {news("a5", 50), news("a3", 30), news("a1", 10)},
+                {news("b4", 40), news("b2", 20)}};
+
+        assertEquals(Arrays.asList("b4", "a3"), urls(FeedStore.merge(streams, 1, 2)));
+        assertEquals(Arrays.asList("a1"), urls(FeedStore.merge(streams, 4, 2)));
+        assertTrue(FeedStore.merge(streams, 5, 2).isEmpty());
+    }
+
+    @Test
+    public void merge_dropsTheNewsOfSeveralTopics() {
+        //The same news in two topics, between news with the same date
+        News[][] streams = {
+                {news("x", 30), news("shared", 20), news("a", 10)},
+                {news("shared", 20), news("y", 20), news("b", 10)}};
+
+        List<News> merged = FeedStore.merge(streams, 0, 10);
+
+        assertEquals(Arrays.asList("x", "shared", "y", "a", "b"), urls(merged));
+        //The offset counts the merged news without the duplicates
+        assertEquals(Arrays.asList("y", "a"), urls(FeedStore.merge(streams, 2, 2)));
+    }
+
+    @Test
+    public void getTimeline_pagesThroughAllTopics() {
+        FeedStore feedStore = new FeedStore(mDiskCache, DIRECT);
+        feedStore.add("football", Arrays.asList(news("f3", 3000), news("f1", 1000)));
+        feedStore.add("politics", Arrays.asList(news("p4", 4000), news("p2", 2000)));
+        List<String> keys = Arrays.asList("football", "politics");
+
+        NewsPage first = feedStore.getTimeline(keys, 1, 3);
+        NewsPage second = feedStore.getTimeline(keys, 2, 3);
+
+        assertEquals(Arrays.asList("p4", "f3", "p2"), urls(first.getNews()));
+        assertEquals(2, first.getPages());
+        assertEquals(Arrays.asList("f1"), urls(second.getNews()));
+        assertEquals(2, second.getCurrentPage());
+        assertNull(feedStore.getTimeline(keys, 3, 3));
+        //A single topic is a slice of its store
+        assertEquals(Arrays.asList("f1"), urls(feedStore.getTimeline(Collections.singletonList("football"), 2, 1).getNews()));
+    }
+
+    @Test
+    public void peekTimeline_needsTheStoresInMemory() {
+        FeedStore feedStore = new FeedStore(mDiskCache, DIRECT);
+        feedStore.add("football", Collections.singletonList(news("f1", 1000)));
+
+        assertNotNull(feedStore.peekTimeline(Collections.singletonList("football"), 1, 20));
+        assertNull(feedStore.peekTimeline(Arrays.asList("football", "politics"), 1, 20));
+
+        feedStore.loadAsync(Arrays.asList("football", "politics"));
+        assertNotNull(feedStore.peekTimeline(Arrays.asList("football", "politics"), 1, 20));
+    }
+
+    @Test
+    public void getTopic_readsTheStoreThatWasWritten() {
+        FeedStore feedStore = new FeedStore(mDiskCache, DIRECT);
+        feedStore.add("football", Arrays.asList(news("f3", 3000), news("f1", 1000)));
+
+        //A new process reads the stores from disk
+        FeedStore restarted = new FeedStore(new DiskLruCache(mFolder.getRoot(), 1024 * 1024), DIRECT);
+        assertNull(restarted.peekTopic("football"));
+        TopicStore store = restarted.getTopic("football");
+
+        assertEquals(2, store.size());
+        assertEquals("f3", store.get(0).getUrl());
+        assertEquals(3000, store.get(0).getPublishedAt());
+        assertEquals(0, restarted.getTopic("politics").size());
+    }
+
+    @Test
+    public void loadAsync_dropsTheStoresOfUnsubscribedTopics() {
+        FeedStore feedStore = new FeedStore(mDiskCache, DIRECT);
+        feedStore.loadAsync(Arrays.asList("football", "politics"));
+        assertNotNull(feedStore.peekTopic("politics"));
+
+        feedStore.loadAsync(Collections.singletonList("football"));
+
+        assertNotNull(feedStore.peekTopic("football"));
+        assertNull(feedStore.peekTopic("politics"));
+    }
+
+    @Test
+    public void trimMemory_writesTheStoresBeforeDroppingThem() {
+        //The write is left pending until the trim runs
+        final List<Runnable> pending = new ArrayList<>();
+        FeedStore feedStore = new FeedStore(mDiskCache, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                pending.add(command);
+            }
+        });
+        feedStore.add("football", Arrays.asList(news("f3", 3000), news("f1", 1000)));
+        assertTrue(feedStore.getMemoryBytes() > 0);
+
+        feedStore.trimMemory(0);
+        for (Runnable command : pending) {
+            command.run();
+        }
+
+        assertEquals(0, feedStore.getMemoryBytes());
+        assertNull(feedStore.peekTopic("football"));
+        assertEquals(2, feedStore.getTopic("football").size());
+    }
+
+    @Test
+    public void loadAsync_keepsAStoreWhoseWriteHasNotFinished() {
+        final FeedStore[] feedStore = new FeedStore[1];
+        final TopicStore[] duringWrite = new TopicStore[1];
+        feedStore[0] = new FeedStore(new DiskLruCache(mFolder.getRoot(), 1024 * 1024) {
+            @Override
+            public synchronized void put(String key, byte[] value) throws IOException {
+                //The topic is unsubscribed while its store is written
+                feedStore[0].loadAsync(Collections.<String>emptyList());
+                duringWrite[0] = feedStore[0].peekTopic(key);
+                super.put(key, value);
+            }
+        }, DIRECT);
+
+        feedStore[0].add("football", Arrays.asList(news("f3", 3000), news("f1", 1000)));
+
+        assertNotNull(duringWrite[0]);
+        feedStore[0].loadAsync(Collections.<String>emptyList());
+        assertNull(feedStore[0].peekTopic("football"));
+    }
+
+    @Test
+    public void merge_handlesManyLargeTopics() {
+        //Many topics with many stored news, a page of the timeline is still a few steps
+        int topics = 10;
+        int perTopic = TopicStore.MAX_NEWS;
+        News[][] streams = new News[topics][perTopic];
+        for (int topic = 0; topic < topics; topic++) {
+            for (int i = 0; i < perTopic; i++) {
+                long publishedAt = (long) (perTopic - i) * topics + topic;
+                streams[topic][i] = news(topic + "/" + i, publishedAt);
+            }
+        }
+
+        List<News> page = FeedStore.merge(streams, 40, 20);
+
+        assertEquals(20, page.size());
+        for (int i = 1; i < page.size(); i++) {
+            assertTrue(page.get(i - 1).getPublishedAt() > page.get(i).getPublishedAt());
+        }
+        assertEquals("9/4", page.get(0).getUrl());
+    }
+
+    private static News news(String url, long publishedAt) {
+        return new News("Title " + url, "Section", url, publishedAt);
+    }
+
+    private static List<String> urls(List<News> news) {
+        List<String> urls = new ArrayList<>();
+        for (News item : news) {
+            urls.add(item.getUrl());
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.user.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the order of the loads of the {@link FetchEngine} and that a cancelled load stops
+ * reading from the network.
+ */
+public class FetchEngineTest {
+
+    //Runs the callbacks on the thread of the load, the tests have no main thread
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private HttpServer mServer;
+
+    private final ExecutorService mServerExecutor = Executors.newCachedThreadPool();
+
+    //The engines of the test, they are shut down after it
+    private final List<FetchEngine> mEngines = new ArrayList<>();
+
+    //Counted down when the slow response has started
+    private final CountDownLatch mResponseStarted = new CountDownLatch(1);
+
+    //Counted down when the server noticed that the client closed the connection
+    private final CountDownLatch mClientGone = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(mServerExecutor);
+        //Sends the start of a body and then one more byte every 100 milliseconds, for a minute
+        mServer.createContext("/slow", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream output = exchange.getResponseBody();
+                try {
+                    output.write("{\"response\":{\"currentPage\":1,\"pages\":1,\"results\":[".getBytes(Charset.forName("UTF-8")));
+                    output.flush();
+                    mResponseStarted.countDown();
+                    for (int i = 0; i < 600; i++) {
+                        Thread.sleep(100);
+                        output.write(' ');
+                        output.flush();
+                    }
+                    output.close();
+                } catch (IOException e) {
+                    mClientGone.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        for (FetchEngine engine : mEngines) {
+            engine.shutdown();
+        }
+        mServer.stop(0);
+        mServerExecutor.shutdownNow();
+    }
+
+    @Test
+    public void submit_userLoadsRunBeforePrefetch() throws Exception {
+        FetchEngine engine = newEngine();
+        final CountDownLatch release = new CountDownLatch(1);
+        //Keeps the only thread busy, so the next loads wait in the queue
+        engine.submit(FetchEngine.PRIORITY_USER, new FetchEngine.Job() {
+            @Override
+            public NewsPage run(FetchEngine.Request request) throws InterruptedException {
+                release.await();
+                return null;
+            }
+        }, null);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        FetchEngine.Request prefetch1 = engine.submit(FetchEngine.PRIORITY_PREFETCH, new RecordingJob("prefetch1", order), null);
+        FetchEngine.Request prefetch2 = engine.submit(FetchEngine.PRIORITY_PREFETCH, new RecordingJob("prefetch2", order), null);
+        FetchEngine.Request paging = engine.submit(FetchEngine.PRIORITY_PAGING, new RecordingJob("paging", order), null);
+        FetchEngine.Request user = engine.submit(FetchEngine.PRIORITY_USER, new RecordingJob("user", order), null);
+        assertEquals(4, engine.getQueuedCount());
+        release.countDown();
+
+        prefetch2.await();
+        prefetch1.await();
+        paging.await();
+        user.await();
+        assertEquals(Arrays.asList("user", "paging", "prefetch1", "prefetch2"), order);
+    }
+
+    @Test
+    public void cancel_queuedLoadNeverRuns() throws Exception {
+        FetchEngine engine = newEngine();
+        final CountDownLatch release = new CountDownLatch(1);
+        engine.submit(FetchEngine.PRIORITY_USER, new FetchEngine.Job() {
+            @Override
+            public NewsPage run(FetchEngine.Request request) throws InterruptedException {
+                release.await();
+                return null;
+            }
+        }, null);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        RecordingCallback callback = new RecordingCallback();
+        FetchEngine.Request request = engine.submit(FetchEngine.PRIORITY_USER, new RecordingJob("cancelled", order), callback);
+
+        request.cancel();
+        assertEquals(0, engine.getQueuedCount());
+        assertNull(request.await());
+        release.countDown();
+        engine.submit(FetchEngine.PRIORITY_USER, new RecordingJob("next", order), null).await();
+
+        assertEquals(Collections.singletonList("next"), order);
+        assertTrue(callback.mResults.isEmpty());
+    }
+
+    @Test
+    public void cancel_runningLoadAbortsTheSocket() throws Exception {
+        FetchEngine engine = newEngine();
+        final URL url = new URL("http://127.0.0.1:" + mServer.getAddress().getPort() + "/slow");
+        RecordingCallback callback = new RecordingCallback();
+        FetchEngine.Request request = engine.submit(FetchEngine.PRIORITY_USER, new FetchEngine.Job() {
+            @Override
+            public NewsPage run(FetchEngine.Request request) throws InterruptedException {
+                try {
+                    return new NewsHttpClient().fetch(url);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        }, callback);
+        assertTrue(mResponseStarted.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        request.cancel();
+        assertNull(request.await());
+        //Without the abort the read would go on until the read timeout of 10 seconds
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        assertTrue(mClientGone.await(5, TimeUnit.SECONDS));
+        assertTrue(callback.mResults.isEmpty());
+    }
+
+    @Test
+    public void detach_loadFinishesWithoutCallback() throws Exception {
+        FetchEngine engine = newEngine();
+        final NewsPage page = new NewsPage();
+        RecordingCallback callback = new RecordingCallback();
+        final CountDownLatch release = new CountDownLatch(1);
+        FetchEngine.Request request = engine.submit(FetchEngine.PRIORITY_USER, new FetchEngine.Job() {
+            @Override
+            public NewsPage run(FetchEngine.Request request) throws InterruptedException {
+                request.publish(page);
+                release.await();
+                return page;
+            }
+        }, callback);
+
+        //Wait for the partial result, then detach before the last one
+        assertTrue(callback.mFirstResult.await(5, TimeUnit.SECONDS));
+        request.detach();
+        release.countDown();
+
+        assertSame(page, request.await());
+        assertFalse(request.isCanceled());
+        assertEquals(Collections.singletonList("partial"), callback.mResults);
+    }
+
+    //An engine with one thread, which is shut down after the test
+    private FetchEngine newEngine() {
+        FetchEngine engine = new FetchEngine(1, DIRECT);
+        mEngines.add(engine);
+        return engine;
+    }
+
+    //Adds its name to the list when it runs
+    private static final class RecordingJob implements FetchEngine.Job {
+
+        private final String mName;
+
+        private final List<String> mOrder;
+
+        RecordingJob(String name, List<String> order) {
+            mName = name;
+            mOrder = order;
+        }
+
+        @Override
+        public NewsPage run(FetchEngine.Request request) {
+            mOrder.add(mName);
+            return new NewsPage();
+        }
+    }
+
+    private static final class RecordingCallback implements FetchEngine.Callback {
+
+        final List<String> mResults = Collections.synchronizedList(new ArrayList<String>());
+
+        //Counted down by the first result
+        final CountDownLatch mFirstResult = new CountDownLatch(1);
+
+        @Override
+        public void onPartialResult(NewsPage page) {
+            mResults.add("partial");
+            mFirstResult.countDown();
+        }
+
+        @Override
+        public void onResult(NewsPage page) {
+            mResults.add("result");
+            mFirstResult.countDown();
+        }
+    }
+}
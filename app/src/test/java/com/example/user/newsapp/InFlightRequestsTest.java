@@ -0,0 +1,239 @@
+package com.example.user.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that concurrent callers for the same url share one request.
+ */
+public class InFlightRequestsTest {
+
+    private static final int CALLERS = 8;
+
+    private HttpServer mServer;
+
+    private ExecutorService mExecutor;
+
+    private final ExecutorService mServerExecutor = Executors.newCachedThreadPool();
+
+    //Number of requests that reached the server
+    private final AtomicInteger mServerRequests = new AtomicInteger();
+
+    //The server answers once it is counted down
+    private final CountDownLatch mReleaseResponse = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(mServerExecutor);
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mServerRequests.incrementAndGet();
+                try {
+                    mReleaseResponse.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = ("{\"response\":{\"currentPage\":1,\"pages\":1,\"results\":[{\"webTitle\":\"t\","
+                        + "\"webUrl\":\"https://www.theguardian.com/t\"}]}}").getBytes(Charset.forName("UTF-8"));
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(body);
+                output.close();
+            }
+        });
+        mServer.start();
+        mExecutor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        mServer.stop(0);
+        mServerExecutor.shutdownNow();
+    }
+
+    @Test
+    public void fetch_concurrentCallersShareOneFetch() throws Exception {
+        final AtomicInteger fetches = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final NewsPage page = new NewsPage();
+        final InFlightRequests requests = new InFlightRequests(new FeedAggregator.PageFetcher() {
+            @Override
+            public NewsPage fetchPage(String url) {
+                fetches.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return page;
+            }
+        });
+
+        AttachingSignal attached = new AttachingSignal(CALLERS);
+        List<Future<NewsPage>> results = callConcurrently(attached, new Callable<NewsPage>() {
+            @Override
+            public NewsPage call() {
+                return requests.fetch("https://example.com/search?q=news");
+            }
+        });
+        //All callers joined the running fetch before it finishes
+        assertTrue(attached.mAttached.await(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.size());
+        release.countDown();
+
+        for (Future<NewsPage> result : results) {
+            assertSame(page, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, fetches.get());
+        assertEquals(0, requests.size());
+
+        //A finished request is not reused
+        requests.fetch("https://example.com/search?q=news");
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void fetch_requestIsAbortedWhenAllCallersAreCancelled() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch aborted = new CountDownLatch(1);
+        final InFlightRequests requests = new InFlightRequests(new FeedAggregator.PageFetcher() {
+            @Override
+            public NewsPage fetchPage(String url) {
+                //Stands for the HTTP client, which disconnects when the signal is cancelled
+                CancelSignal.current().addOnCancelListener(new CancelSignal.OnCancelListener() {
+                    @Override
+                    public void onCancel() {
+                        aborted.countDown();
+                    }
+                });
+                started.countDown();
+                try {
+                    aborted.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        });
+
+        CancelSignal first = new CancelSignal();
+        AttachingSignal second = new AttachingSignal(1);
+        Future<NewsPage> owner = mExecutor.submit(fetchWith(requests, first));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<NewsPage> waiter = mExecutor.submit(fetchWith(requests, second));
+        assertTrue(second.mAttached.await(5, TimeUnit.SECONDS));
+
+        //The second caller still wants the page. The last release would abort it right away
+        first.cancel();
+        assertEquals(1, aborted.getCount());
+
+        second.cancel();
+        assertTrue(aborted.await(5, TimeUnit.SECONDS));
+        assertNull(owner.get(5, TimeUnit.SECONDS));
+        assertNull(waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(0, requests.size());
+    }
+
+    @Test
+    public void fetchNewsPage_concurrentCallersMakeOneHttpRequest() throws Exception {
+        final String url = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/search?q=coalesced";
+
+        AttachingSignal attached = new AttachingSignal(CALLERS);
+        List<Future<NewsPage>> results = callConcurrently(attached, new Callable<NewsPage>() {
+            @Override
+            public NewsPage call() {
+                return QueryUtils.fetchNewsPage(url);
+            }
+        });
+        assertTrue(attached.mAttached.await(5, TimeUnit.SECONDS));
+        mReleaseResponse.countDown();
+
+        for (Future<NewsPage> result : results) {
+            NewsPage page = result.get(5, TimeUnit.SECONDS);
+            assertNotNull(page);
+            assertEquals("t", page.getNews().get(0).getTitle());
+        }
+        assertEquals(1, mServerRequests.get());
+    }
+
+    //Fetches the url on a thread whose load has the signal
+    private static Callable<NewsPage> fetchWith(final InFlightRequests requests, final CancelSignal signal) {
+        return new Callable<NewsPage>() {
+            @Override
+            public NewsPage call() {
+                CancelSignal.setCurrent(signal);
+                try {
+                    return requests.fetch("https://example.com/search?q=cancelled");
+                } finally {
+                    CancelSignal.setCurrent(null);
+                }
+            }
+        };
+    }
+
+    //Starts all callers at the same moment, their loads have the signal if it is not null
+    private List<Future<NewsPage>> callConcurrently(final CancelSignal signal, final Callable<NewsPage> call) {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<NewsPage>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(mExecutor.submit(new Callable<NewsPage>() {
+                @Override
+                public NewsPage call() throws Exception {
+                    start.await();
+                    CancelSignal.setCurrent(signal);
+                    try {
+                        return call.call();
+                    } finally {
+                        CancelSignal.setCurrent(null);
+                    }
+                }
+            }));
+        }
+        start.countDown();
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Signal of the callers, which counts the callers that attached to a request: fetch()
+     * adds its listener once the caller waits for the request.
+     */
+    private static final class AttachingSignal extends CancelSignal {
+
+        final CountDownLatch mAttached;
+
+        AttachingSignal(int callers) {
+            mAttached = new CountDownLatch(callers);
+        }
+
+        @Override
+        public void addOnCancelListener(OnCancelListener listener) {
+            super.addOnCancelListener(listener);
+            mAttached.countDown();
+        }
+    }
+}
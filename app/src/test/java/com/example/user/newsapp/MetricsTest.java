@@ -0,0 +1,77 @@
+package com.example.user.newsapp;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the timers, the counters and the cost of {@link Metrics} while they are off.
+ */
+public class MetricsTest {
+
+    @After
+    public void tearDown() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Test
+    public void getPercentile_isCalculatedOverTheWindow() {
+        Metrics.setEnabled(true);
+        //The first samples are pushed out of the window by the following ones
+        for (int i = 0; i < Metrics.WINDOW; i++) {
+            Metrics.record(Metrics.PARSE, 1000000);
+        }
+        for (int i = 1; i <= Metrics.WINDOW; i++) {
+            Metrics.record(Metrics.PARSE, i);
+        }
+
+        assertEquals(2 * Metrics.WINDOW, Metrics.getSampleCount(Metrics.PARSE));
+        assertEquals(Metrics.WINDOW / 2, Metrics.getPercentile(Metrics.PARSE, 50));
+        assertEquals(Metrics.WINDOW, Metrics.getPercentile(Metrics.PARSE, 100));
+        assertEquals(0, Metrics.getPercentile(Metrics.BIND, 50));
+    }
+
+    @Test
+    public void dump_listsTimersAndCounters() {
+        Metrics.setEnabled(true);
+        Metrics.record(Metrics.CONNECT, 5000);
+        Metrics.count(Metrics.ITEMS, 20);
+        Metrics.count(Metrics.ITEMS, 10);
+
+        String report = Metrics.dump();
+
+        assertTrue(report, report.contains("connect count=1 p50=5 p90=5 p99=5 max=5"));
+        assertTrue(report, report.contains("items 30"));
+    }
+
+    @Test
+    public void disabled_recordsNothingAndAllocatesNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        //Warm up, so class loading and compilation are not measured
+        callAll(100000);
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        callAll(100000);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(0, Metrics.getSampleCount(Metrics.PARSE));
+        assertEquals(0, Metrics.getCounter(Metrics.ITEMS));
+        //getThreadAllocatedBytes itself may allocate a few bytes
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static void callAll(int times) {
+        for (int i = 0; i < times; i++) {
+            long start = Metrics.startTimer();
+            Metrics.stopTimer(Metrics.PARSE, start);
+            Metrics.record(Metrics.DOWNLOAD, i);
+            Metrics.count(Metrics.ITEMS, 1);
+        }
+    }
+}
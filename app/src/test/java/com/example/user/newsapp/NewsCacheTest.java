@@ -0,0 +1,133 @@
+package com.example.user.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the memory and disk layers of {@link NewsCache}.
+ */
+public class NewsCacheTest {
+
+    private static final String URL = "https://content.guardianapis.com/search?q=news";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void put_makesThePageAvailableFromMemory() throws Exception {
+        NewsCache cache = new NewsCache(new DiskLruCache(mFolder.getRoot(), 1024 * 1024));
+        NewsPage page = page();
+
+        assertNull(cache.peek(URL));
+        cache.put(URL, page);
+
+        assertSame(page, cache.peek(URL).getPage());
+    }
+
+    @Test
+    public void get_readsFromDiskOnceAndThenFromMemory() throws Exception {
+        new NewsCache(new DiskLruCache(mFolder.getRoot(), 1024 * 1024)).put(URL, page());
+
+        //A new process only has the disk
+        NewsCache cache = new NewsCache(new DiskLruCache(mFolder.getRoot(), 1024 * 1024));
+        assertNull(cache.peek(URL));
+        NewsCache.Entry entry = cache.get(URL);
+
+        assertEquals("Title", entry.getPage().getNews().get(0).getTitle());
+        assertEquals(NewsDates.parse("2017-06-17T10:00:00Z"), entry.getPage().getNews().get(0).getPublishedAt());
+        assertSame(entry, cache.peek(URL));
+    }
+
+    @Test
+    public void get_readsTheNewestNewsOfEveryUrl() throws Exception {
+        long[] newestByUrl = {NewsDates.parse("2017-06-17T10:00:00Z"), News.NO_DATE};
+        new NewsCache(new DiskLruCache(mFolder.getRoot(), 1024 * 1024)).put(URL, page(), newestByUrl);
+        new NewsCache(new DiskLruCache(mFolder.getRoot(), 1024 * 1024)).put(URL + "&page=2", page());
+
+        NewsCache cache = new NewsCache(new DiskLruCache(mFolder.getRoot(), 1024 * 1024));
+
+        assertArrayEquals(newestByUrl, cache.get(URL).getNewestByUrl());
+        assertNull(cache.get(URL + "&page=2").getNewestByUrl());
+    }
+
+    @Test
+    public void getSearchIndex_findsTheNewsOnDisk() throws Exception {
+        new NewsCache(new DiskLruCache(mFolder.getRoot(), 1024 * 1024)).put(URL, page());
+
+        NewsCache cache = new NewsCache(new DiskLruCache(mFolder.getRoot(), 1024 * 1024));
+
+        assertEquals(1, cache.getSearchIndex().search("tit", 10).size());
+    }
+
+    @Test
+    public void trimMemory_dropsTheSearchIndexUntilTheNextSearch() throws Exception {
+        NewsCache cache = new NewsCache(new DiskLruCache(mFolder.getRoot(), 1024 * 1024));
+        cache.put(URL, page());
+        NewsSearchIndex index = cache.getSearchIndex();
+        assertEquals(1, index.size());
+
+        cache.trimMemory(0);
+        assertEquals(0, index.size());
+
+        assertEquals(1, cache.getSearchIndex().search("title", 10).size());
+    }
+
+    @Test
+    public void trimMemory_keepsTheSearchIndexWhileItFitsTheKeptBytes() throws Exception {
+        NewsCache cache = new NewsCache(new DiskLruCache(mFolder.getRoot(), 1024 * 1024));
+        cache.put(URL, page());
+        NewsSearchIndex index = cache.getSearchIndex();
+        long indexBytes = index.getMemoryBytes();
+        assertEquals(cache.getMemoryBytes(), indexBytes + CacheManager.sizeOf(cache.peek(URL).getPage()));
+
+        //The entries are trimmed first
+        cache.trimMemory(indexBytes);
+
+        assertNull(cache.peek(URL));
+        assertEquals(1, index.size());
+        assertEquals(indexBytes, cache.getMemoryBytes());
+    }
+
+    @Test
+    public void put_removesTheNewsOfEvictedEntriesFromTheSearchIndex() throws Exception {
+        //Room for one entry on disk
+        NewsCache cache = new NewsCache(new DiskLruCache(mFolder.getRoot(), 200));
+        cache.put(URL, page());
+        assertEquals(1, cache.getSearchIndex().search("title", 10).size());
+
+        cache.put(URL + "&page=2", new NewsPage(Arrays.asList(
+                new News("Other", "World news", "https://www.theguardian.com/b", "2017-06-17T10:00:00Z")), 2, 5));
+
+        assertTrue(cache.getSearchIndex().search("title", 10).isEmpty());
+        assertEquals(1, cache.getSearchIndex().search("other", 10).size());
+        assertEquals(1, cache.getSearchIndex().size());
+    }
+
+    @Test
+    public void trimMemory_dropsFromMemoryButKeepsTheDisk() throws Exception {
+        NewsCache cache = new NewsCache(new DiskLruCache(mFolder.getRoot(), 1024 * 1024));
+        cache.put(URL, page());
+        assertTrue(cache.getMemoryBytes() > 0);
+
+        cache.trimMemory(0);
+
+        assertEquals(0, cache.getMemoryBytes());
+        assertNull(cache.peek(URL));
+        assertEquals(1, cache.getStats().getEvictions());
+        assertEquals("Title", cache.get(URL).getPage().getNews().get(0).getTitle());
+        //The peek and the lookup of get() missed the memory
+        assertEquals(2, cache.getStats().getMisses());
+        assertSame(cache.get(URL), cache.peek(URL));
+        assertEquals(2, cache.getStats().getHits());
+    }
+
+    private static NewsPage page() {
+        return new NewsPage(Arrays.asList(
+                new News("Title", "World news", "https://www.theguardian.com/a", "2017-06-17T10:00:00Z")), 1, 5);
+    }
+}
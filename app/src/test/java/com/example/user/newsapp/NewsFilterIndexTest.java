@@ -0,0 +1,112 @@
+package com.example.user.newsapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the filters and sort orders of {@link NewsFilterIndex}.
+ */
+public class NewsFilterIndexTest {
+
+    private NewsFilterIndex mIndex;
+
+    @Before
+    public void setUp() {
+        //In the order of the list, with a dropped page in the middle
+        mIndex = new NewsFilterIndex(Arrays.asList(
+                news("Climate talks stall in Bonn", "World news", "2017-06-16T10:00:00Z"),
+                news("Arctic sea ice hits record low", "Environment", "2017-06-14T10:00:00Z"),
+                null,
+                news("Why the climate matters for the election", "Politics", "2017-06-10T10:00:00Z"),
+                news("Climate change: what the Arctic tells us", "Environment", "2017-06-15T10:00:00Z"),
+                news("Election results", "Politics", "2017-06-09T10:00:00Z")));
+    }
+
+    @Test
+    public void apply_withoutCriteriaSortsNewestFirst() {
+        assertEquals(5, mIndex.size());
+        assertEquals(Arrays.asList("Climate talks stall in Bonn", "Climate change: what the Arctic tells us",
+                "Arctic sea ice hits record low", "Why the climate matters for the election", "Election results"),
+                titles(mIndex.apply(filter(null, NewsFilter.FROM_ANY, NewsFilter.TO_ANY, null, NewsFilter.SORT_NEWEST))));
+    }
+
+    @Test
+    public void apply_filtersBySection() {
+        assertEquals(Arrays.asList("Why the climate matters for the election", "Election results"),
+                titles(mIndex.apply(filter("Politics", NewsFilter.FROM_ANY, NewsFilter.TO_ANY, null, NewsFilter.SORT_NEWEST))));
+        assertTrue(mIndex.apply(filter("Sport", NewsFilter.FROM_ANY, NewsFilter.TO_ANY, null, NewsFilter.SORT_NEWEST)).isEmpty());
+        assertEquals(Arrays.asList("Environment", "Politics", "World news"), mIndex.getSections());
+    }
+
+    @Test
+    public void apply_filtersByDateRangeIncludingTheEnds() {
+        long from = NewsDates.parse("2017-06-10T10:00:00Z");
+        long to = NewsDates.parse("2017-06-15T10:00:00Z");
+
+        assertEquals(Arrays.asList("Climate change: what the Arctic tells us", "Arctic sea ice hits record low",
+                "Why the climate matters for the election"),
+                titles(mIndex.apply(filter(null, from, to, null, NewsFilter.SORT_NEWEST))));
+        assertEquals(Arrays.asList("Arctic sea ice hits record low", "Climate change: what the Arctic tells us"),
+                titles(mIndex.apply(filter("Environment", from, NewsFilter.TO_ANY, null, NewsFilter.SORT_OLDEST))));
+    }
+
+    @Test
+    public void apply_filtersByAllWordsOfTheKeyword() {
+        assertEquals(3, mIndex.apply(filter(null, NewsFilter.FROM_ANY, NewsFilter.TO_ANY, "CLIM", NewsFilter.SORT_NEWEST)).size());
+        assertEquals(Arrays.asList("Climate change: what the Arctic tells us"),
+                titles(mIndex.apply(filter(null, NewsFilter.FROM_ANY, NewsFilter.TO_ANY, "arctic climate", NewsFilter.SORT_NEWEST))));
+        assertTrue(mIndex.apply(filter(null, NewsFilter.FROM_ANY, NewsFilter.TO_ANY, "climate football", NewsFilter.SORT_NEWEST)).isEmpty());
+    }
+
+    @Test
+    public void apply_sortsBySectionThenNewest() {
+        assertEquals(Arrays.asList("Climate change: what the Arctic tells us", "Arctic sea ice hits record low",
+                "Why the climate matters for the election", "Election results", "Climate talks stall in Bonn"),
+                titles(mIndex.apply(filter(null, NewsFilter.FROM_ANY, NewsFilter.TO_ANY, null, NewsFilter.SORT_SECTION))));
+        assertEquals(Arrays.asList("Climate change: what the Arctic tells us",
+                "Why the climate matters for the election", "Climate talks stall in Bonn"),
+                titles(mIndex.apply(filter(null, NewsFilter.FROM_ANY, NewsFilter.TO_ANY, "climate", NewsFilter.SORT_SECTION))));
+    }
+
+    @Test
+    public void apply_oldestFirstKeepsUndatedNewsLast() {
+        NewsFilterIndex index = new NewsFilterIndex(Arrays.asList(
+                new News("Undated", "Politics", "https://www.theguardian.com/undated", News.NO_DATE),
+                news("Older", "Politics", "2017-06-09T10:00:00Z"),
+                news("Newer", "Politics", "2017-06-10T10:00:00Z")));
+
+        assertEquals(Arrays.asList("Older", "Newer", "Undated"),
+                titles(index.apply(filter(null, NewsFilter.FROM_ANY, NewsFilter.TO_ANY, null, NewsFilter.SORT_OLDEST))));
+        //A date range leaves out the news without a date
+        assertEquals(Arrays.asList("Newer"), titles(index.apply(filter(null,
+                NewsDates.parse("2017-06-10T00:00:00Z"), NewsFilter.TO_ANY, null, NewsFilter.SORT_OLDEST))));
+    }
+
+    @Test
+    public void isEmpty_onlyWithoutCriteriaAndTheDefaultSort() {
+        assertTrue(filter(null, NewsFilter.FROM_ANY, NewsFilter.TO_ANY, "  ", NewsFilter.SORT_NEWEST).isEmpty());
+        assertFalse(filter(null, NewsFilter.FROM_ANY, NewsFilter.TO_ANY, null, NewsFilter.SORT_OLDEST).isEmpty());
+    }
+
+    private static NewsFilter filter(String section, long from, long to, String keyword, int sort) {
+        return new NewsFilter(section, from, to, keyword, sort);
+    }
+
+    private static News news(String title, String section, String date) {
+        return new News(title, section, "https://www.theguardian.com/" + title.hashCode(), date);
+    }
+
+    private static List<String> titles(List<News> news) {
+        List<String> titles = new ArrayList<>();
+        for (News item : news) {
+            titles.add(item.getTitle());
+        }
+        return titles;
+    }
+}
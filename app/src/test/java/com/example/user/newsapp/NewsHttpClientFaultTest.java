@@ -0,0 +1,228 @@
+package com.example.user.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs {@link NewsHttpClient} against a local server which injects faults: error responses,
+ * Retry-After answers, dropped connections and slow responses. Every request takes the next
+ * fault of the queue, when the queue is empty it is answered normally.
+ */
+public class NewsHttpClientFaultTest {
+
+    //Faults of the server
+    private static final String DROP = "drop";
+    private static final String SLOW = "slow";
+
+    //A slow response comes after the shortest read timeout
+    private static final long SLOW_MILLIS = RetryPolicy.MIN_READ_TIMEOUT + 500;
+
+    private HttpServer mServer;
+
+    private byte[] mFixture;
+
+    private final ConcurrentLinkedQueue<String> mFaults = new ConcurrentLinkedQueue<>();
+
+    //Number of requests the server received
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    private long mNow = 1000000;
+
+    private final Clock mClock = new Clock() {
+        @Override
+        public long now() {
+            return mNow;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = readFixture("guardian_search_10.json");
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mRequests.incrementAndGet();
+                String fault = mFaults.poll();
+                if (DROP.equals(fault)) {
+                    //The connection closes before the response, like a lost mobile connection
+                    exchange.close();
+                    return;
+                }
+                if (SLOW.equals(fault)) {
+                    try {
+                        Thread.sleep(SLOW_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else if (fault != null) {
+                    //"status" or "status:retry-after"
+                    String[] parts = fault.split(":");
+                    if (parts.length > 1) {
+                        exchange.getResponseHeaders().set("Retry-After", parts[1]);
+                    }
+                    exchange.sendResponseHeaders(Integer.parseInt(parts[0]), -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.sendResponseHeaders(200, mFixture.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(mFixture);
+                output.close();
+            }
+        });
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void fetch_retriesServerErrors() throws Exception {
+        mFaults.add("503");
+        mFaults.add("500");
+
+        NewsPage page = newClient(new CircuitBreaker()).fetch(searchUrl());
+
+        assertEquals(10, page.getNews().size());
+        assertEquals(3, mRequests.get());
+    }
+
+    @Test
+    public void fetch_retriesDroppedConnections() throws Exception {
+        mFaults.add(DROP);
+
+        NewsPage page = newClient(new CircuitBreaker()).fetch(searchUrl());
+
+        assertEquals(10, page.getNews().size());
+    }
+
+    @Test
+    public void fetch_givesUpAfterTheLastAttempt() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mFaults.add("502");
+        }
+
+        assertNull(newClient(new CircuitBreaker()).fetch(searchUrl()));
+        assertEquals(3, mRequests.get());
+    }
+
+    @Test
+    public void fetch_doesNotRetryClientErrors() throws Exception {
+        mFaults.add("404");
+
+        assertNull(newClient(new CircuitBreaker()).fetch(searchUrl()));
+        assertEquals(1, mRequests.get());
+    }
+
+    @Test
+    public void fetch_waitsForRetryAfter() throws Exception {
+        mFaults.add("429:1");
+        long start = System.currentTimeMillis();
+
+        NewsPage page = newClient(new CircuitBreaker()).fetch(searchUrl());
+
+        assertEquals(10, page.getNews().size());
+        assertTrue(System.currentTimeMillis() - start >= 1000);
+        assertEquals(2, mRequests.get());
+    }
+
+    @Test
+    public void fetch_longRetryAfterStopsTheRequests() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(mClock, 5, 1000, 5000);
+        NewsHttpClient client = newClient(breaker);
+        mFaults.add("429:120");
+
+        assertNull(client.fetch(searchUrl()));
+        assertEquals(1, mRequests.get());
+
+        //Nothing is sent before the time the server asked for
+        assertNull(client.fetch(searchUrl()));
+        assertEquals(1, mRequests.get());
+        mNow += 120 * 1000;
+        assertNotNull(client.fetch(searchUrl()));
+        assertEquals(2, mRequests.get());
+    }
+
+    @Test
+    public void fetch_openCircuitSendsNoRequests() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(mClock, 3, 1000, 5000);
+        NewsHttpClient client = newClient(breaker);
+        for (int i = 0; i < 3; i++) {
+            mFaults.add("503");
+        }
+
+        assertNull(client.fetch(searchUrl()));
+        assertEquals(CircuitBreaker.STATE_OPEN, breaker.getState());
+        int requests = mRequests.get();
+        for (int i = 0; i < 10; i++) {
+            assertNull(client.fetch(searchUrl()));
+        }
+        assertEquals(requests, mRequests.get());
+
+        //After the open time a trial request is sent, it closes the circuit
+        mNow += 1000;
+        assertEquals(10, client.fetch(searchUrl()).getNews().size());
+        assertEquals(CircuitBreaker.STATE_CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void fetch_slowResponseTimesOutAndIsRetried() throws Exception {
+        RetryPolicy policy = new RetryPolicy(2, 10, 10, 1000, new Random(1));
+        //The server answered fast so far, so the read timeout is the minimum
+        for (int i = 0; i < RetryPolicy.MIN_SAMPLES; i++) {
+            policy.recordConnectTime(1);
+            policy.recordFirstByteTime(1);
+        }
+        assertEquals(RetryPolicy.MIN_READ_TIMEOUT, policy.getReadTimeout(1));
+        mFaults.add(SLOW);
+
+        NewsPage page = new NewsHttpClient(policy, new CircuitBreaker()).fetch(searchUrl());
+
+        //The retry waits twice as long and gets the answer of the server
+        assertEquals(10, page.getNews().size());
+        assertEquals(2, mRequests.get());
+    }
+
+    private NewsHttpClient newClient(CircuitBreaker breaker) {
+        //Short backoffs, the Retry-After of the server is still honoured
+        return new NewsHttpClient(new RetryPolicy(3, 10, 40, 2000, new Random(1)), breaker);
+    }
+
+    private URL searchUrl() throws IOException {
+        return new URL("http://127.0.0.1:" + mServer.getAddress().getPort() + "/search?q=news");
+    }
+
+    private byte[] readFixture(String name) throws IOException {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream(name);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = stream.read(buffer)) != -1) {
+            output.write(buffer, 0, count);
+        }
+        stream.close();
+        return output.toByteArray();
+    }
+}
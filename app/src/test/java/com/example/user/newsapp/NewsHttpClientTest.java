@@ -0,0 +1,176 @@
+package com.example.user.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs {@link NewsHttpClient} against a local mock HTTP server.
+ */
+public class NewsHttpClientTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    private HttpServer mServer;
+
+    private byte[] mFixture;
+
+    //Values seen by the server, one per request
+    private final List<String> mIfNoneMatch = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Integer> mClientPorts = Collections.synchronizedList(new ArrayList<Integer>());
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = readFixture("guardian_search_10.json");
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                mIfNoneMatch.add(ifNoneMatch);
+                mClientPorts.add(exchange.getRemoteAddress().getPort());
+                //Responses of the "uncached" query have no validators
+                boolean validated = !exchange.getRequestURI().getQuery().contains("uncached");
+                if (validated) {
+                    exchange.getResponseHeaders().set("ETag", ETAG);
+                }
+                if (validated && ETAG.equals(ifNoneMatch)) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                byte[] body = mFixture;
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    body = gzip(mFixture);
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(body);
+                output.close();
+            }
+        });
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void fetch_recordsTheStagesInTheMetrics() throws Exception {
+        Metrics.reset();
+        Metrics.setEnabled(true);
+        try {
+            NewsPage page = new NewsHttpClient().fetch(new URL(searchUrl() + "&uncached"));
+
+            assertEquals(1, Metrics.getSampleCount(Metrics.CONNECT));
+            assertEquals(1, Metrics.getSampleCount(Metrics.FIRST_BYTE));
+            assertEquals(1, Metrics.getSampleCount(Metrics.DOWNLOAD));
+            assertEquals(1, Metrics.getSampleCount(Metrics.PARSE));
+            assertEquals(1, Metrics.getCounter(Metrics.REQUESTS));
+            assertEquals(page.getNews().size(), Metrics.getCounter(Metrics.ITEMS));
+            //The url has no show-fields, like the queries of the lean profile
+            assertTrue(Metrics.getCounter(Metrics.BYTES_LEAN) > 0);
+            assertEquals(0, Metrics.getCounter(Metrics.BYTES_STANDARD));
+        } finally {
+            Metrics.setEnabled(false);
+            Metrics.reset();
+        }
+    }
+
+    @Test
+    public void fetch_decompressesGzipAndCountsBytes() throws Exception {
+        NewsHttpClient client = new NewsHttpClient();
+
+        List<News> news = client.fetch(searchUrl()).getNews();
+
+        assertEquals(10, news.size());
+        assertEquals(mFixture.length, client.getBytesDecoded());
+        assertTrue(client.getBytesReceived() > 0);
+        assertTrue(client.getBytesReceived() < client.getBytesDecoded());
+    }
+
+    @Test
+    public void fetch_notModifiedReturnsPreviousNews() throws Exception {
+        NewsHttpClient client = new NewsHttpClient();
+
+        NewsPage first = client.fetch(searchUrl());
+        long bytesAfterFirst = client.getBytesReceived();
+        NewsPage second = client.fetch(searchUrl());
+
+        assertNull(mIfNoneMatch.get(0));
+        assertEquals(ETAG, mIfNoneMatch.get(1));
+        assertEquals(1, client.getNotModifiedCount());
+        assertEquals(bytesAfterFirst, client.getBytesReceived());
+        assertEquals(first.getNews().size(), second.getNews().size());
+        assertEquals(first.getNews().get(0).getUrl(), second.getNews().get(0).getUrl());
+        assertEquals(first.getPages(), second.getPages());
+    }
+
+    @Test
+    public void fetch_reusesConnection() throws Exception {
+        NewsHttpClient client = new NewsHttpClient();
+
+        URL url = new URL(searchUrl() + "&uncached");
+        client.fetch(url);
+        client.fetch(url);
+        client.fetch(url);
+
+        assertEquals(3, client.getBytesDecoded() / mFixture.length);
+        assertEquals(mClientPorts.get(0), mClientPorts.get(1));
+        assertEquals(mClientPorts.get(1), mClientPorts.get(2));
+    }
+
+    @Test
+    public void fetch_errorResponseReturnsNull() throws Exception {
+        NewsHttpClient client = new NewsHttpClient();
+
+        URL missing = new URL("http://127.0.0.1:" + mServer.getAddress().getPort() + "/missing");
+
+        assertNull(client.fetch(missing));
+    }
+
+    private URL searchUrl() throws IOException {
+        return new URL("http://127.0.0.1:" + mServer.getAddress().getPort() + "/search?q=news");
+    }
+
+    private byte[] readFixture(String name) throws IOException {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream(name);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = stream.read(buffer)) != -1) {
+            output.write(buffer, 0, count);
+        }
+        stream.close();
+        return output.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream output = new GZIPOutputStream(bytes);
+        output.write(data);
+        output.close();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.user.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the streaming {@link NewsJsonParser} with the JSONObject based
+ * {@link QueryUtils#extractDataFromJson(String)} on recorded Guardian responses.
+ */
+public class NewsJsonParserTest {
+
+    @Test
+    public void parse_matchesExtractDataFromJson() throws Exception {
+        assertSameAsReference("guardian_search_10.json", 10);
+    }
+
+    @Test
+    public void parse_readsPagingInformation() throws Exception {
+        NewsPage page = NewsJsonParser.parse(openFixture("guardian_search_10.json"));
+
+        assertEquals(1, page.getCurrentPage());
+        assertEquals(3876, page.getPages());
+        assertTrue(page.hasNextPage());
+    }
+
+    @Test
+    public void parse_missingFieldsAreNull() throws Exception {
+        List<News> news = assertSameAsReference("guardian_search_missing_fields.json", 4);
+
+        assertNull(news.get(0).getSection());
+        assertNull(news.get(1).getTitle());
+        assertNull(news.get(2).getUrl());
+        assertNull(news.get(2).getDate());
+        assertEquals("2017-06-13", news.get(3).getDate());
+        //show-fields=thumbnail adds a "fields" object, only the thumbnail of it is kept
+        assertNull(news.get(0).getThumbnailUrl());
+        assertEquals("https://media.guim.co.uk/a.jpg", news.get(3).getThumbnailUrl());
+    }
+
+    @Test
+    public void parse_explicitNullIsTreatedAsMissing() throws Exception {
+        String json = "{\"response\":{\"results\":[{\"webTitle\":null,\"sectionName\":\"Sport\"}]}}";
+
+        List<News> news = NewsJsonParser.parse(toStream(json)).getNews();
+
+        assertEquals(1, news.size());
+        assertNull(news.get(0).getTitle());
+        assertEquals("Sport", news.get(0).getSection());
+    }
+
+    @Test
+    public void parse_emitsNewsParsedBeforeMalformedJson() throws Exception {
+        String json = "{\"response\":{\"results\":[{\"webTitle\":\"First\"},{\"webTitle\":";
+        final List<News> news = new ArrayList<>();
+
+        try {
+            NewsJsonParser.parse(toStream(json), new NewsJsonParser.OnNewsParsedListener() {
+                @Override
+                public void onNewsParsed(News item) {
+                    news.add(item);
+                }
+
+                @Override
+                public void onPageInfo(int currentPage, int pages) {
+                }
+            });
+            fail("Malformed JSON should throw an IOException");
+        } catch (IOException expected) {
+            assertEquals(1, news.size());
+            assertEquals("First", news.get(0).getTitle());
+        }
+    }
+
+    @Test
+    public void parse_nullStreamReturnsNull() throws Exception {
+        assertNull(NewsJsonParser.parse(null));
+    }
+
+    @Test
+    public void parseArticle_readsTheFieldsOfTheContent() throws Exception {
+        String json = "{\"response\":{\"status\":\"ok\",\"content\":{\"id\":\"world/a\","
+                + "\"webTitle\":\"Title\",\"webUrl\":\"https://www.theguardian.com/world/a\","
+                + "\"fields\":{\"thumbnail\":\"https://media.guim.co.uk/a.jpg\","
+                + "\"trailText\":\"<strong>Trail</strong>\",\"body\":\"<p>First</p><p>Second</p>\"}}}}";
+
+        Article article = NewsJsonParser.parseArticle(toStream(json));
+
+        assertEquals("Title", article.getTitle());
+        assertEquals("https://www.theguardian.com/world/a", article.getUrl());
+        assertEquals("<strong>Trail</strong>", article.getTrailText());
+        assertEquals("<p>First</p><p>Second</p>", article.getBody());
+    }
+
+    @Test
+    public void parseArticle_responseWithoutContentReturnsNull() throws Exception {
+        String json = "{\"response\":{\"status\":\"error\",\"message\":\"The requested resource could not be found.\"}}";
+
+        assertNull(NewsJsonParser.parseArticle(toStream(json)));
+    }
+
+    private List<News> assertSameAsReference(String fixture, int expectedSize) throws IOException {
+        List<News> expected = QueryUtils.extractDataFromJson(
+                QueryUtils.readFromStream(openFixture(fixture)));
+        List<News> actual = NewsJsonParser.parse(openFixture(fixture)).getNews();
+
+        assertEquals(expectedSize, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTitle(), actual.get(i).getTitle());
+            assertEquals(expected.get(i).getSection(), actual.get(i).getSection());
+            assertEquals(expected.get(i).getUrl(), actual.get(i).getUrl());
+            assertEquals(expected.get(i).getDate(), actual.get(i).getDate());
+        }
+        return actual;
+    }
+
+    private InputStream openFixture(String name) {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream(name);
+        assertNotNull("Missing fixture " + name, stream);
+        return stream;
+    }
+
+    private static InputStream toStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8")));
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.user.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the paging and the window of {@link NewsPageStore}.
+ */
+public class NewsPageStoreTest {
+
+    private static final int PAGE_SIZE = 10;
+
+    @Test
+    public void putPage_appendsPagesInOrder() {
+        NewsPageStore store = new NewsPageStore(1);
+
+        assertTrue(store.putPage(page(1, 5)));
+        assertTrue(store.putPage(page(2, 5)));
+        assertFalse(store.putPage(page(4, 5)));
+
+        assertEquals(2 * PAGE_SIZE, store.size());
+        assertEquals("1-0", store.get(0).getTitle());
+        assertEquals("2-3", store.get(13).getTitle());
+        assertTrue(store.hasMorePages());
+        assertEquals(3, store.getNextPage());
+    }
+
+    @Test
+    public void onViewportChanged_dropsPagesOutsideTheWindow() {
+        NewsPageStore store = new NewsPageStore(1);
+        for (int i = 1; i <= 5; i++) {
+            store.putPage(page(i, 5));
+        }
+
+        //Page 5 is visible, so pages 4 and 5 are kept
+        assertEquals(0, store.onViewportChanged(42, 48));
+
+        assertEquals(5 * PAGE_SIZE, store.size());
+        assertNull(store.get(0));
+        assertNull(store.get(25));
+        assertNotNull(store.get(35));
+        assertNotNull(store.get(45));
+    }
+
+    @Test
+    public void onViewportChanged_returnsDroppedPageToLoadAgain() {
+        NewsPageStore store = new NewsPageStore(0);
+        for (int i = 1; i <= 3; i++) {
+            store.putPage(page(i, 3));
+        }
+        store.onViewportChanged(25, 28);
+        assertEquals(1, store.getFirstDroppedPage());
+
+        //Scrolling back to page 1
+        assertEquals(1, store.onViewportChanged(2, 8));
+        store.putPage(page(1, 3));
+
+        assertEquals("1-2", store.get(2).getTitle());
+        assertNull(store.get(25));
+    }
+
+    @Test
+    public void putPage_removesTheFollowingPagesWhenTheFirstPageChanges() {
+        NewsPageStore store = new NewsPageStore(1);
+        for (int i = 1; i <= 3; i++) {
+            store.putPage(page(i, 3));
+        }
+        //The same news again keep the following pages
+        store.putPage(page(1, 3));
+        assertEquals(3, store.getLoadedPages());
+
+        List<News> news = new ArrayList<>(page(1, 3).getNews());
+        news.add(0, new News("New", "World news", "https://example.com/new", "2017-06-18"));
+        news.remove(news.size() - 1);
+        store.putPage(new NewsPage(news, 1, 3));
+
+        assertEquals(1, store.getLoadedPages());
+        assertEquals(PAGE_SIZE, store.size());
+        assertEquals(2, store.getNextPage());
+    }
+
+    private static NewsPage page(int number, int pages) {
+        List<News> news = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            news.add(new News(number + "-" + i, "World news", "https://example.com/" + number + "/" + i, "2017-06-17"));
+        }
+        return new NewsPage(news, number, pages);
+    }
+}
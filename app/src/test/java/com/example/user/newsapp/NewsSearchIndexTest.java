@@ -0,0 +1,124 @@
+package com.example.user.newsapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the matching and the ranking of {@link NewsSearchIndex}.
+ */
+public class NewsSearchIndexTest {
+
+    private NewsSearchIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mIndex = new NewsSearchIndex();
+        mIndex.addAll(Arrays.asList(
+                news("Arctic sea ice hits record low", "Environment", "2017-06-14T10:00:00Z"),
+                news("Climate change: what the Arctic tells us", "Environment", "2017-06-15T10:00:00Z"),
+                news("Climate talks stall in Bonn", "World news", "2017-06-16T10:00:00Z"),
+                news("Election results", "Politics", "2017-06-09T10:00:00Z"),
+                news("Why the climate matters for the election", "Politics", "2017-06-10T10:00:00Z")));
+    }
+
+    @Test
+    public void search_matchesAllWordsLikeConcatenateQuery() {
+        List<String> titles = titles(mIndex.search("climate arctic", 10));
+
+        assertEquals(Arrays.asList("Climate change: what the Arctic tells us"), titles);
+        assertEquals(titles, titles(mIndex.search(QueryUtils.concatenateQuery("climate arctic"), 10)));
+        assertTrue(mIndex.search("climate football", 10).isEmpty());
+    }
+
+    @Test
+    public void search_matchesPrefixesCaseInsensitive() {
+        assertEquals(3, mIndex.search("CLIM", 10).size());
+        assertEquals(2, mIndex.search("elect", 10).size());
+        assertEquals(2, mIndex.search("environ", 10).size());
+    }
+
+    @Test
+    public void search_ranksTitlesAndWholeWordsFirstThenNewest() {
+        mIndex.add(news("Politics of the day", "World news", "2017-06-20T10:00:00Z"));
+
+        List<String> titles = titles(mIndex.search("politics", 10));
+
+        //The title match first, then the section matches newest first
+        assertEquals(Arrays.asList("Politics of the day", "Why the climate matters for the election",
+                "Election results"), titles);
+        //Only whole words get the bonus, the newer news wins among prefix matches of the same weight
+        assertEquals("Climate talks stall in Bonn", mIndex.search("clim", 10).get(0).getTitle());
+        assertEquals(1, mIndex.search("climate", 1).size());
+    }
+
+    @Test
+    public void add_skipsNewsThatAreAlreadyIndexed() {
+        mIndex.add(news("Election results", "Politics", "2017-06-09T10:00:00Z"));
+
+        assertEquals(5, mIndex.size());
+        assertEquals(1, mIndex.search("results", 10).size());
+    }
+
+    @Test
+    public void remove_dropsTheNewsOfAnEntryUnlessAnotherRefersToThem() {
+        News shared = news("Arctic ice melts", "Environment", "2017-06-11T10:00:00Z");
+        mIndex.put("first", Arrays.asList(shared, news("Bonn summit ends", "World news", "2017-06-12T10:00:00Z")));
+        mIndex.put("second", Arrays.asList(shared));
+        assertEquals(7, mIndex.size());
+
+        mIndex.remove("first");
+
+        assertTrue(mIndex.search("bonn summit", 10).isEmpty());
+        assertEquals(Arrays.asList("Arctic ice melts"), titles(mIndex.search("melts", 10)));
+        mIndex.put("second", new ArrayList<News>());
+        assertTrue(mIndex.search("melts", 10).isEmpty());
+        assertEquals(5, mIndex.size());
+    }
+
+    @Test
+    public void put_compactsTheRemovedNews() {
+        for (int i = 0; i < 200; i++) {
+            mIndex.put("entry", Arrays.asList(news("Storm warning " + i, "World news", "2017-06-12T10:00:00Z")));
+        }
+
+        assertEquals(6, mIndex.size());
+        assertEquals(Arrays.asList("Storm warning 199"), titles(mIndex.search("storm", 10)));
+        //The news that were added for good are still found after the compactions
+        assertEquals(3, mIndex.search("clim", 10).size());
+        assertEquals("Climate talks stall in Bonn", mIndex.search("clim", 10).get(0).getTitle());
+    }
+
+    @Test
+    public void getMemoryBytes_followsTheIndexedNews() {
+        long bytes = mIndex.getMemoryBytes();
+        assertTrue(bytes > 0);
+
+        mIndex.put("entry", Arrays.asList(news("Storm warning", "World news", "2017-06-12T10:00:00Z")));
+        long withEntry = mIndex.getMemoryBytes();
+        assertTrue(withEntry > bytes);
+        //The postings of the removed news stay until the index is compacted
+        mIndex.remove("entry");
+        assertTrue(mIndex.getMemoryBytes() < withEntry);
+
+        mIndex.clear();
+        assertEquals(0, mIndex.getMemoryBytes());
+    }
+
+    private static News news(String title, String section, String date) {
+        return new News(title, section, "https://www.theguardian.com/" + title.hashCode(), date);
+    }
+
+    private static List<String> titles(List<News> news) {
+        List<String> titles = new ArrayList<>();
+        for (News item : news) {
+            titles.add(item.getTitle());
+        }
+        return titles;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.user.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link NewsSnapshot} restores the page it wrote and ignores other files.
+ */
+public class NewsSnapshotTest {
+
+    private static final String TOPICS = "football,politics";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void read_returnsThePageThatWasWritten() throws Exception {
+        File file = new File(mFolder.getRoot(), NewsSnapshot.FILE_NAME);
+        NewsPage page = new NewsPage(Arrays.asList(
+                new News("Title \u00e9\u4e16", "World news", "https://www.theguardian.com/a",
+                        NewsDates.parse("2017-06-17T10:00:00Z"), "https://media.guim.co.uk/a.jpg"),
+                new News("Second", "World news", "https://www.theguardian.com/b", News.NO_DATE),
+                new News(null, null, null, News.NO_DATE)), 1, 7);
+
+        NewsSnapshot.write(file, TOPICS, page);
+        NewsPage restored = NewsSnapshot.read(file, TOPICS);
+
+        assertEquals(1, restored.getCurrentPage());
+        assertEquals(7, restored.getPages());
+        assertEquals(3, restored.getNews().size());
+        News first = restored.getNews().get(0);
+        assertEquals("Title \u00e9\u4e16", first.getTitle());
+        assertEquals("World news", first.getSection());
+        assertEquals("https://www.theguardian.com/a", first.getUrl());
+        assertEquals(NewsDates.parse("2017-06-17T10:00:00Z"), first.getPublishedAt());
+        assertEquals("https://media.guim.co.uk/a.jpg", first.getThumbnailUrl());
+        assertEquals(News.NO_DATE, restored.getNews().get(1).getPublishedAt());
+        assertNull(restored.getNews().get(1).getThumbnailUrl());
+        assertNull(restored.getNews().get(2).getTitle());
+        assertNull(restored.getNews().get(2).getSection());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void read_ignoresTheSnapshotOfOtherTopics() throws Exception {
+        File file = new File(mFolder.getRoot(), NewsSnapshot.FILE_NAME);
+        NewsSnapshot.write(file, TOPICS, page(3));
+
+        assertNull(NewsSnapshot.read(file, "science"));
+        assertNull(NewsSnapshot.read(new File(mFolder.getRoot(), "missing"), TOPICS));
+    }
+
+    @Test
+    public void read_dropsDamagedAndOldFiles() throws Exception {
+        File file = new File(mFolder.getRoot(), NewsSnapshot.FILE_NAME);
+        byte[] data = NewsSnapshot.encode(TOPICS, page(3));
+
+        //Cut off like after a crash of a writer that did not rename
+        writeFile(file, Arrays.copyOf(data, data.length - 5));
+        assertNull(NewsSnapshot.read(file, TOPICS));
+        assertFalse(file.exists());
+
+        //A snapshot of another version
+        data[7]++;
+        writeFile(file, data);
+        assertNull(NewsSnapshot.read(file, TOPICS));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void encode_keepsOnlyTheTopOfTheList() throws Exception {
+        NewsPage restored = NewsSnapshot.decode(NewsSnapshot.encode(TOPICS, page(NewsSnapshot.MAX_NEWS + 10)), TOPICS);
+
+        assertEquals(NewsSnapshot.MAX_NEWS, restored.getNews().size());
+        assertEquals("Title 0", restored.getNews().get(0).getTitle());
+    }
+
+    private static NewsPage page(int count) {
+        List<News> news = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            news.add(new News("Title " + i, "Section " + (i % 3), "https://www.theguardian.com/" + i, i * 1000L));
+        }
+        return new NewsPage(news, 1, 5);
+    }
+
+    private static void writeFile(File file, byte[] data) throws Exception {
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(data);
+        } finally {
+            output.close();
+        }
+    }
+}
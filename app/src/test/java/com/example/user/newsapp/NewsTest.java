@@ -0,0 +1,87 @@
+package com.example.user.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the parsed publication times, the shared sections and the time ordering of {@link News}.
+ */
+public class NewsTest {
+
+    //2017-06-17T10:15:30Z
+    private static final long JUNE_17 = 1497694530000L;
+
+    @Test
+    public void parse_readsTheTimestampsOfTheApi() {
+        assertEquals(JUNE_17, NewsDates.parse("2017-06-17T10:15:30Z"));
+        assertEquals(JUNE_17 + 250, NewsDates.parse("2017-06-17T10:15:30.25Z"));
+        assertEquals(JUNE_17, NewsDates.parse("2017-06-17T12:15:30+02:00"));
+        assertEquals(JUNE_17 - (10 * 3600 + 15 * 60 + 30) * 1000L, NewsDates.parse("2017-06-17"));
+        assertEquals(0, NewsDates.parse("1970-01-01T00:00:00Z"));
+        assertEquals(951782400000L, NewsDates.parse("2000-02-29"));
+    }
+
+    @Test
+    public void parse_returnsNoDateForInvalidText() {
+        assertEquals(News.NO_DATE, NewsDates.parse(null));
+        assertEquals(News.NO_DATE, NewsDates.parse(""));
+        assertEquals(News.NO_DATE, NewsDates.parse("yesterday"));
+        assertEquals(News.NO_DATE, NewsDates.parse("2017-13-01"));
+        assertEquals(News.NO_DATE, NewsDates.parse("2017-06-17 10:15:30"));
+    }
+
+    @Test
+    public void getDate_formatsTheDayInUtc() {
+        assertEquals("2017-06-17", new News("a", "World news", "u", "2017-06-17T23:59:59Z").getDate());
+        assertEquals("2000-02-29", NewsDates.formatDate(NewsDates.parse("2000-02-29T00:00:00Z")));
+        assertEquals("1969-12-31", NewsDates.formatDate(-1));
+        assertNull(new News("a", "World news", "u", (String) null).getDate());
+    }
+
+    @Test
+    public void formatTimestamp_writesTheTimeOfTheApi() {
+        assertEquals("2017-06-17T10:15:30Z", NewsDates.formatTimestamp(NewsDates.parse("2017-06-17T10:15:30.25Z")));
+        assertEquals("1969-12-31T23:59:59Z", NewsDates.formatTimestamp(-1));
+        assertNull(NewsDates.formatTimestamp(News.NO_DATE));
+    }
+
+    @Test
+    public void sections_areShared() {
+        News first = new News("a", new String("World news"), "u1", JUNE_17);
+        News second = new News("b", new String("World news"), "u2", JUNE_17);
+
+        assertSame(first.getSection(), second.getSection());
+    }
+
+    @Test
+    public void publishedBetween_findsTheRangeOfTheOrderedNews() {
+        List<News> news = new ArrayList<>();
+        for (int hour = 0; hour < 10; hour++) {
+            news.add(new News("h" + hour, "World news", "u" + hour, JUNE_17 + hour * 3600000L));
+        }
+        news.add(new News("none", "World news", "u", News.NO_DATE));
+        Collections.shuffle(news);
+        Collections.sort(news, FeedAggregator.NEWEST_FIRST);
+        assertEquals("h9", news.get(0).getTitle());
+        assertEquals("none", news.get(10).getTitle());
+
+        List<News> range = FeedAggregator.publishedBetween(news, JUNE_17 + 3 * 3600000L, JUNE_17 + 5 * 3600000L);
+        assertEquals(Arrays.asList("h5", "h4", "h3"), titles(range));
+        assertTrue(FeedAggregator.publishedBetween(news, JUNE_17 + 20 * 3600000L, Long.MAX_VALUE).isEmpty());
+        assertEquals(11, FeedAggregator.publishedBetween(news, Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    private static List<String> titles(List<News> news) {
+        List<String> titles = new ArrayList<>();
+        for (News item : news) {
+            titles.add(item.getTitle());
+        }
+        return titles;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.user.newsapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the conditions, the backoff and the coalescing of {@link PrefetchPolicy}
+ * with a clock that only moves when the test moves it.
+ */
+public class PrefetchPolicyTest {
+
+    private static final long INTERVAL = 60 * 60 * 1000;
+    private static final long BACKOFF = 15 * 60 * 1000;
+    private static final long MAX_BACKOFF = 4 * BACKOFF;
+
+    private FakeClock mClock;
+
+    private PrefetchPolicy mPolicy;
+
+    private static class FakeClock implements Clock {
+
+        long mNow = 1000;
+
+        @Override
+        public long now() {
+            return mNow;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock();
+        mPolicy = new PrefetchPolicy(mClock, INTERVAL, BACKOFF, MAX_BACKOFF);
+    }
+
+    @Test
+    public void tryStart_runsOnlyConnectedAndUnmeteredOrCharging() {
+        assertFalse(mPolicy.tryStart(false, true, true));
+        assertFalse(mPolicy.tryStart(true, false, false));
+        assertTrue(mPolicy.tryStart(true, false, true));
+        mPolicy.onSuccess();
+        mClock.mNow += INTERVAL;
+        assertTrue(mPolicy.tryStart(true, true, false));
+    }
+
+    @Test
+    public void tryStart_skipsDuplicatesUntilTheIntervalPassed() {
+        assertTrue(mPolicy.tryStart(true, true, false));
+        //A second job while the first one runs
+        assertFalse(mPolicy.tryStart(true, true, false));
+        mPolicy.onSuccess();
+
+        mClock.mNow += INTERVAL - 1;
+        assertFalse(mPolicy.tryStart(true, true, false));
+        mClock.mNow += 1;
+        assertTrue(mPolicy.tryStart(true, true, false));
+    }
+
+    @Test
+    public void onFailure_backsOffExponentiallyUpToTheMaximum() {
+        long[] expected = {BACKOFF, 2 * BACKOFF, 4 * BACKOFF, MAX_BACKOFF, MAX_BACKOFF};
+        for (long backoff : expected) {
+            assertTrue(mPolicy.tryStart(true, true, false));
+            mPolicy.onFailure();
+            assertEquals(mClock.mNow + backoff, mPolicy.getNextRunAt());
+            mClock.mNow = mPolicy.getNextRunAt();
+        }
+        assertEquals(expected.length, mPolicy.getFailures());
+
+        //A success resets the backoff
+        assertTrue(mPolicy.tryStart(true, true, false));
+        mPolicy.onSuccess();
+        assertEquals(0, mPolicy.getFailures());
+        assertEquals(mClock.mNow + INTERVAL, mPolicy.getNextRunAt());
+    }
+
+    @Test
+    public void restore_continuesTheSavedState() {
+        mPolicy.restore(mClock.mNow + BACKOFF, 2);
+
+        assertFalse(mPolicy.tryStart(true, true, true));
+        mClock.mNow += BACKOFF;
+        assertTrue(mPolicy.tryStart(true, true, true));
+        mPolicy.onFailure();
+        assertEquals(mClock.mNow + 4 * BACKOFF, mPolicy.getNextRunAt());
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.user.newsapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the choice of the {@link QueryProfile} and that it is found again from the query URL.
+ */
+public class QueryProfileTest {
+
+    private static final String SEARCH = "https://content.guardianapis.com/search?q=news&page=1";
+
+    @Test
+    public void forNetwork_meteredNetworksGetTheLeanList() {
+        assertSame(QueryProfile.LEAN, QueryProfile.forNetwork(true));
+        assertSame(QueryProfile.STANDARD, QueryProfile.forNetwork(false));
+        assertTrue(QueryProfile.LEAN.getPageSize() < QueryProfile.STANDARD.getPageSize());
+        assertNull(QueryProfile.LEAN.getShowFields());
+    }
+
+    @Test
+    public void fromUrl_findsTheProfileOfTheShowFields() {
+        assertSame(QueryProfile.LEAN, QueryProfile.fromUrl(SEARCH + "&page-size=10&api-key=test"));
+        assertSame(QueryProfile.STANDARD, QueryProfile.fromUrl(SEARCH + "&show-fields=thumbnail&api-key=test"));
+        //Uri.Builder encodes the commas
+        assertSame(QueryProfile.RICH, QueryProfile.fromUrl(SEARCH + "&show-fields=thumbnail%2CtrailText%2Cbody"));
+        assertNull(QueryProfile.fromUrl(SEARCH + "&show-fields=byline"));
+    }
+}
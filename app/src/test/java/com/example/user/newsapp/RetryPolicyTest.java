@@ -0,0 +1,92 @@
+package com.example.user.newsapp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the timeouts, backoffs and Retry-After handling of {@link RetryPolicy}.
+ */
+public class RetryPolicyTest {
+
+    @Test
+    public void timeouts_followTheObservedLatency() {
+        RetryPolicy policy = new RetryPolicy();
+        //Without samples the old fixed timeouts are used
+        assertEquals(RetryPolicy.MAX_CONNECT_TIMEOUT, policy.getConnectTimeout(1));
+        assertEquals(RetryPolicy.MAX_READ_TIMEOUT, policy.getReadTimeout(1));
+
+        for (int i = 0; i < RetryPolicy.MIN_SAMPLES; i++) {
+            policy.recordConnectTime(100);
+            policy.recordFirstByteTime(1500);
+        }
+
+        //Three times the percentile, but not shorter than the minimum
+        assertEquals(RetryPolicy.MIN_CONNECT_TIMEOUT, policy.getConnectTimeout(1));
+        assertEquals(4500, policy.getReadTimeout(1));
+        //A retry waits twice as long, up to the maximum
+        assertEquals(9000, policy.getReadTimeout(2));
+        assertEquals(RetryPolicy.MAX_READ_TIMEOUT, policy.getReadTimeout(3));
+    }
+
+    @Test
+    public void timeouts_growBackWhenRequestsTimeOut() {
+        RetryPolicy policy = new RetryPolicy();
+        for (int i = 0; i < RetryPolicy.MIN_SAMPLES; i++) {
+            policy.recordFirstByteTime(200);
+        }
+        int fastTimeout = policy.getReadTimeout(1);
+
+        //A few timed out requests move the 95th percentile to the timeout
+        policy.recordFirstByteTime(fastTimeout);
+        policy.recordFirstByteTime(fastTimeout);
+
+        assertEquals(RetryPolicy.MIN_READ_TIMEOUT, fastTimeout);
+        assertEquals(3 * fastTimeout, policy.getReadTimeout(1));
+    }
+
+    @Test
+    public void getRetryDelay_growsWithJitter() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 1000, 5000, new Random(7));
+
+        for (int i = 0; i < 100; i++) {
+            long first = policy.getRetryDelay(1, RetryPolicy.NO_RETRY_AFTER);
+            long third = policy.getRetryDelay(3, RetryPolicy.NO_RETRY_AFTER);
+            long capped = policy.getRetryDelay(10, RetryPolicy.NO_RETRY_AFTER);
+            assertTrue(first >= 50 && first <= 100);
+            assertTrue(third >= 200 && third <= 400);
+            assertTrue(capped >= 500 && capped <= 1000);
+        }
+    }
+
+    @Test
+    public void getRetryDelay_honoursRetryAfter() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000, 5000, new Random(7));
+
+        assertEquals(3000, policy.getRetryDelay(1, 3000));
+        //The server asked to wait longer than a load can wait
+        assertEquals(RetryPolicy.NO_RETRY_AFTER, policy.getRetryDelay(1, 60000));
+    }
+
+    @Test
+    public void parseRetryAfter_readsSecondsAndDates() {
+        long now = NewsDates.parse("2015-10-21T07:27:30Z");
+
+        assertEquals(120000, RetryPolicy.parseRetryAfter("120", now));
+        assertEquals(30000, RetryPolicy.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT", now));
+        assertEquals(0, RetryPolicy.parseRetryAfter("Wed, 21 Oct 2015 07:00:00 GMT", now));
+        assertEquals(RetryPolicy.NO_RETRY_AFTER, RetryPolicy.parseRetryAfter(null, now));
+        assertEquals(RetryPolicy.NO_RETRY_AFTER, RetryPolicy.parseRetryAfter("soon", now));
+        assertEquals(RetryPolicy.NO_RETRY_AFTER, RetryPolicy.parseRetryAfter("-5", now));
+    }
+
+    @Test
+    public void isRetryable_onlyForErrorsThatMayGoAway() {
+        assertTrue(RetryPolicy.isRetryable(429));
+        assertTrue(RetryPolicy.isRetryable(503));
+        assertFalse(RetryPolicy.isRetryable(404));
+        assertFalse(RetryPolicy.isRetryable(401));
+    }
+}
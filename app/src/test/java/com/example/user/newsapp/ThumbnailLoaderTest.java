@@ -0,0 +1,147 @@
+package com.example.user.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the caches of {@link ThumbnailLoader} and how much it downsamples the images.
+ */
+public class ThumbnailLoaderTest {
+
+    private static final String URL = "https://i.guim.co.uk/img/media/a/500.jpg";
+
+    //Runs the deliveries on the calling thread, the tests have no main thread
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void loadData_missesTheMemoryThenDownloadsOnceAndReadsTheDisk() throws Exception {
+        CountingFetcher fetcher = new CountingFetcher();
+        ThumbnailLoader loader = newLoader(fetcher);
+
+        assertNull(loader.peek(URL));
+        assertArrayEquals(image(URL), loader.loadData(URL));
+        assertArrayEquals(image(URL), loader.loadData(URL));
+        //A new process only has the disk
+        assertArrayEquals(image(URL), newLoader(fetcher).loadData(URL));
+
+        assertEquals(Collections.singletonList(URL), fetcher.mFetched);
+        assertEquals(1, loader.getStats().getMisses());
+    }
+
+    @Test
+    public void loadData_doesNotStoreFailedDownloads() throws Exception {
+        CountingFetcher fetcher = new CountingFetcher();
+        ThumbnailLoader loader = newLoader(fetcher);
+
+        assertNull(loader.loadData(CountingFetcher.MISSING));
+        assertNull(loader.loadData(CountingFetcher.MISSING));
+
+        assertEquals(2, fetcher.mFetched.size());
+    }
+
+    @Test
+    public void loadData_skipsTheNetworkOnceCancelled() throws Exception {
+        CountingFetcher fetcher = new CountingFetcher();
+        ThumbnailLoader loader = newLoader(fetcher);
+        CancelSignal signal = new CancelSignal();
+        signal.cancel();
+
+        CancelSignal previous = CancelSignal.setCurrent(signal);
+        try {
+            assertNull(loader.loadData(URL));
+        } finally {
+            CancelSignal.setCurrent(previous);
+        }
+
+        assertTrue(fetcher.mFetched.isEmpty());
+    }
+
+    @Test
+    public void download_readsTheErrorBodySoTheConnectionIsReused() throws Exception {
+        final List<Integer> clientPorts = Collections.synchronizedList(new ArrayList<Integer>());
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                boolean missing = exchange.getRequestURI().getPath().contains("missing");
+                byte[] body = missing ? "Not found".getBytes("UTF-8") : image(URL);
+                exchange.sendResponseHeaders(missing ? 404 : 200, body.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(body);
+                output.close();
+            }
+        });
+        server.start();
+        try {
+            String base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+            assertNull(ThumbnailLoader.download(base + "/missing.jpg"));
+            assertArrayEquals(image(URL), ThumbnailLoader.download(base + "/500.jpg"));
+
+            assertEquals(clientPorts.get(0), clientPorts.get(1));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void calculateInSampleSize_keepsTheImageAtLeastAsBigAsTheView() {
+        //The Guardian thumbnails are 500x300
+        assertEquals(2, ThumbnailLoader.calculateInSampleSize(500, 300, 192, 144));
+        assertEquals(1, ThumbnailLoader.calculateInSampleSize(500, 300, 288, 216));
+        assertEquals(8, ThumbnailLoader.calculateInSampleSize(2000, 1200, 192, 144));
+        //Smaller images are never scaled up
+        assertEquals(1, ThumbnailLoader.calculateInSampleSize(100, 60, 192, 144));
+    }
+
+    private ThumbnailLoader newLoader(CountingFetcher fetcher) {
+        return new ThumbnailLoader(new DiskLruCache(mFolder.getRoot(), 1024 * 1024), fetcher, DIRECT,
+                1024 * 1024, 192, 144);
+    }
+
+    //The bytes that stand for the image file of the url
+    private static byte[] image(String url) {
+        byte[] data = Arrays.copyOf(url.getBytes(), 64);
+        data[63] = 42;
+        return data;
+    }
+
+    //Answers every url with an image, except the missing one, and remembers the fetched urls
+    private static final class CountingFetcher implements ThumbnailLoader.ThumbnailFetcher {
+
+        static final String MISSING = "https://i.guim.co.uk/img/media/missing.jpg";
+
+        final List<String> mFetched = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public byte[] fetchThumbnail(String url) throws IOException {
+            mFetched.add(url);
+            return MISSING.equals(url) ? null : image(url);
+        }
+    }
+}
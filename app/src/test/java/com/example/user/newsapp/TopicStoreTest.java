@@ -0,0 +1,101 @@
+package com.example.user.newsapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link TopicStore} keeps its news ordered, without duplicates and bounded.
+ */
+public class TopicStoreTest {
+
+    @Test
+    public void add_mergesNewsNewestFirst() {
+        TopicStore store = new TopicStore();
+        store.add(Arrays.asList(news("c", 30), news("a", 10)));
+        store.add(Arrays.asList(news("b", 20), news("d", 40)));
+
+        assertEquals(4, store.size());
+        assertEquals("d", store.get(0).getUrl());
+        assertEquals("c", store.get(1).getUrl());
+        assertEquals("b", store.get(2).getUrl());
+        assertEquals("a", store.get(3).getUrl());
+    }
+
+    @Test
+    public void add_replacesTheStoredVersionOfANews() {
+        TopicStore store = new TopicStore();
+        store.add(Arrays.asList(news("b", 20), news("a", 10)));
+        News refreshed = new News("New title", null, "a", 10);
+        store.add(Collections.singletonList(refreshed));
+
+        assertEquals(2, store.size());
+        assertSame(refreshed, store.get(1));
+    }
+
+    @Test
+    public void add_dropsTheOldestNewsOverTheLimit() {
+        TopicStore store = new TopicStore(3);
+        store.add(Arrays.asList(news("a", 10), news("b", 20), news("c", 30)));
+        int version = store.getVersion();
+        store.add(Collections.singletonList(news("d", 40)));
+
+        assertEquals(3, store.size());
+        assertEquals("d", store.get(0).getUrl());
+        assertEquals("b", store.get(2).getUrl());
+        assertEquals(version + 1, store.getVersion());
+        assertFalse(store.add(Collections.<News>emptyList()));
+        assertEquals(version + 1, store.getVersion());
+    }
+
+    @Test
+    public void add_returnsFalseWhenTheNewsAreStoredAlready() {
+        TopicStore store = new TopicStore();
+        store.add(Arrays.asList(news("b", 20), news("a", 10)));
+        News[] published = store.array();
+        int version = store.getVersion();
+
+        //A refresh with the same news, as new objects
+        assertFalse(store.add(Arrays.asList(news("b", 20), news("a", 10))));
+        assertSame(published, store.array());
+        assertEquals(version, store.getVersion());
+        assertTrue(store.add(Collections.singletonList(new News("New title", "Section", "a", 10))));
+    }
+
+    @Test
+    public void getMemoryBytes_followsTheStoredNews() {
+        TopicStore store = new TopicStore(3);
+        store.add(Arrays.asList(news("a", 10), news("b", 20)));
+        store.add(Arrays.asList(new News("A longer new title", "Section", "a", 10), news("c", 30), news("d", 40)));
+
+        long bytes = 0;
+        for (News item : store.array()) {
+            bytes += CacheManager.sizeOf(item);
+        }
+        assertEquals(3, store.size());
+        assertEquals(bytes, store.getMemoryBytes());
+
+        store.set(Collections.singletonList(news("e", 50)));
+        assertEquals(CacheManager.sizeOf(news("e", 50)), store.getMemoryBytes());
+    }
+
+    @Test
+    public void add_keepsThePublishedArray() {
+        TopicStore store = new TopicStore();
+        store.add(Collections.singletonList(news("a", 10)));
+        News[] published = store.array();
+        store.add(Collections.singletonList(news("b", 20)));
+
+        //A reader of the old array is not affected by the write
+        assertEquals(1, published.length);
+        assertEquals("a", published[0].getUrl());
+        assertEquals(2, store.size());
+    }
+
+    private static News news(String url, long publishedAt) {
+        return new News("Title " + url, "Section", url, publishedAt);
+    }
+}
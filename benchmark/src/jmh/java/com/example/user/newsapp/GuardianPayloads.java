@@ -0,0 +1,63 @@
+package com.example.user.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Guardian search responses of a given number of results for the benchmarks.
+ * <p>
+ * They are built from the recorded response with 10 results: its results are repeated
+ * until the wanted number is reached, every copy gets its own id and webUrl.
+ */
+final class GuardianPayloads {
+
+    //Recorded response of the unit tests
+    private static final String RECORDED_RESPONSE = "guardian_search_10.json";
+
+    private GuardianPayloads() {
+    }
+
+    /**
+     * Returns the UTF-8 bytes of a response with the number of results.
+     */
+    static byte[] withResults(int count) throws IOException, JSONException {
+        JSONObject recorded = new JSONObject(new String(readRecorded(), Charset.forName("UTF-8")));
+        JSONObject response = recorded.getJSONObject("response");
+        JSONArray recordedResults = response.getJSONArray("results");
+
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            JSONObject result = new JSONObject(recordedResults.getJSONObject(i % recordedResults.length()).toString());
+            result.put("id", result.getString("id") + "-" + i);
+            result.put("webUrl", result.getString("webUrl") + "-" + i);
+            results.put(result);
+        }
+        response.put("results", results);
+        response.put("pageSize", count);
+        return recorded.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    private static byte[] readRecorded() throws IOException {
+        InputStream stream = GuardianPayloads.class.getClassLoader().getResourceAsStream(RECORDED_RESPONSE);
+        if (stream == null) {
+            throw new IOException("Missing " + RECORDED_RESPONSE);
+        }
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = stream.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.user.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of building the query and the News objects of the list.
+ */
+@State(Scope.Benchmark)
+public class ListBuildingBenchmark {
+
+    @Param({"news", "climate change arctic sea ice"})
+    public String searchTopic;
+
+    //Values of a recorded result, News copies the references
+    private String mTitle = "Climate change: Arctic sea ice hits record low for June";
+    private String mSection = "Environment";
+    private String mUrl = "https://www.theguardian.com/environment/2017/jun/14/story-4";
+    private String mDate = "2017-06-14";
+
+    @Benchmark
+    public String concatenateQuery() {
+        return QueryUtils.concatenateQuery(searchTopic);
+    }
+
+    @Benchmark
+    public News newsConstruction() {
+        return new News(mTitle, mSection, mUrl, mDate);
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.user.newsapp;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the fetch path: many concurrent QueryUtils.fetchNewsPage calls, each a full
+ * request and streaming parse, against a local {@link ReplayServer}. Runs without network.
+ * <p>
+ * Run it with: ./gradlew :benchmark:loadTest -PloadTestArgs="--threads=16 --requests=2000"
+ * <pre>
+ * --threads=8          concurrent callers
+ * --requests=1000      requests in total, after --warmup requests which are not measured
+ * --warmup=100
+ * --results=20         results per response
+ * --latency-ms=0       latency of the server before every response
+ * --bandwidth=0        bytes per second of every response, 0 for no limit
+ * --error-rate=0       part of the requests which the server fails, from 0 to 1
+ * --gzip=true          compress the responses
+ * </pre>
+ * It prints the latency percentiles, the throughput and the stage timers of {@link Metrics}.
+ */
+public class LoadTest {
+
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    private final int mThreads;
+    private final int mRequests;
+    private final int mWarmup;
+    private final int mResults;
+    private final ReplayServer.Config mConfig;
+
+    /**
+     * Constructs a new {@link LoadTest} from the command line arguments.
+     */
+    LoadTest(String[] args) {
+        int threads = 8;
+        int requests = 1000;
+        int warmup = 100;
+        int results = 20;
+        ReplayServer.Config config = new ReplayServer.Config();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2 || !option[0].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --name=value: " + arg);
+            }
+            String value = option[1];
+            switch (option[0].substring(2)) {
+                case "threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "requests":
+                    requests = Integer.parseInt(value);
+                    break;
+                case "warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "results":
+                    results = Integer.parseInt(value);
+                    break;
+                case "latency-ms":
+                    config.latencyMillis(Long.parseLong(value));
+                    break;
+                case "bandwidth":
+                    config.bytesPerSecond(Long.parseLong(value));
+                    break;
+                case "error-rate":
+                    config.errorRate(Double.parseDouble(value));
+                    break;
+                case "gzip":
+                    config.gzip(Boolean.parseBoolean(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        mThreads = threads;
+        mRequests = requests;
+        mWarmup = warmup;
+        mResults = results;
+        mConfig = config;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest(args).run();
+    }
+
+    void run() throws Exception {
+        ReplayServer server = new ReplayServer(mConfig, mThreads);
+        server.start();
+        ExecutorService executor = Executors.newFixedThreadPool(mThreads);
+        try {
+            //Warms up the JIT and the connection pool, the results are dropped
+            runRequests(executor, server, mWarmup, "warmup");
+            Metrics.reset();
+            Metrics.setEnabled(true);
+            NewsHttpClient client = NewsHttpClient.getInstance();
+            long bytesReceived = client.getBytesReceived();
+            long bytesDecoded = client.getBytesDecoded();
+
+            long start = System.nanoTime();
+            Result result = runRequests(executor, server, mRequests, "load");
+            long elapsedNanos = System.nanoTime() - start;
+            Metrics.setEnabled(false);
+
+            report(result, elapsedNanos, client.getBytesReceived() - bytesReceived,
+                    client.getBytesDecoded() - bytesDecoded);
+        } finally {
+            executor.shutdownNow();
+            server.stop();
+        }
+    }
+
+    //The latencies of the requests and the number of failed ones
+    private static final class Result {
+
+        final long[] mLatencies;
+
+        final int mFailures;
+
+        final long mNews;
+
+        Result(long[] latencies, int failures, long news) {
+            mLatencies = latencies;
+            mFailures = failures;
+            mNews = news;
+        }
+    }
+
+    private Result runRequests(ExecutorService executor, final ReplayServer server, int count,
+                               final String prefix) throws Exception {
+        final long[] latencies = new long[count];
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicLong news = new AtomicLong();
+        final int total = count;
+        Future<?>[] callers = new Future<?>[mThreads];
+        for (int t = 0; t < mThreads; t++) {
+            callers[t] = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = next.getAndIncrement(); i < total; i = next.getAndIncrement()) {
+                        //Every request has its own query, so none of them are shared in flight
+                        String url = server.searchUrl(prefix + "-" + i, mResults);
+                        long start = System.nanoTime();
+                        NewsPage page = QueryUtils.fetchNewsPage(url);
+                        latencies[i] = System.nanoTime() - start;
+                        if (page == null) {
+                            failures.incrementAndGet();
+                        } else {
+                            news.addAndGet(page.getNews().size());
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        for (Future<?> caller : callers) {
+            caller.get();
+        }
+        return new Result(latencies, failures.get(), news.get());
+    }
+
+    private void report(Result result, long elapsedNanos, long bytesReceived, long bytesDecoded) {
+        long[] sorted = result.mLatencies.clone();
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+        System.out.println(String.format(Locale.US,
+                "requests=%d threads=%d results=%d failed=%d news=%d",
+                mRequests, mThreads, mResults, result.mFailures, result.mNews));
+        System.out.println(String.format(Locale.US,
+                "latency ms p50=%.2f p90=%.2f p99=%.2f max=%.2f",
+                millis(percentile(sorted, 50)), millis(percentile(sorted, 90)),
+                millis(percentile(sorted, 99)), millis(percentile(sorted, 100))));
+        System.out.println(String.format(Locale.US,
+                "throughput %.1f requests/s, %.2f MB/s received, %.2f MB/s decoded",
+                mRequests / seconds, bytesReceived / seconds / 1e6, bytesDecoded / seconds / 1e6));
+        System.out.print(Metrics.dump());
+    }
+
+    private static double millis(long nanos) {
+        return (double) nanos / NANOS_PER_MILLI;
+    }
+
+    //Nearest-rank percentile of sorted values
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.user.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark of merging the pages of four topics into one page ordered by publication time.
+ */
+@State(Scope.Benchmark)
+public class MergeBenchmark {
+
+    //Number of topics that are merged
+    private static final int TOPICS = 4;
+
+    @Param({"200", "5000"})
+    public int results;
+
+    private List<NewsPage> mPages;
+
+    @Setup
+    public void setUp() throws Exception {
+        NewsPage page = NewsJsonParser.parse(new ByteArrayInputStream(GuardianPayloads.withResults(results)));
+        mPages = new ArrayList<>(TOPICS);
+        for (int topic = 0; topic < TOPICS; topic++) {
+            //Every topic gets its own urls, so none of the news are removed as duplicates
+            List<News> news = new ArrayList<>(page.getNews().size());
+            for (News item : page.getNews()) {
+                news.add(new News(item.getTitle(), item.getSection(), item.getUrl() + "/" + topic,
+                        item.getPublishedAt() + topic));
+            }
+            mPages.add(new NewsPage(news, 1, 1));
+        }
+    }
+
+    @Benchmark
+    public NewsPage merge() {
+        return FeedAggregator.merge(mPages);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.user.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Benchmarks of reading and parsing a Guardian search response of 10, 200 and 5,000 results.
+ * The responses are read from memory, so only the CPU and allocation cost is measured.
+ */
+@State(Scope.Benchmark)
+public class ParsingBenchmark {
+
+    @Param({"10", "200", "5000"})
+    public int results;
+
+    //The response as it arrives from the network
+    private byte[] mPayload;
+
+    //The response after readFromStream
+    private String mJsonResponse;
+
+    @Setup
+    public void setUp() throws Exception {
+        mPayload = GuardianPayloads.withResults(results);
+        mJsonResponse = new String(mPayload, Charset.forName("UTF-8"));
+    }
+
+    @Benchmark
+    public String readFromStream() throws IOException {
+        return QueryUtils.readFromStream(new ByteArrayInputStream(mPayload));
+    }
+
+    @Benchmark
+    public List<News> extractDataFromJson() {
+        return QueryUtils.extractDataFromJson(mJsonResponse);
+    }
+
+    //readFromStream followed by extractDataFromJson, the whole JSONObject based path
+    @Benchmark
+    public List<News> readAndExtract() throws IOException {
+        return QueryUtils.extractDataFromJson(QueryUtils.readFromStream(new ByteArrayInputStream(mPayload)));
+    }
+
+    //The streaming path that is used by NewsHttpClient
+    @Benchmark
+    public NewsPage streamingParse() throws IOException {
+        return NewsJsonParser.parse(new ByteArrayInputStream(mPayload));
+    }
+}
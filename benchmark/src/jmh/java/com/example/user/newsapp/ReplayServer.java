@@ -0,0 +1,280 @@
+package com.example.user.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLEncoder;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local HTTP server which answers Guardian searches with the recorded response, so the fetch
+ * path can be measured without the network and without an API key.
+ * <p>
+ * The responses have as many results as the page-size parameter of the request asks for,
+ * or the fixed number of the {@link Config}. The server can add a latency before every
+ * response, limit the bandwidth of every response and answer a part of the requests with
+ * an error. Responses are gzip compressed when the client accepts it, like the real API.
+ * The results are copies of the 10 recorded ones, so they compress better than real ones.
+ */
+public class ReplayServer {
+
+    //Path of the searches, the same as the API
+    private static final String SEARCH_PATH = "/search";
+
+    //Number of results of a response when the request has no page-size
+    private static final int DEFAULT_RESULTS = 10;
+
+    //The bandwidth limit is applied to chunks of this size
+    private static final int CHUNK_BYTES = 4096;
+
+    static {
+        //The server writes the headers and the body separately. With Nagle's algorithm the body
+        //waits for the delayed ACK of the headers, which adds 40 ms to every response
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final Config mConfig;
+
+    private final HttpServer mServer;
+
+    private final ExecutorService mExecutor;
+
+    //Responses by number of results and encoding, built once
+    private final ConcurrentMap<String, byte[]> mPayloads = new ConcurrentHashMap<>();
+
+    //Decides which requests fail, guarded by itself
+    private final Random mRandom;
+
+    //Counters of the served requests
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mErrorCount = new AtomicLong();
+    private final AtomicLong mBytesSent = new AtomicLong();
+
+    /**
+     * Behaviour of the server. The defaults answer right away, without limits and errors.
+     */
+    public static final class Config {
+
+        long mLatencyMillis;
+
+        long mBytesPerSecond;
+
+        double mErrorRate;
+
+        int mResults;
+
+        boolean mGzip = true;
+
+        long mSeed = 42;
+
+        //Time before the response starts
+        public Config latencyMillis(long latencyMillis) {
+            mLatencyMillis = latencyMillis;
+            return this;
+        }
+
+        //Bandwidth of every response, 0 for no limit
+        public Config bytesPerSecond(long bytesPerSecond) {
+            mBytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        //Part of the requests which are answered with 500 Internal Server Error, from 0 to 1
+        public Config errorRate(double errorRate) {
+            mErrorRate = errorRate;
+            return this;
+        }
+
+        //Number of results of every response, 0 to follow the page-size of the request
+        public Config results(int results) {
+            mResults = results;
+            return this;
+        }
+
+        //True to compress the responses for clients that accept gzip
+        public Config gzip(boolean gzip) {
+            mGzip = gzip;
+            return this;
+        }
+
+        //Seed of the random errors, the same seed fails the same requests
+        public Config seed(long seed) {
+            mSeed = seed;
+            return this;
+        }
+    }
+
+    /**
+     * Constructs a new {@link ReplayServer} on a free port of the loopback interface.
+     * It answers after {@link #start()}.
+     *
+     * @param config     is the behaviour of the server
+     * @param maxClients is the number of requests which are answered at the same time
+     */
+    public ReplayServer(Config config, int maxClients) throws IOException {
+        mConfig = config;
+        mRandom = new Random(config.mSeed);
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), maxClients);
+        mExecutor = Executors.newFixedThreadPool(maxClients);
+        mServer.setExecutor(mExecutor);
+        mServer.createContext(SEARCH_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    respond(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    public void start() {
+        mServer.start();
+    }
+
+    public void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Returns the URL of a search, in the form that NewsQuery builds.
+     */
+    public String searchUrl(String query, int pageSize) {
+        try {
+            return "http://127.0.0.1:" + mServer.getAddress().getPort() + SEARCH_PATH
+                    + "?q=" + URLEncoder.encode(query, "UTF-8") + "&page=1&page-size=" + pageSize
+                    + "&api-key=test";
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //Gets the number of requests answered
+    public long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    //Gets the number of requests answered with an error
+    public long getErrorCount() {
+        return mErrorCount.get();
+    }
+
+    //Gets the number of body bytes sent
+    public long getBytesSent() {
+        return mBytesSent.get();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        mRequestCount.incrementAndGet();
+        if (mConfig.mLatencyMillis > 0) {
+            sleep(mConfig.mLatencyMillis);
+        }
+        boolean fail;
+        synchronized (mRandom) {
+            fail = mRandom.nextDouble() < mConfig.mErrorRate;
+        }
+        if (fail) {
+            mErrorCount.incrementAndGet();
+            exchange.sendResponseHeaders(500, -1);
+            return;
+        }
+
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = mConfig.mGzip && acceptEncoding != null && acceptEncoding.contains("gzip");
+        int results = mConfig.mResults > 0 ? mConfig.mResults
+                : intParameter(exchange.getRequestURI().getRawQuery(), "page-size", DEFAULT_RESULTS);
+        byte[] body;
+        try {
+            body = payload(results, gzip);
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream output = exchange.getResponseBody();
+        write(output, body);
+        output.close();
+        mBytesSent.addAndGet(body.length);
+    }
+
+    //Writes the body, in chunks that are spread over time if the bandwidth is limited
+    private void write(OutputStream output, byte[] body) throws IOException {
+        if (mConfig.mBytesPerSecond <= 0) {
+            output.write(body);
+            return;
+        }
+        long start = System.nanoTime();
+        for (int offset = 0; offset < body.length; offset += CHUNK_BYTES) {
+            int count = Math.min(CHUNK_BYTES, body.length - offset);
+            output.write(body, offset, count);
+            output.flush();
+            //Wait until the bytes sent so far fit into the bandwidth
+            long dueNanos = TimeUnit.SECONDS.toNanos(offset + count) / mConfig.mBytesPerSecond;
+            long waitNanos = dueNanos - (System.nanoTime() - start);
+            if (waitNanos > 0) {
+                sleep(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            }
+        }
+    }
+
+    private byte[] payload(int results, boolean gzip) throws IOException, JSONException {
+        String key = results + (gzip ? "/gzip" : "/identity");
+        byte[] payload = mPayloads.get(key);
+        if (payload == null) {
+            payload = GuardianPayloads.withResults(results);
+            if (gzip) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                GZIPOutputStream gzipStream = new GZIPOutputStream(compressed);
+                gzipStream.write(payload);
+                gzipStream.close();
+                payload = compressed.toByteArray();
+            }
+            mPayloads.putIfAbsent(key, payload);
+        }
+        return payload;
+    }
+
+    //Reads an int parameter of a query string
+    private static int intParameter(String query, String name, int defaultValue) {
+        if (query == null) {
+            return defaultValue;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(name + "=")) {
+                try {
+                    return Integer.parseInt(parameter.substring(name.length() + 1));
+                } catch (NumberFormatException e) {
+                    return defaultValue;
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
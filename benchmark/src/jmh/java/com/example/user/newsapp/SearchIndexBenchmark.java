@@ -0,0 +1,74 @@
+package com.example.user.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of searches in a {@link NewsSearchIndex} of 10,000 and 100,000 news.
+ * <p>
+ * The news have the sections of the recorded response. Their titles are made of words of the
+ * recorded titles picked at random with a fixed seed, so every run indexes the same news.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchIndexBenchmark {
+
+    //Number of words of a title
+    private static final int TITLE_WORDS = 8;
+
+    @Param({"10000", "100000"})
+    public int articles;
+
+    private NewsSearchIndex mIndex;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<News> recorded = NewsJsonParser.parse(
+                new ByteArrayInputStream(GuardianPayloads.withResults(10))).getNews();
+        StringBuilder allTitles = new StringBuilder();
+        for (News news : recorded) {
+            allTitles.append(news.getTitle()).append(' ');
+        }
+        String[] vocabulary = allTitles.toString().split("\\s+");
+
+        Random random = new Random(42);
+        mIndex = new NewsSearchIndex();
+        for (int i = 0; i < articles; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int j = 0; j < TITLE_WORDS; j++) {
+                title.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+            }
+            News template = recorded.get(i % recorded.size());
+            mIndex.add(new News(title.toString(), template.getSection(), template.getUrl() + "-" + i,
+                    template.getPublishedAt() - i * 60000L));
+        }
+    }
+
+    @Benchmark
+    public List<News> singleWord() {
+        return mIndex.search("climate", 20);
+    }
+
+    //The same AND query that concatenateQuery sends to the API
+    @Benchmark
+    public List<News> twoWords() {
+        return mIndex.search(QueryUtils.concatenateQuery("climate change"), 20);
+    }
+
+    @Benchmark
+    public List<News> prefix() {
+        return mIndex.search("cl", 20);
+    }
+}
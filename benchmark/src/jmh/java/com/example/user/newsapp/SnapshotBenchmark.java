@@ -0,0 +1,49 @@
+package com.example.user.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Benchmark of restoring the list on a cold start: decoding the binary snapshot against
+ * extracting the same news from the JSON response. A snapshot holds at most
+ * {@link NewsSnapshot#MAX_NEWS} news, so the sizes stop there.
+ */
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    private static final String TOPICS = "news";
+
+    @Param({"10", "50"})
+    public int results;
+
+    //The response as the JSON path gets it
+    private String mJsonResponse;
+
+    //The snapshot of the same news
+    private byte[] mSnapshot;
+
+    @Setup
+    public void setUp() throws Exception {
+        byte[] payload = GuardianPayloads.withResults(results);
+        mJsonResponse = new String(payload, Charset.forName("UTF-8"));
+        mSnapshot = NewsSnapshot.encode(TOPICS, NewsJsonParser.parse(new ByteArrayInputStream(payload)));
+    }
+
+    @Benchmark
+    public NewsPage decodeSnapshot() throws IOException {
+        return NewsSnapshot.decode(mSnapshot, TOPICS);
+    }
+
+    @Benchmark
+    public List<News> extractDataFromJson() {
+        return QueryUtils.extractDataFromJson(mJsonResponse);
+    }
+}
@@ -0,0 +1,15 @@
+package android.text;
+
+/**
+ * Plain Java replacement of the Android TextUtils class, so the app classes can run in the
+ * benchmarks. Only the methods used by the benchmarked classes are implemented.
+ */
+public final class TextUtils {
+
+    private TextUtils() {
+    }
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+}
@@ -0,0 +1,23 @@
+package android.util;
+
+/**
+ * Plain Java replacement of the Android Log class, so the app classes can run in the
+ * benchmarks. The messages are dropped, logging must not be part of the measurements.
+ */
+public final class Log {
+
+    private Log() {
+    }
+
+    public static int i(String tag, String msg) {
+        return 0;
+    }
+
+    public static int e(String tag, String msg) {
+        return 0;
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+}